@@ -0,0 +1,206 @@
+package games.ai;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A fixed-size hash table of search results, keyed by a 64-bit position hash
+ * (e.g. chess.model.Game.getZobristKey() or connect4.Game.getPositionKey()).
+ *
+ * Each entry is packed into a single long holding the best move, score, depth, bound type
+ * and age. Entries live in two parallel long arrays rather than as objects: one array holds
+ * the data and the other holds (key ^ data). A probe only accepts an entry if XORing the two
+ * gives back the key, so an entry torn by two threads writing at once simply reads as a miss.
+ * That lets many search threads share a table without any locking.
+ *
+ * Entries are grouped in buckets of 4. When a bucket is full, the entry replaced is the one
+ * with the least depth, treating entries from older searches as shallower (see newSearch()).
+ */
+public class TranspositionTable {
+
+    public static final int BOUND_NONE = 0;
+    public static final int BOUND_EXACT = 1;
+    public static final int BOUND_LOWER = 2; // The score is at least this (a beta cutoff).
+    public static final int BOUND_UPPER = 3; // The score is at most this (failed low).
+
+    public static final int BYTES_PER_ENTRY = 16;
+    private static final int BUCKET_SIZE = 4;
+    private static final int AGE_MASK = 63;
+
+    // Packed layout of an entry: move in bits 0-15, score in 16-31 (signed),
+    // depth in 32-39, bound in 40-41 and age in 42-47.
+    private static final int SCORE_SHIFT = 16;
+    private static final int DEPTH_SHIFT = 32;
+    private static final int BOUND_SHIFT = 40;
+    private static final int AGE_SHIFT = 42;
+
+    private final long[] keys;
+    private final long[] data;
+    private final int bucketMask;
+    private volatile int age = 0;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder collisions = new LongAdder();
+
+    /**
+     * @param sizeInMB the memory to use. The number of entries is rounded down to a power of two.
+     */
+    public TranspositionTable(int sizeInMB) {
+        long entries = Math.max(BUCKET_SIZE, (long) sizeInMB * 1024 * 1024 / BYTES_PER_ENTRY);
+        long buckets = Long.highestOneBit(Math.min(entries / BUCKET_SIZE, Integer.MAX_VALUE / BUCKET_SIZE));
+        bucketMask = (int) buckets - 1;
+        keys = new long[(int) buckets * BUCKET_SIZE];
+        data = new long[(int) buckets * BUCKET_SIZE];
+    }
+
+    /**
+     * Looks up the position.
+     * @return The packed entry for the key, or 0 if the table has no entry for it.
+     * Use the static getters (getMove(), getScore() etc.) to unpack it.
+     */
+    public long probe(long key) {
+        int start = getBucketStart(key);
+        for (int i = start; i < start + BUCKET_SIZE; i++) {
+            long entry = data[i];
+            if (entry != 0 && (keys[i] ^ entry) == key) {
+                hits.increment();
+                return entry;
+            }
+        }
+        misses.increment();
+        return 0L;
+    }
+
+    /**
+     * Stores a search result for the position.
+     * @param key the position hash.
+     * @param move the best move found, in whatever int encoding the caller uses (16 bits are kept).
+     *             If this is 0, a move already stored for the same position is kept.
+     * @param score the score, which must fit in a short.
+     * @param depth the depth searched, from 0 to 255.
+     * @param bound one of BOUND_EXACT, BOUND_LOWER or BOUND_UPPER.
+     */
+    public void store(long key, int move, int score, int depth, int bound) {
+        int start = getBucketStart(key);
+        int currentAge = age;
+        int replace = start;
+        int worstValue = Integer.MAX_VALUE;
+        for (int i = start; i < start + BUCKET_SIZE; i++) {
+            long entry = data[i];
+            if (entry == 0) {
+                replace = i;
+                break;
+            }
+            if ((keys[i] ^ entry) == key) {
+                // Same position: keep a deeper result from this search unless the new one is exact.
+                if (bound != BOUND_EXACT && getAge(entry) == currentAge && getDepth(entry) > depth + 2) {
+                    return;
+                }
+                if (move == 0) {
+                    move = getMove(entry);
+                }
+                replace = i;
+                worstValue = Integer.MIN_VALUE;
+                break;
+            }
+            int value = getDepth(entry) - 8 * ((currentAge - getAge(entry)) & AGE_MASK);
+            if (value < worstValue) {
+                worstValue = value;
+                replace = i;
+            }
+        }
+        if (worstValue != Integer.MIN_VALUE && data[replace] != 0) {
+            collisions.increment();
+        }
+        long entry = pack(move, score, depth, bound, currentAge);
+        data[replace] = entry;
+        keys[replace] = key ^ entry;
+    }
+
+    /**
+     * Marks the start of a new search. Entries stored by earlier searches are preferred
+     * for replacement, so the table doesn't fill up with stale positions.
+     */
+    public void newSearch() {
+        age = (age + 1) & AGE_MASK;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, 0L);
+        Arrays.fill(data, 0L);
+        resetStatistics();
+    }
+
+    public int getCapacity() {
+        return data.length;
+    }
+
+    /**
+     * @return How full the table is, in entries per thousand, sampled from the first buckets.
+     */
+    public int getPermilleFull() {
+        int sample = Math.min(data.length, 1000 * BUCKET_SIZE);
+        int used = 0;
+        for (int i = 0; i < sample; i++) {
+            if (data[i] != 0 && getAge(data[i]) == age) {
+                used++;
+            }
+        }
+        return used * 1000 / sample;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return The number of stores that overwrote an entry belonging to a different position.
+     */
+    public long getCollisions() {
+        return collisions.sum();
+    }
+
+    public void resetStatistics() {
+        hits.reset();
+        misses.reset();
+        collisions.reset();
+    }
+
+    public static int getMove(long entry) {
+        return (int) (entry & 0xFFFF);
+    }
+
+    public static int getScore(long entry) {
+        return (short) (entry >>> SCORE_SHIFT);
+    }
+
+    public static int getDepth(long entry) {
+        return (int) ((entry >>> DEPTH_SHIFT) & 0xFF);
+    }
+
+    public static int getBound(long entry) {
+        return (int) ((entry >>> BOUND_SHIFT) & 3);
+    }
+
+    private static int getAge(long entry) {
+        return (int) ((entry >>> AGE_SHIFT) & AGE_MASK);
+    }
+
+    private static long pack(int move, int score, int depth, int bound, int age) {
+        int clampedDepth = Math.max(0, Math.min(255, depth));
+        return (move & 0xFFFFL)
+                | ((score & 0xFFFFL) << SCORE_SHIFT)
+                | ((long) clampedDepth << DEPTH_SHIFT)
+                | ((long) bound << BOUND_SHIFT)
+                | ((long) age << AGE_SHIFT);
+    }
+
+    private int getBucketStart(long key) {
+        return ((int) (key ^ (key >>> 32)) & bucketMask) * BUCKET_SIZE;
+    }
+}
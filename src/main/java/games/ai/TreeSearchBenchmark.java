@@ -0,0 +1,73 @@
+package games.ai;
+
+import games.common.RegularGame;
+import games.common.RegularMove;
+import games.common.ReversibleGame;
+
+/**
+ * Counts the positions in a game's move tree to a fixed depth, once by copying the game for
+ * every node (cloneWithUpdate) and once in place (makeMove and undoLastMove), and prints the
+ * nodes per second of each. This gives one benchmark for tree search across all the games.
+ *
+ * Usage: TreeSearchBenchmark [depth]
+ */
+public class TreeSearchBenchmark {
+
+    public static void main(String[] args) {
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        run("Connect 4", new games.connect4.Game(), depth);
+        run("Chess", new games.chess.model.Game(), depth);
+    }
+
+    /**
+     * Runs and prints both counts for the game. The in-place count is skipped if the game
+     * isn't a ReversibleGame.
+     */
+    public static void run(String name, RegularGame game, int depth) {
+        long start = System.nanoTime();
+        long nodes = countLeavesByCloning(game, depth);
+        print(name + " (cloning)", depth, nodes, System.nanoTime() - start);
+        if (game instanceof ReversibleGame) {
+            start = System.nanoTime();
+            nodes = countLeavesInPlace((ReversibleGame) game, depth);
+            print(name + " (in place)", depth, nodes, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * @return The number of move sequences of exactly `depth` moves, copying the game at each node.
+     */
+    public static long countLeavesByCloning(RegularGame game, int depth) {
+        if (depth == 0) {
+            return 1;
+        }
+        long leaves = 0;
+        for (RegularMove move : game.getLegalMoves()) {
+            leaves += countLeavesByCloning(game.cloneWithUpdate(move), depth - 1);
+        }
+        return leaves;
+    }
+
+    /**
+     * @return The number of move sequences of exactly `depth` moves, searching in place.
+     * The game is left as it was.
+     */
+    public static long countLeavesInPlace(ReversibleGame game, int depth) {
+        if (depth == 0) {
+            return 1;
+        }
+        long leaves = 0;
+        for (RegularMove move : game.getLegalMoves()) {
+            game.makeMove(move);
+            leaves += countLeavesInPlace(game, depth - 1);
+            game.undoLastMove();
+        }
+        return leaves;
+    }
+
+    private static void print(String name, int depth, long nodes, long elapsedNanos) {
+        elapsedNanos = Math.max(1, elapsedNanos);
+        System.out.println(name + " depth " + depth + ": " + nodes + " nodes in "
+                + (elapsedNanos / 1_000_000) + "ms, " + (nodes * 1_000_000_000L / elapsedNanos) + " nodes/s");
+    }
+}
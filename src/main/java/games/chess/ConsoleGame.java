@@ -67,7 +67,7 @@ public class ConsoleGame {
             StringBuilder line = new StringBuilder();
             line.append("| ");
             for (int fileIndex = 0; fileIndex < 8; fileIndex++) {
-                Piece piece = game.getPieceAt(new Square(fileIndex, rankIndex));
+                Piece piece = game.getPieceAt(Square.of(fileIndex, rankIndex));
                 if (piece == null) {
                     line.append(" ");
                 } else {
@@ -85,7 +85,7 @@ public class ConsoleGame {
         builder.append(String.format("%-150s", toMove));
         for (int i = 0; i < legalMoves.length; i++) {
             builder.append(String.format("%2d. ", i));
-            builder.append(String.format("%-5s ", legalMoves[i].getCanonicalName()));
+            builder.append(String.format("%-5s ", legalMoves[i].getCanonicalName(game)));
         }
     }
     
@@ -0,0 +1,79 @@
+package games.chess.engine;
+
+import games.chess.model.Game;
+import games.chess.model.Moves;
+import games.common.InputPlayer;
+import games.common.RegularGame;
+import games.common.RegularMove;
+
+import java.util.Random;
+
+/**
+ * An automated chess player that picks each move with a time-limited Search, or from an
+ * OpeningBook while the game is still in it.
+ */
+public class EnginePlayer implements InputPlayer {
+
+    private final ParallelSearch search;
+    private final long millisPerMove;
+    private final Random random = new Random();
+    private OpeningBook book;
+
+    /**
+     * @param millisPerMove the time to spend searching each move.
+     */
+    public EnginePlayer(long millisPerMove) {
+        this(millisPerMove, 1);
+    }
+
+    /**
+     * @param millisPerMove the time to spend searching each move.
+     * @param numThreads the number of threads to search with (see ParallelSearch).
+     */
+    public EnginePlayer(long millisPerMove, int numThreads) {
+        this(new ParallelSearch(numThreads), millisPerMove);
+    }
+
+    public EnginePlayer(ParallelSearch search, long millisPerMove) {
+        this.search = search;
+        this.millisPerMove = millisPerMove;
+    }
+
+    /**
+     * @param book a book to play from before searching, or null to always search.
+     */
+    public void setOpeningBook(OpeningBook book) {
+        this.book = book;
+    }
+
+    @Override
+    public String getDescription() {
+        return "Alpha-beta chess engine (" + millisPerMove + "ms per move, "
+                + search.getNumThreads() + " threads)";
+    }
+
+    /**
+     * @return A book move if the book has one, otherwise the best move found in the time
+     * allowed, or null if the game isn't a chess Game or has no legal moves.
+     */
+    @Override
+    public RegularMove selectMove(RegularGame game) {
+        if (!(game instanceof Game)) {
+            return null;
+        }
+        Game chessGame = (Game) game;
+        int bookMove = book == null ? Moves.NONE : book.selectMove(chessGame, random);
+        if (bookMove != Moves.NONE) {
+            return Moves.toMove(bookMove, chessGame);
+        }
+        SearchResult result = search.search(chessGame, Search.MAX_PLY, millisPerMove, Long.MAX_VALUE);
+        if (result.getBestMove() == Moves.NONE) {
+            return null;
+        }
+        return Moves.toMove(result.getBestMove(), chessGame);
+    }
+
+    // The search starts from scratch each move; the table keeps what it learned.
+    @Override
+    public void notifyOpponentMoved(RegularMove move) {}
+}
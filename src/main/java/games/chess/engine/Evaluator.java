@@ -0,0 +1,41 @@
+package games.chess.engine;
+
+import games.chess.model.Game;
+import games.chess.model.PieceSquareTables;
+
+/**
+ * Static evaluation of a chess position, in centipawns.
+ *
+ * The evaluation is material plus piece-square values, tapered between the middlegame and the
+ * endgame by the game phase (see PieceSquareTables). Game keeps those sums up to date as moves
+ * are made and undone, so they cost nothing to read. The pawn structure (see PawnStructure) is
+ * the one term that takes work, and searches cache it in a PawnHashTable.
+ */
+public final class Evaluator {
+
+    // Indexed by piece type (Piece.PAWN, ...). The king is never captured, so it has no value.
+    public static final int[] PIECE_VALUES = new int[]{100, 320, 330, 500, 900, 0};
+
+    private Evaluator() {}
+
+    /**
+     * @return The score of the position for the player to move: positive when they are ahead.
+     */
+    public static int evaluate(Game game) {
+        return evaluate(game, PawnStructure.evaluate(game));
+    }
+
+    /**
+     * Evaluates the position as evaluate(Game) does, looking up the pawn structure in a table.
+     */
+    public static int evaluate(Game game, PawnHashTable pawnTable) {
+        return evaluate(game, pawnTable.probe(game));
+    }
+
+    private static int evaluate(Game game, int pawnScore) {
+        int middlegame = game.getMiddlegameScore() + PawnStructure.getMiddlegame(pawnScore);
+        int endgame = game.getEndgameScore() + PawnStructure.getEndgame(pawnScore);
+        int score = PieceSquareTables.taper(middlegame, endgame, game.getPhase());
+        return game.isWhiteToMove() ? score : -score;
+    }
+}
@@ -0,0 +1,174 @@
+package games.chess.engine;
+
+import games.chess.model.Game;
+import games.chess.model.MoveList;
+import games.chess.model.Moves;
+import games.chess.model.piece.Piece;
+
+import java.util.Arrays;
+
+/**
+ * Orders moves for an alpha-beta search, which cuts off soonest when the best move comes first.
+ *
+ * Moves are tried in this order:
+ * 1. The transposition table's best move for the position.
+ * 2. Captures and promotions, in MVV-LVA order (see getMvvLvaScore()).
+ * 3. Killer moves: the last two quiet moves that caused a cutoff at the same ply. A move that
+ *    refutes one line often refutes its siblings too.
+ * 4. Other quiet moves, by their history score: how much they have caused cutoffs anywhere in
+ *    the tree, indexed by the mover's colour and the move's from and to squares ("butterfly" table).
+ *
+ * The orderer also counts how many cutoffs came from the first move tried, which is the best
+ * single measure of how well the moves are ordered.
+ */
+public class MoveOrderer {
+
+    public static final int KILLERS_PER_PLY = 2;
+
+    private static final int HASH_MOVE_SCORE = Integer.MAX_VALUE;
+    private static final int CAPTURE_SCORE = 2_000_000;
+    private static final int KILLER_SCORE = 1_000_000;
+    // History scores are halved when one reaches this, so they stay below the killers'
+    // and recent cutoffs count for more than old ones.
+    private static final int MAX_HISTORY = 500_000;
+
+    private final int[][] killers;
+    // Indexed by [white = 0, black = 1][from][to].
+    private final int[][][] history = new int[2][64][64];
+
+    private long cutoffs;
+    private long firstMoveCutoffs;
+
+    /**
+     * @param maxPly the deepest ply the search can reach.
+     */
+    public MoveOrderer(int maxPly) {
+        killers = new int[maxPly + 1][KILLERS_PER_PLY];
+    }
+
+    /**
+     * Gets ready for a new search. The killers are cleared, since they belong to plies of the
+     * old tree, but history is only aged: it is still a fair guide to the new position.
+     */
+    public void newSearch() {
+        for (int[] plyKillers : killers) {
+            Arrays.fill(plyKillers, Moves.NONE);
+        }
+        ageHistory();
+        cutoffs = 0;
+        firstMoveCutoffs = 0;
+    }
+
+    /**
+     * Scores the moves for ordering, higher first, into `scores` (parallel to the list).
+     * @param ttMove the transposition table's move for the position, or Moves.NONE.
+     */
+    public void scoreMoves(Game game, MoveList moves, int[] scores, int ply, int ttMove) {
+        int colour = game.isWhiteToMove() ? 0 : 1;
+        int[] plyKillers = killers[ply];
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            if (move == ttMove) {
+                scores[i] = HASH_MOVE_SCORE;
+            } else if (Moves.isCapture(move) || Moves.isPromotion(move)) {
+                scores[i] = CAPTURE_SCORE + getMvvLvaScore(game, move);
+            } else if (move == plyKillers[0]) {
+                scores[i] = KILLER_SCORE + 1;
+            } else if (move == plyKillers[1]) {
+                scores[i] = KILLER_SCORE;
+            } else {
+                scores[i] = history[colour][Moves.getFrom(move)][Moves.getTo(move)];
+            }
+        }
+    }
+
+    /**
+     * Records that a move caused a beta cutoff, for the killers, history and statistics.
+     * @param isWhite whether white made the move.
+     * @param moveIndex how many moves were tried before it at this node.
+     */
+    public void recordCutoff(boolean isWhite, int move, int ply, int depth, int moveIndex) {
+        cutoffs++;
+        if (moveIndex == 0) {
+            firstMoveCutoffs++;
+        }
+        if (Moves.isCapture(move) || Moves.isPromotion(move)) {
+            return; // Captures are already ordered by MVV-LVA.
+        }
+        int[] plyKillers = killers[ply];
+        if (plyKillers[0] != move) {
+            plyKillers[1] = plyKillers[0];
+            plyKillers[0] = move;
+        }
+        int[] fromHistory = history[isWhite ? 0 : 1][Moves.getFrom(move)];
+        int to = Moves.getTo(move);
+        // Deeper cutoffs save more work, so they count for more.
+        fromHistory[to] += depth * depth;
+        if (fromHistory[to] >= MAX_HISTORY) {
+            ageHistory();
+        }
+    }
+
+    /**
+     * @return The killer moves for the ply, most recent first. Empty slots are Moves.NONE.
+     */
+    public int[] getKillers(int ply) {
+        return killers[ply].clone();
+    }
+
+    /**
+     * @param slot 0 for the most recent killer, up to KILLERS_PER_PLY - 1.
+     * @return The killer move, or Moves.NONE.
+     */
+    public int getKiller(int ply, int slot) {
+        return killers[ply][slot];
+    }
+
+    public int getHistoryScore(boolean isWhite, int move) {
+        return history[isWhite ? 0 : 1][Moves.getFrom(move)][Moves.getTo(move)];
+    }
+
+    /**
+     * @return The beta cutoffs recorded since newSearch().
+     */
+    public long getCutoffs() {
+        return cutoffs;
+    }
+
+    /**
+     * @return The fraction of cutoffs caused by the first move tried, or 0 if there were none.
+     * With perfect ordering this is 1, and alpha-beta searches about the square root of the
+     * nodes plain minimax would.
+     */
+    public double getFirstMoveCutoffRate() {
+        return cutoffs == 0 ? 0.0 : (double) firstMoveCutoffs / cutoffs;
+    }
+
+    /**
+     * "Most valuable victim, least valuable attacker": captures of bigger pieces come first,
+     * and among those, captures by smaller pieces. Promotions add the new piece's value.
+     * @return A score for ordering the capture or promotion; higher is tried first.
+     */
+    public static int getMvvLvaScore(Game game, int move) {
+        int victimValue = 0;
+        if (Moves.isEnPassant(move)) {
+            victimValue = StaticExchange.getValue(Piece.PAWN);
+        } else if (Moves.isCapture(move)) {
+            victimValue = StaticExchange.getValue(game.getPieceAt(Moves.getTo(move)).getTypeIndex());
+        }
+        if (Moves.isPromotion(move)) {
+            victimValue += StaticExchange.getValue(Moves.getPromotionTypeIndex(move));
+        }
+        return victimValue * 8 - game.getPieceAt(Moves.getFrom(move)).getTypeIndex();
+    }
+
+    private void ageHistory() {
+        for (int[][] colourHistory : history) {
+            for (int[] fromHistory : colourHistory) {
+                for (int to = 0; to < fromHistory.length; to++) {
+                    fromHistory[to] /= 2;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package games.chess.engine;
+
+import games.chess.model.Game;
+import games.chess.model.MoveGenerator;
+import games.chess.model.MoveList;
+import games.chess.model.Moves;
+
+/**
+ * Hands out a position's moves one at a time, best first, generating them in stages:
+ * 1. The transposition table's move, which needs no generation at all.
+ * 2. Captures and queen promotions, in MVV-LVA order.
+ * 3. The killer moves for the ply (see MoveOrderer).
+ * 4. The remaining quiet moves, by history score.
+ *
+ * Each stage is only generated once the ones before it are used up, so a node that cuts off
+ * on the hash move or a capture never generates its quiet moves. Each move is handed out once.
+ *
+ * Moves are pseudo-legal (see MoveGenerator), except that castles are checked not to move
+ * out of or through check. The caller makes each move and skips it if the mover's king is
+ * left in check. A search keeps one MovePicker per ply, so picking moves doesn't allocate.
+ */
+public class MovePicker {
+
+    public static final int HASH_MOVE = 0;
+    public static final int CAPTURES = 1;
+    public static final int KILLERS = 2;
+    public static final int QUIETS = 3;
+    public static final int DONE = 4;
+
+    private final MoveOrderer orderer;
+    private final MoveList moves = new MoveList();
+    private final int[] scores = new int[MoveList.CAPACITY];
+
+    private Game game;
+    private int ply;
+    private int ttMove;
+    private boolean capturesOnly;
+    private int stage;
+    // The next move to hand out in `moves`, or the next killer slot.
+    private int index;
+    private boolean generated;
+    // The stage the last move handed out came from.
+    private int moveStage;
+
+    public MovePicker(MoveOrderer orderer) {
+        this.orderer = orderer;
+    }
+
+    /**
+     * Starts picking the moves of the game's current position.
+     * @param ttMove the transposition table's move, or Moves.NONE. It is checked before it is used.
+     * @param capturesOnly whether to stop after the captures, as a quiescence search does.
+     */
+    public void reset(Game game, int ply, int ttMove, boolean capturesOnly) {
+        this.game = game;
+        this.ply = ply;
+        this.ttMove = ttMove;
+        this.capturesOnly = capturesOnly;
+        this.stage = HASH_MOVE;
+        this.index = 0;
+        this.generated = false;
+    }
+
+    /**
+     * @return The next move to try, or Moves.NONE when there are no more.
+     */
+    public int next() {
+        while (true) {
+            switch (stage) {
+                case HASH_MOVE:
+                    nextStage();
+                    if (ttMove != Moves.NONE && MoveGenerator.isPseudoLegal(game, ttMove) && castlesLegally(ttMove)) {
+                        moveStage = HASH_MOVE;
+                        return ttMove;
+                    }
+                    break;
+                case CAPTURES:
+                    if (!generated) {
+                        MoveGenerator.generateCaptures(game, game.isWhiteToMove(), moves);
+                        orderer.scoreMoves(game, moves, scores, ply, Moves.NONE);
+                        generated = true;
+                    }
+                    while (index < moves.size()) {
+                        int move = pickBest();
+                        if (move != ttMove) {
+                            moveStage = CAPTURES;
+                            return move;
+                        }
+                    }
+                    nextStage();
+                    break;
+                case KILLERS:
+                    while (index < MoveOrderer.KILLERS_PER_PLY) {
+                        int killer = orderer.getKiller(ply, index++);
+                        if (killer != Moves.NONE && killer != ttMove
+                                && MoveGenerator.isPseudoLegal(game, killer) && castlesLegally(killer)) {
+                            moveStage = KILLERS;
+                            return killer;
+                        }
+                    }
+                    nextStage();
+                    break;
+                case QUIETS:
+                    if (!generated) {
+                        MoveGenerator.generateQuiets(game, game.isWhiteToMove(), moves);
+                        orderer.scoreMoves(game, moves, scores, ply, Moves.NONE);
+                        generated = true;
+                    }
+                    while (index < moves.size()) {
+                        int move = pickBest();
+                        if (move != ttMove && !isKiller(move) && castlesLegally(move)) {
+                            moveStage = QUIETS;
+                            return move;
+                        }
+                    }
+                    nextStage();
+                    break;
+                default:
+                    return Moves.NONE;
+            }
+        }
+    }
+
+    /**
+     * @return The stage the next move will come from, or DONE.
+     */
+    public int getStage() {
+        return stage;
+    }
+
+    /**
+     * @return The stage the last move handed out by next() came from. Searches use this to
+     * treat captures, killers and other quiet moves differently.
+     */
+    public int getMoveStage() {
+        return moveStage;
+    }
+
+    private void nextStage() {
+        stage = capturesOnly && stage == CAPTURES ? DONE : stage + 1;
+        index = 0;
+        generated = false;
+        moves.clear();
+    }
+
+    // Swaps the best-scoring of the remaining moves into place and returns it. Picking one at a
+    // time is cheaper than a full sort, since most nodes cut off after a move or two.
+    private int pickBest() {
+        int best = index;
+        for (int i = index + 1; i < moves.size(); i++) {
+            if (scores[i] > scores[best]) {
+                best = i;
+            }
+        }
+        if (best != index) {
+            moves.swap(index, best);
+            int score = scores[index];
+            scores[index] = scores[best];
+            scores[best] = score;
+        }
+        return moves.get(index++);
+    }
+
+    private boolean isKiller(int move) {
+        for (int slot = 0; slot < MoveOrderer.KILLERS_PER_PLY; slot++) {
+            if (orderer.getKiller(ply, slot) == move) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // The king can't castle out of or through check. Game.isLegal() tests both.
+    private boolean castlesLegally(int move) {
+        return !Moves.isCastle(move) || game.isLegal(move);
+    }
+}
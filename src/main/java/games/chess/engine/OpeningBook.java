@@ -0,0 +1,222 @@
+package games.chess.engine;
+
+import games.chess.model.Game;
+import games.chess.model.MoveList;
+import games.chess.model.Moves;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * An opening book in the Polyglot .bin layout: a file of 16-byte big-endian entries, each a
+ * 64-bit position key, a 16-bit move, a 16-bit weight and 32 bits of learning data (unused
+ * here), sorted by key. A position's moves are the run of entries with its key.
+ *
+ * The file is memory-mapped rather than read, so opening even a large book costs nothing on
+ * the heap and only the pages a lookup touches are read from disk. Lookups binary-search the
+ * mapped entries by key.
+ *
+ * Positions are keyed by PolyglotKey, so books made by other Polyglot tools can be read, and
+ * books made with write() can be read by them. A book is read-only once mapped and can be
+ * shared between threads.
+ *
+ * Moves are encoded as Polyglot does: the to file in bits 0-2, to rank in 3-5, from file in
+ * 6-8, from rank in 9-11 and the promotion piece (1 knight to 4 queen) in 12-14. Castling is
+ * written as the king capturing its own rook, so e1h1 for white's kingside castle.
+ */
+public class OpeningBook {
+
+    public static final int BYTES_PER_ENTRY = 16;
+
+    private final MappedByteBuffer entries;
+    private final int size;
+
+    /**
+     * Maps the book file. A single mapping can't be larger than 2GB, so neither can the book.
+     * @throws IOException if the file can't be read or isn't a whole number of entries.
+     */
+    public OpeningBook(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long length = channel.size();
+            if (length % BYTES_PER_ENTRY != 0 || length > Integer.MAX_VALUE) {
+                throw new IOException("Not an opening book: " + file);
+            }
+            // The mapping stays valid after the channel is closed.
+            entries = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            size = (int) (length / BYTES_PER_ENTRY);
+        }
+    }
+
+    /**
+     * @return The number of entries in the book.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets the book moves for the position and their weights.
+     * Entries whose move isn't legal in the game (from a key collision) are skipped.
+     * @param moves cleared and filled with the book moves, encoded as in Moves.
+     * @param weights filled with the weight of each move at the same index. Should have room
+     *                for MoveList.CAPACITY weights.
+     * @return The total weight of the moves.
+     */
+    public int getMoves(Game game, MoveList moves, int[] weights) {
+        moves.clear();
+        long key = PolyglotKey.compute(game);
+        MoveList legalMoves = new MoveList();
+        game.getLegalMoves(legalMoves);
+        int total = 0;
+        for (int index = findFirst(key); index < size && getKey(index) == key; index++) {
+            int move = toMove(getBookMove(index), legalMoves);
+            if (move != Moves.NONE && !moves.contains(move) && moves.size() < MoveList.CAPACITY) {
+                weights[moves.size()] = getWeight(index);
+                total += getWeight(index);
+                moves.add(move);
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Picks one of the book moves for the position at random, in proportion to their weights.
+     * @return The move, encoded as in Moves, or Moves.NONE if the book has no move with a
+     * weight above 0 for the position.
+     */
+    public int selectMove(Game game, Random random) {
+        MoveList moves = new MoveList();
+        int[] weights = new int[MoveList.CAPACITY];
+        int total = getMoves(game, moves, weights);
+        if (total == 0) {
+            return Moves.NONE;
+        }
+        int pick = random.nextInt(total);
+        for (int i = 0; i < moves.size(); i++) {
+            pick -= weights[i];
+            if (pick < 0) {
+                return moves.get(i);
+            }
+        }
+        return Moves.NONE;
+    }
+
+    /**
+     * @return The index of the first entry with the key, or of the first entry with a greater
+     * key if there is none. Keys are compared unsigned, as Polyglot sorts them.
+     */
+    int findFirst(long key) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (Long.compareUnsigned(getKey(middle), key) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private long getKey(int index) {
+        return entries.getLong(index * BYTES_PER_ENTRY);
+    }
+
+    private int getBookMove(int index) {
+        return entries.getShort(index * BYTES_PER_ENTRY + 8) & 0xFFFF;
+    }
+
+    private int getWeight(int index) {
+        return entries.getShort(index * BYTES_PER_ENTRY + 10) & 0xFFFF;
+    }
+
+    /**
+     * @param move an encoded move (see Moves).
+     * @return The move in the book's 16-bit encoding.
+     */
+    public static int toBookMove(int move) {
+        int from = Moves.getFrom(move);
+        int to = Moves.getTo(move);
+        if (Moves.getFlags(move) == Moves.KING_CASTLE) {
+            to = from + 3;
+        } else if (Moves.getFlags(move) == Moves.QUEEN_CASTLE) {
+            to = from - 4;
+        }
+        int promotion = Moves.isPromotion(move) ? Moves.getPromotionTypeIndex(move) : 0;
+        return (promotion << 12) | (from << 6) | to;
+    }
+
+    /**
+     * @return The legal move with the book encoding, or Moves.NONE if there is none.
+     */
+    private static int toMove(int bookMove, MoveList legalMoves) {
+        for (int i = 0; i < legalMoves.size(); i++) {
+            if (toBookMove(legalMoves.get(i)) == bookMove) {
+                return legalMoves.get(i);
+            }
+        }
+        return Moves.NONE;
+    }
+
+    /**
+     * A position and a move to store in a book with write().
+     */
+    public static final class Entry {
+        private final long key;
+        private final int move;
+        private final int weight;
+
+        /**
+         * @param game the position to play the move in.
+         * @param move an encoded move (see Moves) for the position.
+         * @param weight from 0 to 65535. Moves are picked in proportion to their weights.
+         */
+        public Entry(Game game, int move, int weight) {
+            this(PolyglotKey.compute(game), move, weight);
+        }
+
+        /**
+         * @param key the position's PolyglotKey.compute().
+         * @param move an encoded move (see Moves) for the position.
+         * @param weight from 0 to 65535. Moves are picked in proportion to their weights.
+         */
+        public Entry(long key, int move, int weight) {
+            if (weight < 0 || weight > 0xFFFF) {
+                throw new IllegalArgumentException("Weight out of range: " + weight);
+            }
+            this.key = key;
+            this.move = move;
+            this.weight = weight;
+        }
+    }
+
+    /**
+     * Writes the entries to a book file in the Polyglot layout, sorted by key as lookups need.
+     */
+    public static void write(Path file, List<Entry> entries) throws IOException {
+        List<Entry> sorted = new ArrayList<>(entries);
+        sorted.sort((a, b) -> Long.compareUnsigned(a.key, b.key));
+        ByteBuffer buffer = ByteBuffer.allocate(sorted.size() * BYTES_PER_ENTRY);
+        for (Entry entry : sorted) {
+            buffer.putLong(entry.key);
+            buffer.putShort((short) toBookMove(entry.move));
+            buffer.putShort((short) entry.weight);
+            buffer.putInt(0);
+        }
+        buffer.flip();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package games.chess.engine;
+
+import games.ai.TranspositionTable;
+import games.chess.model.Game;
+import games.chess.model.InvalidFENFileException;
+import games.chess.model.Parser;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A multi-threaded Search using "Lazy SMP": every thread searches the same root position with
+ * its own copy of the game, and they share one TranspositionTable. Nothing else is shared, so
+ * the threads speed each other up only through the table - a helper that has searched a
+ * subtree lets the others skip it, and helper results improve the others' move ordering.
+ *
+ * Helpers start at staggered depths so they get ahead of the main thread rather than repeat
+ * its work. The main thread keeps the time and node limits and reports the result; when it
+ * finishes, the helpers are stopped.
+ *
+ * Usage: ParallelSearch &lt;FEN file or FEN string&gt; &lt;depth&gt; [max threads]
+ * searches to a fixed depth with 1, 2, 4, ... threads and prints the speedup of each.
+ */
+public class ParallelSearch {
+
+    private static final int DEFAULT_HASH_MB = 64;
+
+    private final TranspositionTable table;
+    private final Search mainSearch;
+    private final Search[] helpers;
+    private final ExecutorService helperPool;
+
+    /**
+     * @param numThreads the number of threads to search with, including the calling thread.
+     */
+    public ParallelSearch(int numThreads) {
+        this(new TranspositionTable(DEFAULT_HASH_MB), numThreads);
+    }
+
+    public ParallelSearch(TranspositionTable table, int numThreads) {
+        this.table = table;
+        this.mainSearch = new Search(table);
+        this.helpers = new Search[Math.max(0, numThreads - 1)];
+        for (int i = 0; i < helpers.length; i++) {
+            helpers[i] = new Search(table);
+            // Half the helpers start one ply deeper than the main thread.
+            helpers[i].setStartDepth(1 + (i + 1) % 2);
+        }
+        this.helperPool = helpers.length == 0 ? null : Executors.newFixedThreadPool(helpers.length, runnable -> {
+            Thread thread = new Thread(runnable, "search-helper");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public static void main(String[] args) throws FileNotFoundException, InvalidFENFileException {
+        if (args.length < 2) {
+            System.out.println("Usage: ParallelSearch <FEN file or FEN string> <depth> [max threads]");
+            return;
+        }
+        Parser parser = new Parser();
+        Game game = new File(args[0]).isFile()
+                ? parser.parseFromFENFile(args[0])
+                : parser.parseFromFENString(args[0]);
+        int depth = Integer.parseInt(args[1]);
+        int maxThreads = args.length > 2
+                ? Integer.parseInt(args[2])
+                : Runtime.getRuntime().availableProcessors();
+        benchmark(game, depth, maxThreads, System.out);
+    }
+
+    /**
+     * Searches the position to a fixed depth with 1, 2, 4, ... up to maxThreads threads,
+     * each with a fresh table, and prints the time to depth, nodes per second, and speedup
+     * over one thread for each. An untimed one-thread search runs first to warm up the JIT,
+     * which would otherwise make the one-thread time look worse than it is.
+     */
+    public static void benchmark(Game game, int depth, int maxThreads, PrintStream output) {
+        new Search().search(game, depth, Long.MAX_VALUE, Long.MAX_VALUE);
+        long singleThreadMillis = 0;
+        for (int doubling = 1; ; doubling *= 2) {
+            int threads = Math.min(doubling, maxThreads);
+            ParallelSearch search = new ParallelSearch(threads);
+            SearchResult result = search.search(game, depth, Long.MAX_VALUE, Long.MAX_VALUE);
+            search.shutdown();
+            long millis = Math.max(1, result.getElapsedMillis());
+            if (threads == 1) {
+                singleThreadMillis = millis;
+            }
+            long nodes = search.getNodes();
+            output.printf("threads %d depth %d time %dms nodes %d nps %d speedup %.2f%n",
+                    threads, result.getDepth(), millis, nodes, nodes * 1000 / millis,
+                    (double) singleThreadMillis / millis);
+            if (threads >= maxThreads) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * @param infoOutput a stream for the main thread to print each completed iteration to, or null.
+     */
+    public void setInfoOutput(PrintStream infoOutput) {
+        mainSearch.setInfoOutput(infoOutput);
+    }
+
+    public TranspositionTable getTranspositionTable() {
+        return table;
+    }
+
+    public int getNumThreads() {
+        return helpers.length + 1;
+    }
+
+    /**
+     * Searches the position on all threads, as Search.search() does on one.
+     * The node limit applies to the main thread only. The game is left as it was.
+     * @return The main thread's result.
+     */
+    public SearchResult search(Game game, int maxDepth, long timeLimitMillis, long nodeLimit) {
+        Future<?>[] helperTasks = new Future<?>[helpers.length];
+        for (int i = 0; i < helpers.length; i++) {
+            Search helper = helpers[i];
+            Game copy = new Game(game);
+            helper.clearStop();
+            helperTasks[i] = helperPool.submit(
+                    () -> helper.iterativeDeepening(copy, maxDepth, Long.MAX_VALUE, Long.MAX_VALUE));
+        }
+        SearchResult result;
+        try {
+            result = mainSearch.search(game, maxDepth, timeLimitMillis, nodeLimit);
+        } finally {
+            for (Search helper : helpers) {
+                helper.stop();
+            }
+            for (Future<?> task : helperTasks) {
+                waitFor(task);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Asks a running search to stop on all threads. It is safe to call from another thread.
+     */
+    public void stop() {
+        mainSearch.stop();
+        for (Search helper : helpers) {
+            helper.stop();
+        }
+    }
+
+    /**
+     * @return The nodes visited by all threads in the last search.
+     */
+    public long getNodes() {
+        long nodes = mainSearch.getNodes();
+        for (Search helper : helpers) {
+            nodes += helper.getNodes();
+        }
+        return nodes;
+    }
+
+    /**
+     * Stops the helper threads. The search can't be used afterwards.
+     */
+    public void shutdown() {
+        if (helperPool != null) {
+            helperPool.shutdownNow();
+        }
+    }
+
+    private static void waitFor(Future<?> task) {
+        try {
+            task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("A search helper failed", e.getCause());
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package games.chess.engine;
+
+import games.chess.model.Game;
+
+/**
+ * A direct-mapped cache of PawnStructure scores, keyed by Game.getPawnKey().
+ *
+ * The pawns move far less often than the other pieces, so nearly every position a search
+ * evaluates has a pawn structure it has seen before, and the cached score saves recomputing it.
+ * A newer structure always replaces an older one in its slot. Unlike a TranspositionTable,
+ * a PawnHashTable isn't safe to share between threads: each Search has its own.
+ */
+public class PawnHashTable {
+
+    public static final int BYTES_PER_ENTRY = 12;
+
+    // An empty slot has key 0, which is the pawn key with no pawns on the board. Their
+    // score of 0 is right for that, so empty slots need no separate flag.
+    private final long[] keys;
+    private final int[] scores;
+    private final int mask;
+
+    private long hits;
+    private long misses;
+
+    /**
+     * @param sizeInKB the memory to use. The number of entries is rounded down to a power of two.
+     */
+    public PawnHashTable(int sizeInKB) {
+        int entries = (int) Long.highestOneBit(Math.max(1, (long) sizeInKB * 1024 / BYTES_PER_ENTRY));
+        keys = new long[entries];
+        scores = new int[entries];
+        mask = entries - 1;
+    }
+
+    /**
+     * @return The packed PawnStructure score of the game's pawns, from the table if it has
+     * them, otherwise evaluated and stored.
+     */
+    public int probe(Game game) {
+        long key = game.getPawnKey();
+        int index = (int) (key ^ (key >>> 32)) & mask;
+        if (keys[index] == key) {
+            hits++;
+            return scores[index];
+        }
+        misses++;
+        int score = PawnStructure.evaluate(game);
+        keys[index] = key;
+        scores[index] = score;
+        return score;
+    }
+
+    public int getCapacity() {
+        return keys.length;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return The fraction of probes answered from the table, or 0 if there were none.
+     */
+    public double getHitRate() {
+        long probes = hits + misses;
+        return probes == 0 ? 0.0 : (double) hits / probes;
+    }
+
+    public void resetStatistics() {
+        hits = 0;
+        misses = 0;
+    }
+}
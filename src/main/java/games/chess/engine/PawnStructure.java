@@ -0,0 +1,107 @@
+package games.chess.engine;
+
+import games.chess.model.Bitboards;
+import games.chess.model.Game;
+import games.chess.model.piece.Piece;
+
+/**
+ * Evaluation of the pawn structure: passed, isolated, doubled and backward pawns.
+ *
+ * The terms depend only on where the pawns are, so a PawnHashTable can cache them by
+ * Game.getPawnKey(). Scores are packed into one int holding a middlegame and an endgame value,
+ * for Evaluator to taper like the piece-square scores; see pack(), getMiddlegame() and getEndgame().
+ */
+public final class PawnStructure {
+
+    // Bonuses for a passed pawn, indexed by its rank counted from its own side (0 to 7).
+    private static final int[] PASSED_MIDDLEGAME = new int[]{0, 5, 10, 15, 25, 40, 60, 0};
+    private static final int[] PASSED_ENDGAME = new int[]{0, 10, 20, 35, 60, 100, 150, 0};
+    private static final int ISOLATED = pack(-10, -15);
+    private static final int DOUBLED = pack(-10, -20);
+    private static final int BACKWARD = pack(-8, -10);
+
+    private static final long[] FILES = new long[8];
+    private static final long[] ADJACENT_FILES = new long[8];
+    // Indexed by [white = 0, black = 1][square]. The squares in front of a pawn on its own and
+    // the adjacent files: a pawn is passed if no enemy pawn is on them.
+    private static final long[][] PASSED_MASKS = new long[2][64];
+    // The squares on the adjacent files level with or behind a pawn, where a friendly pawn
+    // could support it as it advances.
+    private static final long[][] SUPPORT_MASKS = new long[2][64];
+
+    static {
+        for (int file = 0; file < 8; file++) {
+            FILES[file] = Bitboards.FILE_A << file;
+        }
+        for (int file = 0; file < 8; file++) {
+            ADJACENT_FILES[file] = (file > 0 ? FILES[file - 1] : 0L) | (file < 7 ? FILES[file + 1] : 0L);
+        }
+        for (int square = 0; square < 64; square++) {
+            int file = Bitboards.fileOf(square);
+            int rank = Bitboards.rankOf(square);
+            long aboveRank = rank < 7 ? -1L << (8 * (rank + 1)) : 0L;
+            long belowRank = (1L << (8 * rank)) - 1;
+            long frontFiles = FILES[file] | ADJACENT_FILES[file];
+            PASSED_MASKS[0][square] = aboveRank & frontFiles;
+            PASSED_MASKS[1][square] = belowRank & frontFiles;
+            SUPPORT_MASKS[0][square] = ADJACENT_FILES[file] & ~aboveRank;
+            SUPPORT_MASKS[1][square] = ADJACENT_FILES[file] & ~belowRank;
+        }
+    }
+
+    private PawnStructure() {}
+
+    /**
+     * @return The packed score of the game's pawn structure from white's point of view.
+     */
+    public static int evaluate(Game game) {
+        long whitePawns = game.getPieceBoard(true, Piece.PAWN);
+        long blackPawns = game.getPieceBoard(false, Piece.PAWN);
+        return evaluateSide(true, whitePawns, blackPawns) - evaluateSide(false, blackPawns, whitePawns);
+    }
+
+    private static int evaluateSide(boolean isWhite, long pawns, long enemyPawns) {
+        int colour = isWhite ? 0 : 1;
+        int score = 0;
+        for (int file = 0; file < 8; file++) {
+            int onFile = Bitboards.count(pawns & FILES[file]);
+            if (onFile > 1) {
+                score += (onFile - 1) * DOUBLED;
+            }
+        }
+        for (long remaining = pawns; remaining != 0; remaining &= remaining - 1) {
+            int square = Bitboards.lowestSquare(remaining);
+            int file = Bitboards.fileOf(square);
+            if ((pawns & ADJACENT_FILES[file]) == 0) {
+                score += ISOLATED;
+            } else if ((pawns & SUPPORT_MASKS[colour][square]) == 0) {
+                // No pawn can support it, and an enemy pawn stops it from catching up.
+                int stopSquare = isWhite ? square + 8 : square - 8;
+                if ((Bitboards.pawnAttacks(isWhite, stopSquare) & enemyPawns) != 0) {
+                    score += BACKWARD;
+                }
+            }
+            if ((enemyPawns & PASSED_MASKS[colour][square]) == 0) {
+                int relativeRank = isWhite ? Bitboards.rankOf(square) : 7 - Bitboards.rankOf(square);
+                score += pack(PASSED_MIDDLEGAME[relativeRank], PASSED_ENDGAME[relativeRank]);
+            }
+        }
+        return score;
+    }
+
+    /**
+     * @return A middlegame and an endgame score packed into one int. Packed scores can be
+     * added, subtracted and multiplied by a whole number as if they were plain ints.
+     */
+    public static int pack(int middlegame, int endgame) {
+        return (middlegame << 16) + endgame;
+    }
+
+    public static int getMiddlegame(int packedScore) {
+        return (packedScore + 0x8000) >> 16;
+    }
+
+    public static int getEndgame(int packedScore) {
+        return (short) packedScore;
+    }
+}
@@ -0,0 +1,222 @@
+package games.chess.engine;
+
+import games.chess.model.Game;
+import games.chess.model.InvalidFENFileException;
+import games.chess.model.MoveList;
+import games.chess.model.Moves;
+import games.chess.model.Parser;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Counts the leaf nodes of the legal move tree to a fixed depth ("perft"). The counts for
+ * well-known positions are published, so this is the standard way to check move generation,
+ * and the nodes per second it reaches is a benchmark for move generation and make/undo.
+ * Moves are generated as ints into a MoveList per ply, so counting allocates nothing.
+ *
+ * Usage: Perft &lt;FEN file or FEN string&gt; &lt;depth&gt; [single|parallel|hashed|divide]
+ */
+public class Perft {
+
+    public enum Mode { SINGLE, PARALLEL, HASHED, DIVIDE }
+
+    private static final int DEFAULT_HASH_MB = 64;
+
+    // Perft results keyed by position and depth, for the hashed mode. Uses the same
+    // XOR-verified layout as games.ai.TranspositionTable so it is safe to share across threads.
+    private final long[] hashKeys;
+    private final long[] hashCounts;
+    private final int hashMask;
+
+    public Perft() {
+        this(DEFAULT_HASH_MB);
+    }
+
+    /**
+     * @param hashSizeInMB the memory for the hashed mode's table of subtree counts.
+     */
+    public Perft(int hashSizeInMB) {
+        int entries = (int) Long.highestOneBit(Math.max(1, (long) hashSizeInMB * 1024 * 1024 / 16));
+        hashKeys = new long[entries];
+        hashCounts = new long[entries];
+        hashMask = entries - 1;
+    }
+
+    public static void main(String[] args) throws FileNotFoundException, InvalidFENFileException {
+        if (args.length < 2) {
+            System.out.println("Usage: Perft <FEN file or FEN string> <depth> [single|parallel|hashed|divide]");
+            return;
+        }
+        Parser parser = new Parser();
+        Game game = new File(args[0]).isFile()
+                ? parser.parseFromFENFile(args[0])
+                : parser.parseFromFENString(args[0]);
+        int depth = Integer.parseInt(args[1]);
+        Mode mode = args.length > 2 ? Mode.valueOf(args[2].toUpperCase()) : Mode.SINGLE;
+        new Perft().run(game, depth, mode);
+    }
+
+    /**
+     * Runs perft in the given mode and prints the node count and nodes per second.
+     * @return The number of leaf nodes.
+     */
+    public long run(Game game, int depth, Mode mode) {
+        long start = System.nanoTime();
+        long nodes;
+        switch (mode) {
+            case PARALLEL:
+                nodes = perftParallel(game, depth);
+                break;
+            case HASHED:
+                nodes = perftHashed(game, depth);
+                break;
+            case DIVIDE:
+                nodes = 0;
+                for (Map.Entry<String, Long> entry : divide(game, depth).entrySet()) {
+                    System.out.println(entry.getKey() + ": " + entry.getValue());
+                    nodes += entry.getValue();
+                }
+                break;
+            default:
+                nodes = perft(game, depth);
+        }
+        long elapsedNanos = Math.max(1, System.nanoTime() - start);
+        System.out.println("Depth " + depth + " (" + mode.name().toLowerCase() + "): " + nodes + " nodes in "
+                + (elapsedNanos / 1_000_000) + "ms, " + (nodes * 1_000_000_000L / elapsedNanos) + " nodes/s");
+        return nodes;
+    }
+
+    /**
+     * Single-threaded perft.
+     * @return The number of positions reached after exactly `depth` legal moves.
+     */
+    public static long perft(Game game, int depth) {
+        return perft(game, depth, newMoveLists(depth));
+    }
+
+    private static long perft(Game game, int depth, MoveList[] moveLists) {
+        if (depth == 0) {
+            return 1;
+        }
+        MoveList moves = moveLists[depth];
+        game.getLegalMoves(moves);
+        if (depth == 1) {
+            return moves.size();
+        }
+        long nodes = 0;
+        for (int i = 0; i < moves.size(); i++) {
+            game.makeMove(moves.get(i));
+            nodes += perft(game, depth - 1, moveLists);
+            game.undoLastMove();
+        }
+        return nodes;
+    }
+
+    /**
+     * @return The perft count below each legal root move, keyed by the move's name, in move order.
+     */
+    public static Map<String, Long> divide(Game game, int depth) {
+        Map<String, Long> result = new LinkedHashMap<>();
+        MoveList moves = new MoveList();
+        game.getLegalMoves(moves);
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            game.makeMove(move);
+            result.put(Moves.toCoordinateName(move), depth > 1 ? perft(game, depth - 1) : 1);
+            game.undoLastMove();
+        }
+        return result;
+    }
+
+    /**
+     * Splits the tree at the root and counts each root move's subtree on the common fork-join pool.
+     * Each task works on its own copy of the game.
+     */
+    public static long perftParallel(Game game, int depth) {
+        if (depth < 2) {
+            return perft(game, depth);
+        }
+        MoveList moves = new MoveList();
+        game.getLegalMoves(moves);
+        RootMoveTask[] tasks = new RootMoveTask[moves.size()];
+        for (int i = 0; i < tasks.length; i++) {
+            tasks[i] = new RootMoveTask(game, moves.get(i), depth);
+            tasks[i].fork();
+        }
+        long nodes = 0;
+        for (RootMoveTask task : tasks) {
+            nodes += task.join();
+        }
+        return nodes;
+    }
+
+    /**
+     * Perft that caches subtree counts by Zobrist key and depth, so transpositions are
+     * only counted once.
+     */
+    public long perftHashed(Game game, int depth) {
+        return perftHashed(game, depth, newMoveLists(depth));
+    }
+
+    private long perftHashed(Game game, int depth, MoveList[] moveLists) {
+        if (depth <= 1) {
+            return perft(game, depth, moveLists);
+        }
+        long key = game.getZobristKey() ^ depthKey(depth);
+        int index = (int) key & hashMask;
+        long cachedCount = hashCounts[index];
+        if ((hashKeys[index] ^ cachedCount) == key) {
+            return cachedCount;
+        }
+
+        MoveList moves = moveLists[depth];
+        game.getLegalMoves(moves);
+        long nodes = 0;
+        for (int i = 0; i < moves.size(); i++) {
+            game.makeMove(moves.get(i));
+            nodes += perftHashed(game, depth - 1, moveLists);
+            game.undoLastMove();
+        }
+        hashCounts[index] = nodes;
+        hashKeys[index] = key ^ nodes;
+        return nodes;
+    }
+
+    // Mixes the depth into the key so counts for different depths don't alias.
+    private static long depthKey(int depth) {
+        return depth * 0x9E3779B97F4A7C15L;
+    }
+
+    // One list per remaining depth, so each ply of the recursion reuses its own buffer.
+    private static MoveList[] newMoveLists(int depth) {
+        MoveList[] moveLists = new MoveList[Math.max(0, depth) + 1];
+        for (int i = 0; i < moveLists.length; i++) {
+            moveLists[i] = new MoveList();
+        }
+        return moveLists;
+    }
+
+    // Counts the subtree under one root move, on a copy of the game. Encoded moves only refer
+    // to squares, so the root move is valid in the copy as well.
+    private static class RootMoveTask extends RecursiveTask<Long> {
+        private final Game game;
+        private final int move;
+        private final int depth;
+
+        RootMoveTask(Game root, int move, int depth) {
+            this.game = new Game(root);
+            this.move = move;
+            this.depth = depth;
+        }
+
+        @Override
+        protected Long compute() {
+            game.makeMove(move);
+            return perft(game, depth - 1);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package games.chess.engine;
+
+import games.chess.model.Game;
+import games.chess.model.InvalidFENFileException;
+import games.chess.model.Parser;
+
+import java.io.PrintStream;
+import java.util.function.Consumer;
+
+/**
+ * Measures what each of the Search's selective techniques saves: a fixed set of positions is
+ * searched to a fixed depth with everything enabled, then with each technique disabled in turn,
+ * and the total nodes and time of each configuration are printed.
+ *
+ * Usage: PruningBenchmark [depth]
+ */
+public class PruningBenchmark {
+
+    private static final int DEFAULT_DEPTH = 8;
+
+    // The start position, Kiwipete and the other perft positions, which between them have
+    // open and closed middlegames and an endgame.
+    static final String[] POSITIONS = new String[]{
+            "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+            "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+            "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+            "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+            "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10",
+    };
+
+    private PruningBenchmark() {}
+
+    public static void main(String[] args) throws InvalidFENFileException {
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_DEPTH;
+        benchmark(POSITIONS, depth, System.out);
+    }
+
+    /**
+     * Searches every position to the depth with a fresh Search per position, once per
+     * configuration, and prints one line per configuration. An untimed pass with everything
+     * enabled runs first to warm up the JIT.
+     */
+    public static void benchmark(String[] fens, int depth, PrintStream output) throws InvalidFENFileException {
+        run(fens, depth, search -> {});
+        report("all enabled", run(fens, depth, search -> {}), output);
+        report("no null move pruning", run(fens, depth, search -> search.setNullMovePruning(false)), output);
+        report("no late move reductions", run(fens, depth, search -> search.setLateMoveReductions(false)), output);
+        report("no futility pruning", run(fens, depth, search -> search.setFutilityPruning(false)), output);
+        report("no aspiration windows", run(fens, depth, search -> search.setAspirationWindows(false)), output);
+    }
+
+    /**
+     * @return The total nodes and milliseconds, in that order, to search all the positions.
+     */
+    static long[] run(String[] fens, int depth, Consumer<Search> configure) throws InvalidFENFileException {
+        Parser parser = new Parser();
+        long nodes = 0;
+        long millis = 0;
+        for (String fen : fens) {
+            Game game = parser.parseFromFENString(fen);
+            Search search = new Search();
+            configure.accept(search);
+            SearchResult result = search.search(game, depth, Long.MAX_VALUE, Long.MAX_VALUE);
+            nodes += search.getNodes();
+            millis += result.getElapsedMillis();
+        }
+        return new long[]{nodes, millis};
+    }
+
+    private static void report(String configuration, long[] totals, PrintStream output) {
+        long millis = Math.max(1, totals[1]);
+        output.printf("%-24s nodes %d time %dms nps %d%n",
+                configuration, totals[0], millis, totals[0] * 1000 / millis);
+    }
+}
@@ -0,0 +1,571 @@
+package games.chess.engine;
+
+import games.ai.TranspositionTable;
+import games.chess.model.Game;
+import games.chess.model.InvalidFENFileException;
+import games.chess.model.MoveList;
+import games.chess.model.Moves;
+import games.chess.model.Parser;
+import games.chess.model.Tablebase;
+import games.chess.model.piece.Piece;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.util.Arrays;
+
+/**
+ * An alpha-beta chess search over games.chess.model.Game.
+ *
+ * The search is a negamax principal variation search (PVS): the first move at each node is
+ * searched with the full window and the rest with a null window, re-searching only those that
+ * turn out better. Results are kept in a TranspositionTable, whose best moves are tried first;
+ * a MoveOrderer orders the rest by MVV-LVA, killer moves and history. At the horizon, a
+ * quiescence search plays out captures that don't lose material by static exchange (see
+ * StaticExchange) before evaluating. Pawn structure scores are cached in a PawnHashTable of
+ * the search's own. Iterative deepening searches depth 1, 2, 3, ... until a depth, time or
+ * node limit is reached, and reports the result of the deepest completed iteration.
+ *
+ * The game is searched in place with int-encoded moves and a MovePicker per ply, which
+ * generates moves in stages as they are needed, so the search allocates almost nothing.
+ * A Search is not thread-safe, but several can share one table.
+ *
+ * Usage: Search &lt;FEN file or FEN string&gt; &lt;milliseconds&gt; [max depth]
+ */
+public class Search {
+
+    public static final int INFINITY = 32000;
+    public static final int MATE = 31000;
+    public static final int MAX_PLY = 128;
+
+    private static final int DEFAULT_HASH_MB = 64;
+    private static final int PAWN_HASH_KB = 1024;
+    // How often, in nodes, the clock is read.
+    private static final int TIME_CHECK_INTERVAL = 1024;
+
+    // Aspiration windows start this wide around the last iteration's score, from this depth on.
+    private static final int ASPIRATION_WINDOW = 25;
+    private static final int ASPIRATION_MIN_DEPTH = 4;
+    // Null-move pruning is only tried this far from the horizon.
+    private static final int NULL_MOVE_MIN_DEPTH = 3;
+    // By how much the static evaluation must trail alpha, by depth, for quiet moves to be
+    // pruned. Only depths 1 and 2 are pruned.
+    private static final int[] FUTILITY_MARGINS = new int[]{0, 200, 500};
+    // Late moves are only reduced this far from the horizon, and from this many moves on.
+    private static final int LMR_MIN_DEPTH = 3;
+    private static final int LMR_MIN_MOVES = 3;
+    // Indexed by [depth][moves searched]. Grows with the log of each.
+    private static final int[][] REDUCTIONS = new int[64][64];
+
+    static {
+        for (int depth = 1; depth < REDUCTIONS.length; depth++) {
+            for (int moves = 1; moves < REDUCTIONS[depth].length; moves++) {
+                REDUCTIONS[depth][moves] = (int) (0.75 + Math.log(depth) * Math.log(moves) / 2.25);
+            }
+        }
+    }
+
+    private final TranspositionTable table;
+    // Pawn structures are cached per Search, so threads sharing `table` don't share this.
+    private final PawnHashTable pawnTable = new PawnHashTable(PAWN_HASH_KB);
+    private final long[] keyStack = new long[MAX_PLY + 1];
+    // Whether the move made at each ply on the current path was a null move.
+    private final boolean[] nullMoves = new boolean[MAX_PLY + 1];
+    private final MoveOrderer orderer = new MoveOrderer(MAX_PLY);
+    private final StaticExchange exchange = new StaticExchange();
+    private final MovePicker[] pickers = new MovePicker[MAX_PLY + 1];
+    // For checking the moves of the principal variation.
+    private final MoveList legalMoves = new MoveList();
+    private PrintStream infoOutput = null;
+    private Tablebase tablebase = null;
+    // The first iteration's depth. Lazy SMP helpers start deeper so they don't all repeat
+    // the main thread's work (see ParallelSearch).
+    private int startDepth = 1;
+    // Each selective technique can be switched off, to measure what it saves.
+    private boolean nullMovePruning = true;
+    private boolean lateMoveReductions = true;
+    private boolean futilityPruning = true;
+    private boolean aspirationWindows = true;
+
+    private Game game;
+    private long nodes;
+    private long nodeLimit;
+    private long deadlineNanos;
+    private volatile boolean stopRequested;
+    private boolean stopped;
+    private boolean canStop;
+    private int rootBestMove;
+
+    public Search() {
+        this(new TranspositionTable(DEFAULT_HASH_MB));
+    }
+
+    public Search(TranspositionTable table) {
+        this.table = table;
+        for (int i = 0; i < pickers.length; i++) {
+            pickers[i] = new MovePicker(orderer);
+        }
+    }
+
+    public static void main(String[] args) throws FileNotFoundException, InvalidFENFileException {
+        if (args.length < 2) {
+            System.out.println("Usage: Search <FEN file or FEN string> <milliseconds> [max depth]");
+            return;
+        }
+        Parser parser = new Parser();
+        Game game = new File(args[0]).isFile()
+                ? parser.parseFromFENFile(args[0])
+                : parser.parseFromFENString(args[0]);
+        long millis = Long.parseLong(args[1]);
+        int maxDepth = args.length > 2 ? Integer.parseInt(args[2]) : MAX_PLY;
+        Search search = new Search();
+        search.setInfoOutput(System.out);
+        SearchResult result = search.search(game, maxDepth, millis, Long.MAX_VALUE);
+        System.out.printf("first move cutoffs %.1f%%, pawn hash hit rate %.1f%%%n",
+                100 * search.getMoveOrderer().getFirstMoveCutoffRate(),
+                100 * search.getPawnHashTable().getHitRate());
+        System.out.println("bestmove " + Moves.toCoordinateName(result.getBestMove()));
+    }
+
+    /**
+     * @param infoOutput a stream to print a line to after each completed iteration, or null.
+     */
+    public void setInfoOutput(PrintStream infoOutput) {
+        this.infoOutput = infoOutput;
+    }
+
+    void clearStop() {
+        stopRequested = false;
+    }
+
+    public void setNullMovePruning(boolean enabled) {
+        this.nullMovePruning = enabled;
+    }
+
+    public void setLateMoveReductions(boolean enabled) {
+        this.lateMoveReductions = enabled;
+    }
+
+    public void setFutilityPruning(boolean enabled) {
+        this.futilityPruning = enabled;
+    }
+
+    public void setAspirationWindows(boolean enabled) {
+        this.aspirationWindows = enabled;
+    }
+
+    /**
+     * @param tablebase endgame tables to take exact scores from once few enough pieces are
+     *                  left, or null to search those endgames like any other position.
+     */
+    public void setTablebase(Tablebase tablebase) {
+        this.tablebase = tablebase;
+    }
+
+    void setStartDepth(int startDepth) {
+        this.startDepth = Math.max(1, startDepth);
+    }
+
+    public TranspositionTable getTranspositionTable() {
+        return table;
+    }
+
+    public PawnHashTable getPawnHashTable() {
+        return pawnTable;
+    }
+
+    public MoveOrderer getMoveOrderer() {
+        return orderer;
+    }
+
+    /**
+     * Searches the position with iterative deepening. The game is left as it was.
+     * The first iteration is always completed, whatever the limits, so a legal move is always found
+     * unless stop() is called.
+     * @param maxDepth the deepest iteration to run.
+     * @param timeLimitMillis the time to stop by. No new iteration is started once half of it has passed.
+     * @param nodeLimit the number of nodes to stop after.
+     * @return The result of the deepest completed iteration.
+     */
+    public SearchResult search(Game game, int maxDepth, long timeLimitMillis, long nodeLimit) {
+        stopRequested = false;
+        return iterativeDeepening(game, maxDepth, timeLimitMillis, nodeLimit);
+    }
+
+    // The search itself. Lazy SMP helpers call this directly: they are stopped from another
+    // thread, possibly before they start, so their stop flag is cleared before they are started.
+    SearchResult iterativeDeepening(Game game, int maxDepth, long timeLimitMillis, long nodeLimit) {
+        this.game = game;
+        this.nodes = 0;
+        this.nodeLimit = nodeLimit;
+        this.stopped = false;
+        long startNanos = System.nanoTime();
+        long timeLimitNanos = Math.min(Math.max(1, timeLimitMillis), Long.MAX_VALUE / 4_000_000) * 1_000_000;
+        this.deadlineNanos = startNanos + timeLimitNanos;
+        table.newSearch();
+        orderer.newSearch();
+
+        SearchResult result = new SearchResult(Moves.NONE, 0, 0, 0, 0, new int[0]);
+        for (int depth = Math.min(startDepth, maxDepth); depth <= Math.min(maxDepth, MAX_PLY); depth++) {
+            canStop = depth > startDepth;
+            int score = searchRoot(depth, result.getScore());
+            if (stopped && canStop) {
+                break;
+            }
+            long elapsedMillis = (System.nanoTime() - startNanos) / 1_000_000;
+            result = new SearchResult(rootBestMove, score, depth, nodes, elapsedMillis, getPrincipalVariation(depth));
+            if (infoOutput != null) {
+                infoOutput.println(result);
+            }
+            if (rootBestMove == Moves.NONE || Math.abs(score) >= MATE - depth) {
+                break; // No legal moves, or a forced mate found within the full-width depth.
+            }
+            if (System.nanoTime() - startNanos > timeLimitNanos / 2) {
+                break; // The next iteration would likely not finish in time.
+            }
+        }
+        return result;
+    }
+
+    // Searches the root to the given depth. With aspiration windows, the search expects a score
+    // near the last iteration's and uses a narrow window around it, which cuts off more. If the
+    // score falls outside, the window is widened on that side and the root searched again.
+    private int searchRoot(int depth, int previousScore) {
+        int delta = ASPIRATION_WINDOW;
+        int alpha = -INFINITY;
+        int beta = INFINITY;
+        if (aspirationWindows && depth >= ASPIRATION_MIN_DEPTH && Math.abs(previousScore) < MATE - MAX_PLY) {
+            alpha = previousScore - delta;
+            beta = previousScore + delta;
+        }
+        while (true) {
+            rootBestMove = Moves.NONE;
+            int score = negamax(depth, 0, alpha, beta);
+            if (stopped) {
+                return score;
+            }
+            if (score <= alpha && alpha > -INFINITY) {
+                alpha = Math.max(-INFINITY, score - delta);
+            } else if (score >= beta && beta < INFINITY) {
+                beta = Math.min(INFINITY, score + delta);
+            } else {
+                return score;
+            }
+            delta *= 2;
+        }
+    }
+
+    /**
+     * Asks a running search to stop as soon as possible. It is safe to call from another thread.
+     * A search stopped during its first iteration returns the best root move found so far.
+     */
+    public void stop() {
+        stopRequested = true;
+    }
+
+    /**
+     * @return The nodes visited by the current or last search.
+     */
+    public long getNodes() {
+        return nodes;
+    }
+
+    // Returns the score of the position for the player to move, searched to the given depth.
+    // Once the search is stopped, the returned scores are meaningless and are thrown away.
+    private int negamax(int depth, int ply, int alpha, int beta) {
+        if (stopped) {
+            return 0; // E.g. a re-search after a reduced search that was stopped.
+        }
+        if (depth <= 0) {
+            return quiescence(ply, alpha, beta);
+        }
+        if (++nodes % TIME_CHECK_INTERVAL == 0 || nodes >= nodeLimit) {
+            checkLimits();
+        }
+        if (stopped) {
+            return 0;
+        }
+        long key = game.getZobristKey();
+        keyStack[ply] = key;
+        if (ply > 0 && isRepetition(ply)) {
+            return 0;
+        }
+        if (ply >= MAX_PLY) {
+            return Evaluator.evaluate(game, pawnTable);
+        }
+        // The root still needs a move, so it is searched even when the table has the result.
+        if (ply > 0 && tablebase != null && Long.bitCount(game.getOccupancy()) <= Tablebase.MAX_PIECES) {
+            int value = tablebase.probe(game);
+            if (value != Tablebase.NOT_FOUND) {
+                return scoreFromTablebase(value, ply);
+            }
+        }
+
+        int ttMove = Moves.NONE;
+        long entry = table.probe(key);
+        if (entry != 0) {
+            ttMove = TranspositionTable.getMove(entry);
+            if (ply > 0 && TranspositionTable.getDepth(entry) >= depth) {
+                int ttScore = scoreFromTable(TranspositionTable.getScore(entry), ply);
+                int bound = TranspositionTable.getBound(entry);
+                if (bound == TranspositionTable.BOUND_EXACT
+                        || (bound == TranspositionTable.BOUND_LOWER && ttScore >= beta)
+                        || (bound == TranspositionTable.BOUND_UPPER && ttScore <= alpha)) {
+                    return ttScore;
+                }
+            }
+        }
+
+        boolean isPvNode = beta - alpha > 1;
+        boolean inCheck = game.isActivePlayerInCheck();
+        // The static evaluation, for the pruning decisions below. Not needed in check or at
+        // PV nodes, where nothing is pruned.
+        int staticEval = inCheck || isPvNode ? -INFINITY : Evaluator.evaluate(game, pawnTable);
+
+        // Null-move pruning: if passing the turn still fails high on a reduced search, a real
+        // move would too. This fails in zugzwang, where moving is worse than passing, so it's
+        // not tried with only pawns left (where zugzwang is common), twice in a row, or in check.
+        if (nullMovePruning && !isPvNode && !inCheck && ply > 0 && depth >= NULL_MOVE_MIN_DEPTH
+                && !nullMoves[ply - 1] && staticEval >= beta && hasPiecesOtherThanPawns(game.isWhiteToMove())) {
+            int reduction = 2 + depth / 4;
+            game.makeNullMove();
+            nullMoves[ply] = true;
+            int score = -negamax(depth - 1 - reduction, ply + 1, -beta, -beta + 1);
+            nullMoves[ply] = false;
+            game.undoLastMove();
+            if (stopped) {
+                return 0;
+            }
+            if (score >= beta) {
+                // A mate found after passing isn't proven, so it isn't returned as one.
+                return score >= MATE - MAX_PLY ? beta : score;
+            }
+        }
+
+        // Futility pruning: near the leaves, quiet moves can't raise a position this far below
+        // alpha, so they are skipped once one move has been searched.
+        boolean canPruneQuietMoves = futilityPruning && !isPvNode && !inCheck && depth < FUTILITY_MARGINS.length
+                && Math.abs(alpha) < MATE - MAX_PLY && staticEval + FUTILITY_MARGINS[depth] <= alpha;
+
+        MovePicker picker = pickers[ply];
+        picker.reset(game, ply, ttMove, false);
+        int originalAlpha = alpha;
+        int bestScore = -INFINITY;
+        int bestMove = Moves.NONE;
+        int movesSearched = 0;
+        for (int move = picker.next(); move != Moves.NONE; move = picker.next()) {
+            boolean isQuiet = picker.getMoveStage() >= MovePicker.KILLERS;
+            game.makeMove(move);
+            if (game.isInactivePlayerInCheck()) {
+                game.undoLastMove(); // The picker's moves are only pseudo-legal.
+                continue;
+            }
+            boolean givesCheck = game.isActivePlayerInCheck();
+            if (canPruneQuietMoves && movesSearched > 0 && isQuiet && !givesCheck) {
+                game.undoLastMove();
+                continue;
+            }
+            int score;
+            if (movesSearched == 0) {
+                score = -negamax(depth - 1, ply + 1, -beta, -alpha);
+            } else {
+                // Late-move reductions: quiet moves that come late in the ordering are rarely
+                // best, so they get a shallower null-window search first. Killers aren't reduced.
+                int reduction = 0;
+                if (lateMoveReductions && depth >= LMR_MIN_DEPTH && !inCheck && !givesCheck
+                        && picker.getMoveStage() == MovePicker.QUIETS && movesSearched >= LMR_MIN_MOVES) {
+                    reduction = getReduction(depth, movesSearched, isPvNode);
+                }
+                score = -negamax(depth - 1 - reduction, ply + 1, -alpha - 1, -alpha);
+                if (reduction > 0 && score > alpha) {
+                    score = -negamax(depth - 1, ply + 1, -alpha - 1, -alpha);
+                }
+                if (score > alpha && score < beta) {
+                    score = -negamax(depth - 1, ply + 1, -beta, -alpha);
+                }
+            }
+            game.undoLastMove();
+            if (stopped) {
+                return 0;
+            }
+
+            if (score > bestScore) {
+                bestScore = score;
+                bestMove = move;
+                if (ply == 0) {
+                    rootBestMove = move;
+                }
+                if (score > alpha) {
+                    alpha = score;
+                    if (alpha >= beta) {
+                        orderer.recordCutoff(game.isWhiteToMove(), move, ply, depth, movesSearched);
+                        break;
+                    }
+                }
+            }
+            movesSearched++;
+        }
+        if (bestMove == Moves.NONE) {
+            // No legal move: checkmate or stalemate. (Futility pruning never skips the first move.)
+            return game.isActivePlayerInCheck() ? -MATE + ply : 0;
+        }
+
+        int bound = bestScore >= beta ? TranspositionTable.BOUND_LOWER
+                : bestScore > originalAlpha ? TranspositionTable.BOUND_EXACT
+                : TranspositionTable.BOUND_UPPER;
+        table.store(key, bestMove, scoreToTable(bestScore, ply), depth, bound);
+        return bestScore;
+    }
+
+    // Searches captures only, until the position is quiet, so the evaluation isn't taken in
+    // the middle of an exchange. The player to move may "stand pat" on the static evaluation
+    // rather than capture, except in check, where every move out of check is searched.
+    private int quiescence(int ply, int alpha, int beta) {
+        if (stopped) {
+            return 0;
+        }
+        if (++nodes % TIME_CHECK_INTERVAL == 0 || nodes >= nodeLimit) {
+            checkLimits();
+        }
+        if (stopped) {
+            return 0;
+        }
+        if (ply >= MAX_PLY) {
+            return Evaluator.evaluate(game, pawnTable);
+        }
+
+        boolean inCheck = game.isActivePlayerInCheck();
+        int bestScore = -INFINITY;
+        if (!inCheck) {
+            bestScore = Evaluator.evaluate(game, pawnTable);
+            if (bestScore >= beta) {
+                return bestScore;
+            }
+            alpha = Math.max(alpha, bestScore);
+        }
+
+        MovePicker picker = pickers[ply];
+        picker.reset(game, ply, Moves.NONE, !inCheck);
+        boolean hasLegalMove = false;
+        for (int move = picker.next(); move != Moves.NONE; move = picker.next()) {
+            // A capture that loses material can't do better than standing pat.
+            if (!inCheck && !Moves.isPromotion(move) && !exchange.isAtLeast(game, move, 0)) {
+                continue;
+            }
+            game.makeMove(move);
+            if (game.isInactivePlayerInCheck()) {
+                game.undoLastMove(); // The picker's moves are only pseudo-legal.
+                continue;
+            }
+            hasLegalMove = true;
+            int score = -quiescence(ply + 1, -beta, -alpha);
+            game.undoLastMove();
+            if (stopped) {
+                return 0;
+            }
+            if (score > bestScore) {
+                bestScore = score;
+                if (score > alpha) {
+                    alpha = score;
+                    if (alpha >= beta) {
+                        break;
+                    }
+                }
+            }
+        }
+        if (inCheck && !hasLegalMove) {
+            return -MATE + ply;
+        }
+        return bestScore;
+    }
+
+    // Whether the position at this ply already occurred on the path from the root. Only
+    // positions with the same player to move can repeat, so every other ply is checked.
+    // A null move breaks the chain: positions before it weren't reached by real moves.
+    private boolean isRepetition(int ply) {
+        long key = keyStack[ply];
+        for (int i = ply - 2; i >= 0; i -= 2) {
+            if (nullMoves[i] || nullMoves[i + 1]) {
+                return false;
+            }
+            if (keyStack[i] == key) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean hasPiecesOtherThanPawns(boolean isWhite) {
+        return (game.getOccupancy(isWhite) & ~game.getPieceBoard(isWhite, Piece.PAWN)
+                & ~game.getPieceBoard(isWhite, Piece.KING)) != 0;
+    }
+
+    // How many plies to reduce the nth move searched by. Reductions grow with both the depth
+    // and how late the move comes, and are one less at PV nodes.
+    private static int getReduction(int depth, int movesSearched, boolean isPvNode) {
+        int reduction = REDUCTIONS[Math.min(depth, REDUCTIONS.length - 1)][Math.min(movesSearched, 63)];
+        if (isPvNode) {
+            reduction--;
+        }
+        // Leave at least one ply to search.
+        return Math.max(0, Math.min(reduction, depth - 2));
+    }
+
+    private void checkLimits() {
+        if (stopRequested || (canStop && (nodes >= nodeLimit || System.nanoTime() - deadlineNanos >= 0))) {
+            stopped = true;
+        }
+    }
+
+    // Follows best moves through the table from the root, checking each is legal.
+    private int[] getPrincipalVariation(int maxLength) {
+        int[] line = new int[maxLength];
+        int length = 0;
+        while (length < maxLength) {
+            int move = length == 0 ? rootBestMove : TranspositionTable.getMove(table.probe(game.getZobristKey()));
+            game.getLegalMoves(legalMoves);
+            if (move == Moves.NONE || !legalMoves.contains(move)) {
+                break;
+            }
+            line[length++] = move;
+            game.makeMove(move);
+        }
+        for (int i = 0; i < length; i++) {
+            game.undoLastMove();
+        }
+        return Arrays.copyOf(line, length);
+    }
+
+    // Mate scores are stored relative to the position, not the root, so they stay right
+    // when the position is reached at a different ply.
+    private static int scoreToTable(int score, int ply) {
+        if (score >= MATE - MAX_PLY) {
+            return score + ply;
+        } else if (score <= -MATE + MAX_PLY) {
+            return score - ply;
+        }
+        return score;
+    }
+
+    private static int scoreFromTable(int score, int ply) {
+        if (score >= MATE - MAX_PLY) {
+            return score - ply;
+        } else if (score <= -MATE + MAX_PLY) {
+            return score + ply;
+        }
+        return score;
+    }
+
+    // A tablebase mate is counted in plies from the position, so it becomes a mate score
+    // like one the search found that many plies further on.
+    private static int scoreFromTablebase(int value, int ply) {
+        switch (Tablebase.getOutcome(value)) {
+            case Tablebase.WIN:
+                return MATE - ply - Tablebase.getPliesToMate(value);
+            case Tablebase.LOSS:
+                return -MATE + ply + Tablebase.getPliesToMate(value);
+            default:
+                return 0;
+        }
+    }
+}
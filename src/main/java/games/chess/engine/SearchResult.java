@@ -0,0 +1,97 @@
+package games.chess.engine;
+
+import games.chess.model.Moves;
+
+/**
+ * The outcome of a Search: the best move found at the deepest completed iteration,
+ * with its score and the effort spent.
+ */
+public class SearchResult {
+
+    private final int bestMove;
+    private final int score;
+    private final int depth;
+    private final long nodes;
+    private final long elapsedMillis;
+    private final int[] principalVariation;
+
+    public SearchResult(int bestMove, int score, int depth, long nodes, long elapsedMillis,
+                        int[] principalVariation) {
+        this.bestMove = bestMove;
+        this.score = score;
+        this.depth = depth;
+        this.nodes = nodes;
+        this.elapsedMillis = elapsedMillis;
+        this.principalVariation = principalVariation;
+    }
+
+    /**
+     * @return The best move as an encoded move (see Moves), or Moves.NONE if there is no legal move.
+     */
+    public int getBestMove() {
+        return bestMove;
+    }
+
+    /**
+     * @return The score in centipawns for the player to move. Scores beyond
+     * Search.MATE - Search.MAX_PLY mean a forced mate (see getMateDistance()).
+     */
+    public int getScore() {
+        return score;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public long getNodesPerSecond() {
+        return nodes * 1000 / Math.max(1, elapsedMillis);
+    }
+
+    /**
+     * @return The expected line of play, starting with the best move.
+     */
+    public int[] getPrincipalVariation() {
+        return principalVariation.clone();
+    }
+
+    /**
+     * @return The number of moves (not plies) to the mate the score predicts: positive if the
+     * player to move mates, negative if they are mated, or 0 if the score isn't a mate score.
+     */
+    public int getMateDistance() {
+        if (Math.abs(score) < Search.MATE - Search.MAX_PLY) {
+            return 0;
+        }
+        int plies = Search.MATE - Math.abs(score);
+        return score > 0 ? (plies + 1) / 2 : -(plies + 1) / 2;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("depth ").append(depth);
+        int mateDistance = getMateDistance();
+        if (mateDistance != 0) {
+            builder.append(" score mate ").append(mateDistance);
+        } else {
+            builder.append(" score cp ").append(score);
+        }
+        builder.append(" nodes ").append(nodes)
+                .append(" nps ").append(getNodesPerSecond())
+                .append(" time ").append(elapsedMillis)
+                .append(" pv");
+        for (int move : principalVariation) {
+            builder.append(' ').append(Moves.toCoordinateName(move));
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,114 @@
+package games.chess.engine;
+
+import games.chess.model.Game;
+import games.chess.model.Move;
+import games.chess.model.Moves;
+import games.chess.model.piece.Piece;
+
+/**
+ * Static exchange evaluation (SEE): the material a move wins or loses if both sides keep
+ * recapturing on its destination square, each with their least valuable piece, and either
+ * side may stop when recapturing would lose material. Nothing is moved on the board; the
+ * exchange is played out on bitboards, so it is cheap enough to call for every capture.
+ *
+ * Searches use it to order captures and to skip those that lose material. A StaticExchange
+ * keeps the gains of the exchange in its own array, so evaluating allocates nothing, but each
+ * search thread needs its own.
+ */
+public final class StaticExchange {
+
+    // The king isn't in Evaluator.PIECE_VALUES, since it is never captured. Here it is worth
+    // more than everything else put together, so a king only "recaptures" when nothing can
+    // take it back.
+    private static final int KING_VALUE = 20000;
+    // An exchange can't have more captures than there are pieces.
+    private static final int MAX_CAPTURES = 32;
+
+    // What the side making each capture has gained if the exchange stops after it.
+    private final int[] gains = new int[MAX_CAPTURES];
+
+    /**
+     * @param move a Move from game.getLegalMoves(). Its captured piece is valued from the Move.
+     * @return The material the move wins for the mover, in centipawns. Negative if it loses material.
+     */
+    public int evaluate(Game game, Move move) {
+        return evaluate(game, Moves.encode(move));
+    }
+
+    /**
+     * @param move an encoded move (see Moves) for the player to move in the game.
+     * @return The material the move wins for the mover, in centipawns. Negative if it loses material.
+     * Quiet moves score 0 unless the piece moves somewhere it can be won.
+     */
+    public int evaluate(Game game, int move) {
+        if (Moves.isCastle(move)) {
+            return 0;
+        }
+        int from = Moves.getFrom(move);
+        int to = Moves.getTo(move);
+        Piece mover = game.getPieceAt(from);
+        boolean side = !mover.isWhite();
+        long occupied = game.getOccupancy() ^ (1L << from);
+
+        int pieceOnSquare = mover.getTypeIndex();
+        if (Moves.isEnPassant(move)) {
+            gains[0] = getValue(Piece.PAWN);
+            occupied ^= 1L << (mover.isWhite() ? to - 8 : to + 8);
+        } else {
+            Piece captured = game.getPieceAt(to);
+            gains[0] = captured == null ? 0 : getValue(captured.getTypeIndex());
+        }
+        if (Moves.isPromotion(move)) {
+            pieceOnSquare = Moves.getPromotionTypeIndex(move);
+            gains[0] += getValue(pieceOnSquare) - getValue(Piece.PAWN);
+        }
+
+        long attackers = game.getAttackers(to, occupied);
+        int depth = 0;
+        while (depth < MAX_CAPTURES - 1) {
+            long sideAttackers = attackers & game.getOccupancy(side);
+            if (sideAttackers == 0) {
+                break;
+            }
+            // The least valuable attacker recaptures.
+            int type = Piece.PAWN;
+            long attacker = 0L;
+            for (; type <= Piece.KING; type++) {
+                attacker = sideAttackers & game.getPieceBoard(side, type);
+                if (attacker != 0) {
+                    break;
+                }
+            }
+            depth++;
+            // What this side has gained if the exchange stops after its capture.
+            gains[depth] = getValue(pieceOnSquare) - gains[depth - 1];
+            occupied ^= Long.lowestOneBit(attacker);
+            // Removing the attacker can reveal a slider behind it.
+            attackers = game.getAttackers(to, occupied);
+            pieceOnSquare = type;
+            side = !side;
+        }
+        // Each side chooses between recapturing and stopping, from the last capture back.
+        while (depth > 0) {
+            gains[depth - 1] = -Math.max(-gains[depth - 1], gains[depth]);
+            depth--;
+        }
+        return gains[0];
+    }
+
+    /**
+     * @return Whether the move wins at least `threshold` centipawns by static exchange.
+     * For example isAtLeast(game, move, 0) tells whether a capture doesn't lose material.
+     */
+    public boolean isAtLeast(Game game, int move, int threshold) {
+        return evaluate(game, move) >= threshold;
+    }
+
+    /**
+     * @return The value this class gives a piece type, which Search also uses to order captures:
+     * the Evaluator's value, or KING_VALUE for the king.
+     */
+    public static int getValue(int typeIndex) {
+        return typeIndex == Piece.KING ? KING_VALUE : Evaluator.PIECE_VALUES[typeIndex];
+    }
+}
@@ -0,0 +1,185 @@
+package games.chess.model;
+
+/**
+ * Static helpers and precomputed attack tables for bitboards.
+ *
+ * A bitboard is a long where bit i is set if square i is occupied. Squares are
+ * indexed rank by rank starting from a1, so a1 = 0, h1 = 7, a2 = 8, ..., h8 = 63.
+ */
+public final class Bitboards {
+
+    public static final long FILE_A = 0x0101010101010101L;
+    public static final long FILE_H = FILE_A << 7;
+    public static final long RANK_1 = 0xFFL;
+    public static final long RANK_2 = RANK_1 << 8;
+    public static final long RANK_3 = RANK_1 << 16;
+    public static final long RANK_6 = RANK_1 << 40;
+    public static final long RANK_7 = RANK_1 << 48;
+    public static final long RANK_8 = RANK_1 << 56;
+
+    static final long[] KNIGHT_ATTACKS = new long[64];
+    static final long[] KING_ATTACKS = new long[64];
+
+    // Indexed by [colour][square], where colour 0 is white and 1 is black.
+    // Holds the squares a pawn of that colour on that square attacks.
+    static final long[][] PAWN_ATTACKS = new long[2][64];
+
+    // Rays for each of the 8 directions, not including the origin square.
+    // Directions 0-3 move towards higher square indexes, 4-7 towards lower ones.
+    private static final int[] RAY_FILE_STEPS = new int[] {0, 1, 1, -1, 0, -1, -1, 1};
+    private static final int[] RAY_RANK_STEPS = new int[] {1, 1, 0, 1, -1, -1, 0, -1};
+    private static final long[][] RAYS = new long[8][64];
+    // Indexed by [square][square]. For two squares on a common rank, file or diagonal, BETWEEN
+    // holds the squares strictly between them and LINE the whole line through both, edge to
+    // edge. Both are 0 for squares that aren't aligned.
+    private static final long[][] BETWEEN = new long[64][64];
+    private static final long[][] LINE = new long[64][64];
+
+    static {
+        int[] knightFiles = new int[]{1, 2, 2, 1, -1, -2, -2, -1};
+        int[] knightRanks = new int[]{2, 1, -1, -2, -2, -1, 1, 2};
+        int[] kingFiles = new int[]{0, 1, 1, 1, 0, -1, -1, -1};
+        int[] kingRanks = new int[]{1, 1, 0, -1, -1, -1, 0, 1};
+        for (int square = 0; square < 64; square++) {
+            int file = fileOf(square);
+            int rank = rankOf(square);
+            for (int i = 0; i < 8; i++) {
+                KNIGHT_ATTACKS[square] |= bitAt(file + knightFiles[i], rank + knightRanks[i]);
+                KING_ATTACKS[square] |= bitAt(file + kingFiles[i], rank + kingRanks[i]);
+            }
+            PAWN_ATTACKS[0][square] = bitAt(file - 1, rank + 1) | bitAt(file + 1, rank + 1);
+            PAWN_ATTACKS[1][square] = bitAt(file - 1, rank - 1) | bitAt(file + 1, rank - 1);
+
+            for (int dir = 0; dir < 8; dir++) {
+                int f = file + RAY_FILE_STEPS[dir];
+                int r = rank + RAY_RANK_STEPS[dir];
+                while (f >= 0 && f < 8 && r >= 0 && r < 8) {
+                    RAYS[dir][square] |= 1L << index(f, r);
+                    f += RAY_FILE_STEPS[dir];
+                    r += RAY_RANK_STEPS[dir];
+                }
+            }
+        }
+        for (int square = 0; square < 64; square++) {
+            for (int dir = 0; dir < 8; dir++) {
+                // Direction dir ^ 4 points the opposite way.
+                long line = RAYS[dir][square] | RAYS[dir ^ 4][square] | (1L << square);
+                for (long targets = RAYS[dir][square]; targets != 0; targets &= targets - 1) {
+                    int target = lowestSquare(targets);
+                    BETWEEN[square][target] = RAYS[dir][square] & RAYS[dir ^ 4][target];
+                    LINE[square][target] = line;
+                }
+            }
+        }
+    }
+
+    private Bitboards() {}
+
+    public static int index(int fileIndex, int rankIndex) {
+        return (rankIndex << 3) | fileIndex;
+    }
+
+    public static int fileOf(int square) {
+        return square & 7;
+    }
+
+    public static int rankOf(int square) {
+        return square >>> 3;
+    }
+
+    /**
+     * @return The index of the lowest set bit. Undefined if the board is empty.
+     */
+    public static int lowestSquare(long board) {
+        return Long.numberOfTrailingZeros(board);
+    }
+
+    public static int count(long board) {
+        return Long.bitCount(board);
+    }
+
+    /**
+     * @return The squares strictly between two squares on the same rank, file or diagonal,
+     * or 0 if they aren't aligned.
+     */
+    public static long between(int from, int to) {
+        return BETWEEN[from][to];
+    }
+
+    /**
+     * @return The whole rank, file or diagonal through two squares, or 0 if they aren't aligned.
+     */
+    public static long line(int from, int to) {
+        return LINE[from][to];
+    }
+
+    public static long knightAttacks(int square) {
+        return KNIGHT_ATTACKS[square];
+    }
+
+    public static long kingAttacks(int square) {
+        return KING_ATTACKS[square];
+    }
+
+    /**
+     * @return The squares attacked by a pawn of the given colour standing on the square.
+     */
+    public static long pawnAttacks(boolean isWhite, int square) {
+        return PAWN_ATTACKS[isWhite ? 0 : 1][square];
+    }
+
+    /**
+     * Looks up the rook attacks in the magic bitboard tables.
+     * @param occupied all occupied squares. The first blocker along each ray is included.
+     * @return The squares a rook on the square attacks.
+     */
+    public static long rookAttacks(int square, long occupied) {
+        return MagicBitboards.rookAttacks(square, occupied);
+    }
+
+    /**
+     * Looks up the bishop attacks in the magic bitboard tables.
+     * @param occupied all occupied squares. The first blocker along each ray is included.
+     * @return The squares a bishop on the square attacks.
+     */
+    public static long bishopAttacks(int square, long occupied) {
+        return MagicBitboards.bishopAttacks(square, occupied);
+    }
+
+    public static long queenAttacks(int square, long occupied) {
+        return MagicBitboards.rookAttacks(square, occupied) | MagicBitboards.bishopAttacks(square, occupied);
+    }
+
+    // Ray-walking versions of the slider attacks. These are used to build the magic tables
+    // and as a reference in tests; move generation should use the table lookups above.
+    static long slowRookAttacks(int square, long occupied) {
+        return rayAttacks(0, square, occupied) | rayAttacks(2, square, occupied)
+                | rayAttacks(4, square, occupied) | rayAttacks(6, square, occupied);
+    }
+
+    static long slowBishopAttacks(int square, long occupied) {
+        return rayAttacks(1, square, occupied) | rayAttacks(3, square, occupied)
+                | rayAttacks(5, square, occupied) | rayAttacks(7, square, occupied);
+    }
+
+    // Returns the ray from the square in the given direction, cut off after the first blocker.
+    private static long rayAttacks(int dir, int square, long occupied) {
+        long ray = RAYS[dir][square];
+        long blockers = ray & occupied;
+        if (blockers == 0) {
+            return ray;
+        }
+        int blocker = dir < 4
+                ? Long.numberOfTrailingZeros(blockers)
+                : 63 - Long.numberOfLeadingZeros(blockers);
+        return ray ^ RAYS[dir][blocker];
+    }
+
+    // Returns the bit for the given square, or 0 if the square is off the board.
+    private static long bitAt(int fileIndex, int rankIndex) {
+        if (fileIndex < 0 || fileIndex > 7 || rankIndex < 0 || rankIndex > 7) {
+            return 0L;
+        }
+        return 1L << index(fileIndex, rankIndex);
+    }
+}
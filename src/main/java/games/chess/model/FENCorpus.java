@@ -0,0 +1,306 @@
+package games.chess.model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A file of positions, one FEN or EPD record per line, read without loading it onto the heap.
+ *
+ * The file is memory-mapped and cut into chunks of about a megabyte that end at line breaks
+ * (see MappedChunks).
+ * The chunks are what gets parsed in parallel: stream() splits them between the threads of
+ * a parallel Stream, and forEach() parses them on a fork-join pool, one task per pool
+ * thread, and hands the Games to the caller through a bounded queue, so a slow consumer
+ * holds back the parsing rather than letting parsed positions pile up in memory.
+ *
+ * Each line is parsed in place from the mapped bytes (see Parser.parseFromFEN()). EPD lines,
+ * which have only the first four FEN fields followed by operations such as "bm Nf3;", are
+ * read as FEN with a halfmove clock of 0 and move number 1. Blank lines are skipped; any
+ * other line that can't be parsed makes the stream or forEach() throw an
+ * IllegalArgumentException giving its byte offset.
+ */
+public class FENCorpus {
+
+    private final MappedChunks chunks;
+
+    public FENCorpus(Path file) throws IOException {
+        this(file, MappedChunks.DEFAULT_CHUNK_BYTES);
+    }
+
+    /**
+     * @param chunkBytes roughly how many bytes to parse per chunk. A chunk is longer when it
+     *                   needs to be to end at a line break.
+     */
+    FENCorpus(Path file, int chunkBytes) throws IOException {
+        chunks = new MappedChunks(file, chunkBytes, (buffer, index) -> buffer.get(index - 1) == '\n', "line");
+    }
+
+    public int getChunkCount() {
+        return chunks.size();
+    }
+
+    /**
+     * @return The file's positions in order, as new Games. The stream can be made parallel,
+     * in which case each thread parses whole chunks.
+     */
+    public Stream<Game> stream() {
+        return StreamSupport.stream(new LineSpliterator(0, 0, chunks.size()), false);
+    }
+
+    /**
+     * Parses the file on the common fork-join pool and passes each position to the consumer
+     * on the calling thread, in no particular order.
+     * @param queueCapacity how many parsed positions can wait for the consumer.
+     * @return The number of positions.
+     * @throws IllegalArgumentException if a line can't be parsed.
+     */
+    public long forEach(Consumer<? super Game> consumer, int queueCapacity) throws InterruptedException {
+        return forEach(consumer, queueCapacity, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * As forEach(consumer, queueCapacity), parsing on the given pool. No more tasks parse at
+     * once than the pool's parallelism, and a task waiting for room in the queue holds its
+     * thread, so a slow consumer never makes the pool add threads.
+     */
+    public long forEach(Consumer<? super Game> consumer, int queueCapacity, ForkJoinPool pool)
+            throws InterruptedException {
+        if (chunks.size() == 0) {
+            return 0;
+        }
+        BlockingQueue<Game> queue = new ArrayBlockingQueue<>(queueCapacity);
+        // The first error from parsing, which stops the other tasks.
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        // Set when the consumer stops early, so the tasks stop waiting for room in the queue.
+        AtomicBoolean abandoned = new AtomicBoolean();
+        BooleanSupplier stopped = () -> failure.get() != null || abandoned.get();
+        // Each task takes the next unparsed chunk until there are none left.
+        AtomicInteger nextChunk = new AtomicInteger();
+        int tasks = Math.min(pool.getParallelism(), chunks.size());
+        AtomicInteger running = new AtomicInteger(tasks);
+        for (int i = 0; i < tasks; i++) {
+            pool.execute(() -> {
+                try {
+                    for (int chunk = nextChunk.getAndIncrement(); chunk < chunks.size() && !stopped.getAsBoolean();
+                         chunk = nextChunk.getAndIncrement()) {
+                        LineSpliterator lines = new LineSpliterator(chunk, 0, chunk + 1);
+                        while (!stopped.getAsBoolean() && lines.tryAdvance(game -> put(queue, game, stopped))) {
+                            // Each position is queued by tryAdvance.
+                        }
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                } finally {
+                    if (running.decrementAndGet() == 0) {
+                        // Only a consumer that has stopped taking can miss the end.
+                        put(queue, END, abandoned::get);
+                    }
+                }
+            });
+        }
+        long count = 0;
+        try {
+            for (Game game = queue.take(); game != END; game = queue.take()) {
+                consumer.accept(game);
+                count++;
+            }
+        } catch (Throwable e) {
+            abandoned.set(true);
+            throw e;
+        }
+        Throwable error = failure.get();
+        if (error instanceof RuntimeException) {
+            throw (RuntimeException) error;
+        } else if (error instanceof Error) {
+            throw (Error) error;
+        }
+        return count;
+    }
+
+    // Marks the end of the queue. Never given to a consumer.
+    private static final Game END = new Game();
+
+    /**
+     * Puts the game in the queue, waiting for room. The wait is a plain one that the pool
+     * doesn't make up for with another thread.
+     * @param giveUp whether to stop waiting, checked while there is no room.
+     */
+    private static void put(BlockingQueue<Game> queue, Game game, BooleanSupplier giveUp) {
+        try {
+            while (!queue.offer(game, 10, TimeUnit.MILLISECONDS)) {
+                if (giveUp.getAsBoolean()) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Iterates over the lines of a range of chunks.
+     */
+    private final class LineSpliterator extends MappedChunks.RangeSpliterator<Game> {
+        private final Parser parser = new Parser();
+        private final Line line = new Line();
+        private int position;
+
+        /**
+         * @param chunk the first chunk.
+         * @param position where to start reading in the first chunk.
+         * @param end one past the last chunk.
+         */
+        LineSpliterator(int chunk, int position, int end) {
+            // FEN records average about 60 bytes.
+            super(FENCorpus.this.chunks, chunk, end, 60);
+            this.position = position;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Game> action) {
+            while (chunk < end) {
+                ByteBuffer buffer = chunks.get(chunk);
+                if (position >= buffer.limit()) {
+                    chunk++;
+                    position = 0;
+                    continue;
+                }
+                int lineStart = position;
+                int lineEnd = lineStart;
+                while (lineEnd < buffer.limit() && buffer.get(lineEnd) != '\n') {
+                    lineEnd++;
+                }
+                position = lineEnd + 1;
+                if (line.set(buffer, lineStart, lineEnd)) {
+                    try {
+                        action.accept(parser.parseFromFEN(line));
+                    } catch (InvalidFENFileException e) {
+                        throw new IllegalArgumentException("Cannot parse the line at byte "
+                                + (chunks.getOffset(chunk) + lineStart) + " of " + chunks.getFile(), e);
+                    }
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        LineSpliterator splitOff(int middle) {
+            LineSpliterator prefix = new LineSpliterator(chunk, position, middle);
+            position = 0;
+            return prefix;
+        }
+
+        @Override
+        int getPosition() {
+            return position;
+        }
+    }
+
+    /**
+     * A line of the mapped file as a CharSequence for the Parser, without copying it. An EPD
+     * line is cut after its fourth field and given FEN's last two fields.
+     */
+    private static final class Line implements CharSequence {
+        private static final String EPD_COUNTERS = " 0 1";
+
+        private ByteBuffer buffer;
+        private int start;
+        private int length;
+        private boolean isEpd;
+
+        /**
+         * Points at the line, with surrounding whitespace (including a \r) left out.
+         * @return false if the line is blank.
+         */
+        boolean set(ByteBuffer buffer, int start, int end) {
+            while (start < end && buffer.get(start) <= ' ') {
+                start++;
+            }
+            while (end > start && buffer.get(end - 1) <= ' ') {
+                end--;
+            }
+            this.buffer = buffer;
+            this.start = start;
+            this.length = end - start;
+            this.isEpd = false;
+            // A FEN record has exactly two numeric fields after the fourth; otherwise treat
+            // it as EPD, and cut it at the end of the fourth field.
+            int spaces = 0;
+            for (int i = start; i < end; i++) {
+                if (buffer.get(i) == ' ' && ++spaces == 4) {
+                    if (!isFENCounters(buffer, i, end)) {
+                        this.length = i - start;
+                        this.isEpd = true;
+                    }
+                    break;
+                }
+            }
+            // Four fields and nothing more is EPD with no operations.
+            isEpd |= spaces == 3;
+            return length > 0;
+        }
+
+        // Whether the text from `from` (a space) to `end` is " <digits> <digits>".
+        private static boolean isFENCounters(ByteBuffer buffer, int from, int end) {
+            int fields = 0;
+            boolean inDigits = false;
+            for (int i = from; i < end; i++) {
+                byte b = buffer.get(i);
+                if (b == ' ') {
+                    if (!inDigits && i != from) {
+                        return false;
+                    }
+                    inDigits = false;
+                } else if (b >= '0' && b <= '9') {
+                    if (!inDigits) {
+                        fields++;
+                        inDigits = true;
+                    }
+                } else {
+                    return false;
+                }
+            }
+            return fields == 2 && inDigits;
+        }
+
+        @Override
+        public int length() {
+            return isEpd ? length + EPD_COUNTERS.length() : length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index >= length) {
+                return EPD_COUNTERS.charAt(index - length);
+            }
+            return (char) (buffer.get(start + index) & 0xFF);
+        }
+
+        @Override
+        public CharSequence subSequence(int from, int to) {
+            return toString().substring(from, to);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder(length());
+            for (int i = 0; i < length(); i++) {
+                text.append(charAt(i));
+            }
+            return text.toString();
+        }
+    }
+}
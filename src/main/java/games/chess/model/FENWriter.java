@@ -0,0 +1,172 @@
+package games.chess.model;
+
+import games.chess.model.piece.Piece;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes positions as FEN records, e.g. "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+ * or as EPD, which is the first four FEN fields without the move counters.
+ *
+ * The writer is meant for dumping positions in bulk: a record is written as ASCII into a byte
+ * array the writer keeps and copied out to a caller's StringBuilder or ByteBuffer, so nothing
+ * is allocated per position once those have grown. A FENWriter can be reused for any number
+ * of games, but not from several threads at once.
+ */
+public class FENWriter {
+
+    /**
+     * The longest record that can be written: 64 squares and 7 slashes, the side to move, four
+     * castling letters, an en-passant square, two counters of up to 10 digits and 5 spaces.
+     */
+    public static final int MAX_LENGTH = 71 + 1 + 4 + 2 + 10 + 10 + 5;
+
+    // FEN letters indexed by getBoardIndex(): white's types, then black's.
+    private static final byte[] PIECE_LETTERS = "PNBRQKpnbrqk".getBytes(StandardCharsets.US_ASCII);
+
+    private final byte[] buffer = new byte[MAX_LENGTH];
+    // The record in the buffer widened to chars, so a StringBuilder can take it in one append.
+    private final char[] chars = new char[MAX_LENGTH];
+
+    /**
+     * @return The game's position as a FEN record.
+     */
+    public String toFEN(Game game) {
+        return new String(buffer, 0, write(game, buffer, 0, true), StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * @return The game's position as an EPD record, without any operations.
+     */
+    public String toEPD(Game game) {
+        return new String(buffer, 0, write(game, buffer, 0, false), StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Appends the game's position as a FEN record, without a line break.
+     */
+    public void appendFEN(Game game, StringBuilder out) {
+        append(write(game, buffer, 0, true), out);
+    }
+
+    /**
+     * Appends the game's position as an EPD record, without a line break. Operations such as
+     * "bm Nf3;" can be appended after a space.
+     */
+    public void appendEPD(Game game, StringBuilder out) {
+        append(write(game, buffer, 0, false), out);
+    }
+
+    /**
+     * Puts the game's position as an ASCII FEN record at the buffer's position, which moves
+     * past it.
+     * @throws java.nio.BufferOverflowException if the record doesn't fit.
+     */
+    public void writeFEN(Game game, ByteBuffer out) {
+        out.put(buffer, 0, write(game, buffer, 0, true));
+    }
+
+    /**
+     * Puts the game's position as an ASCII EPD record at the buffer's position, which moves
+     * past it.
+     * @throws java.nio.BufferOverflowException if the record doesn't fit.
+     */
+    public void writeEPD(Game game, ByteBuffer out) {
+        out.put(buffer, 0, write(game, buffer, 0, false));
+    }
+
+    /**
+     * Writes the game's position as ASCII straight into an array, with no copying at all.
+     * There must be room for MAX_LENGTH bytes from the offset.
+     * @param withCounters true for a FEN record, false for EPD.
+     * @return The offset just past the record.
+     */
+    public static int write(Game game, byte[] out, int offset, boolean withCounters) {
+        int i = offset;
+        long occupied = game.getOccupancy();
+        for (int rank = 7; rank >= 0; rank--) {
+            // Only the occupied squares are looked at; the runs of empty squares between them
+            // come from the gaps in the rank's bits.
+            int rankBits = (int) (occupied >>> (rank * 8)) & 0xFF;
+            int file = 0;
+            while (rankBits != 0) {
+                int next = Integer.numberOfTrailingZeros(rankBits);
+                if (next > file) {
+                    out[i++] = (byte) ('0' + next - file);
+                }
+                Piece piece = game.getPieceAt(Bitboards.index(next, rank));
+                out[i++] = PIECE_LETTERS[Game.getBoardIndex(piece.isWhite(), piece.getTypeIndex())];
+                file = next + 1;
+                rankBits &= rankBits - 1;
+            }
+            if (file < 8) {
+                out[i++] = (byte) ('0' + 8 - file);
+            }
+            if (rank > 0) {
+                out[i++] = '/';
+            }
+        }
+
+        out[i++] = ' ';
+        out[i++] = (byte) (game.isWhiteToMove() ? 'w' : 'b');
+
+        out[i++] = ' ';
+        int castlingStart = i;
+        Player white = game.getWhitePlayer();
+        Player black = game.getBlackPlayer();
+        if (white.canCastleKingside) {
+            out[i++] = 'K';
+        }
+        if (white.canCastleQueenside) {
+            out[i++] = 'Q';
+        }
+        if (black.canCastleKingside) {
+            out[i++] = 'k';
+        }
+        if (black.canCastleQueenside) {
+            out[i++] = 'q';
+        }
+        if (i == castlingStart) {
+            out[i++] = '-';
+        }
+
+        out[i++] = ' ';
+        Square enPassantSquare = game.getEnPassantSquare();
+        if (enPassantSquare == null) {
+            out[i++] = '-';
+        } else {
+            out[i++] = (byte) ('a' + enPassantSquare.getFileIndex());
+            out[i++] = (byte) ('1' + enPassantSquare.getRankIndex());
+        }
+
+        if (withCounters) {
+            out[i++] = ' ';
+            i = writeNumber(game.getHalfmoveClock(), out, i);
+            out[i++] = ' ';
+            i = writeNumber(game.getFullmoveNumber(), out, i);
+        }
+        return i;
+    }
+
+    // Writes the decimal digits of a non-negative number and returns the offset past them.
+    private static int writeNumber(int value, byte[] out, int offset) {
+        int digits = 1;
+        for (int rest = value / 10; rest > 0; rest /= 10) {
+            digits++;
+        }
+        int end = offset + digits;
+        for (int i = end - 1; i >= offset; i--) {
+            out[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        return end;
+    }
+
+    private void append(int length, StringBuilder out) {
+        for (int i = 0; i < length; i++) {
+            chars[i] = (char) buffer[i];
+        }
+        out.append(chars, 0, length);
+    }
+}
@@ -1,20 +1,65 @@
 package games.chess.model;
 
 import games.chess.model.piece.Piece;
+import games.common.RegularMove;
+import games.common.ReversibleGame;
 
-import java.util.ArrayDeque;
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Deque;
 
-public class Game {
+public class Game implements ReversibleGame {
+
+    private static final int INITIAL_HISTORY_CAPACITY = 128;
+
+    // Castling rights (see Zobrist) that survive a move touching each square. Moving the king
+    // or a rook off its starting square, or capturing a rook on it, loses the matching rights.
+    private static final int[] CASTLING_MASKS = new int[64];
+
+    static {
+        Arrays.fill(CASTLING_MASKS, Zobrist.WHITE_KINGSIDE | Zobrist.WHITE_QUEENSIDE
+                | Zobrist.BLACK_KINGSIDE | Zobrist.BLACK_QUEENSIDE);
+        CASTLING_MASKS[0] &= ~Zobrist.WHITE_QUEENSIDE;
+        CASTLING_MASKS[4] &= ~(Zobrist.WHITE_KINGSIDE | Zobrist.WHITE_QUEENSIDE);
+        CASTLING_MASKS[7] &= ~Zobrist.WHITE_KINGSIDE;
+        CASTLING_MASKS[56] &= ~Zobrist.BLACK_QUEENSIDE;
+        CASTLING_MASKS[60] &= ~(Zobrist.BLACK_KINGSIDE | Zobrist.BLACK_QUEENSIDE);
+        CASTLING_MASKS[63] &= ~Zobrist.BLACK_KINGSIDE;
+    }
 
     private boolean whiteToMove;
     private final Piece[][] board;
-    private final Player whitePlayer;
-    private final Player blackPlayer;
-    private final Deque<Move> moveHistory;
+    // Bitboards kept in sync with `board`. See Bitboards for the square numbering.
+    // pieceBoards is indexed by getBoardIndex(isWhite, typeIndex), colourBoards by white = 0, black = 1.
+    private final long[] pieceBoards = new long[12];
+    private final long[] colourBoards = new long[2];
+    private Player whitePlayer;
+    private Player blackPlayer;
+    // The move history, as stacks indexed by ply, so making a move doesn't allocate.
+    // A move made as a Move object is kept in moveHistory. An int-encoded move (see Moves)
+    // leaves null there, and what undoing it needs is kept in the other stacks.
+    private Move[] moveHistory = new Move[INITIAL_HISTORY_CAPACITY];
+    private int[] encodedMoveHistory = new int[INITIAL_HISTORY_CAPACITY];
+    private Piece[] moverHistory = new Piece[INITIAL_HISTORY_CAPACITY];
+    private Piece[] capturedHistory = new Piece[INITIAL_HISTORY_CAPACITY];
+    private int[] castlingRightsHistory = new int[INITIAL_HISTORY_CAPACITY];
+    private Square[] enPassantHistory = new Square[INITIAL_HISTORY_CAPACITY];
+    private int[] halfmoveClockHistory = new int[INITIAL_HISTORY_CAPACITY];
+    // Pieces that pawns promote to in int-encoded moves, reused per ply and board index.
+    private Piece[][] promotedPieces = new Piece[INITIAL_HISTORY_CAPACITY][];
+    private int historySize = 0;
     private Square enPassantSquare;
+    // The FEN move counters: plies since the last capture or pawn move, and the number of the
+    // current full move, which goes up after each of black's moves.
+    private int halfmoveClock;
+    private int fullmoveNumber = 1;
+    // Zobrist key of the position, kept up to date by setPieceAt, makeMove and undoLastMove.
+    private long zobristKey;
+    // Zobrist key of the pawns alone, for caching pawn-structure evaluation. Also kept by setPieceAt.
+    private long pawnKey;
+    // Sums of the pieces' PieceSquareTables values from white's point of view, and the game
+    // phase. Like the piece keys, setPieceAt keeps these up to date.
+    private int middlegameScore;
+    private int endgameScore;
+    private int phase;
     
     
     public Game() {
@@ -22,10 +67,10 @@ public class Game {
         board = new Piece[8][8];
         whitePlayer = new Player(true);
         blackPlayer = new Player(false);
-        moveHistory = new ArrayDeque<>();
         enPassantSquare = null;
         loadPiecePositionsToBoard(whitePlayer);
         loadPiecePositionsToBoard(blackPlayer);
+        zobristKey = computeZobristKey();
     }
 
 
@@ -36,29 +81,59 @@ public class Game {
      * @param black the black Player, with all its pieces.
      */
     public Game(boolean whiteToMove, Player white, Player black, Square enPassantSquare) {
-        this.whiteToMove = whiteToMove;
         this.board = new Piece[8][8];
+        reset(whiteToMove, white, black, enPassantSquare);
+    }
+
+    /**
+     * Replaces the position in place, as if this Game had just been created from the Players,
+     * so a Game can be reused to load many positions (see Parser.parseInto()). The move
+     * history is cleared, but its arrays are kept.
+     */
+    void reset(boolean whiteToMove, Player white, Player black, Square enPassantSquare) {
+        for (Piece[] file : board) {
+            Arrays.fill(file, null);
+        }
+        Arrays.fill(pieceBoards, 0L);
+        Arrays.fill(colourBoards, 0L);
+        // Drop the references the history holds so old pieces can be collected.
+        Arrays.fill(moveHistory, 0, historySize, null);
+        Arrays.fill(moverHistory, 0, historySize, null);
+        Arrays.fill(capturedHistory, 0, historySize, null);
+        Arrays.fill(enPassantHistory, 0, historySize, null);
+        historySize = 0;
+        halfmoveClock = 0;
+        fullmoveNumber = 1;
+        pawnKey = 0L;
+        middlegameScore = 0;
+        endgameScore = 0;
+        phase = 0;
+        this.whiteToMove = whiteToMove;
         this.whitePlayer = white;
         this.blackPlayer = black;
-        this.moveHistory = new ArrayDeque<>();
-        this.enPassantSquare = enPassantSquare;
+        // Parser gives an off-board square when the FEN has no en-passant target.
+        this.enPassantSquare = enPassantSquare != null && enPassantSquare.isOnBoard() ? enPassantSquare : null;
         loadPiecePositionsToBoard(white);
         loadPiecePositionsToBoard(black);
+        this.zobristKey = computeZobristKey();
     }
 
     /**
      * Creates a deep copy of the given game, including copying Players and pieces. 
+     * The copy starts with an empty move history, like a Game loaded from a FEN file.
      * @param toCopy a Game to copy, so we can modify the new one without changing the original. 
      */
-    private Game(Game toCopy) {
+    public Game(Game toCopy) {
         this.whiteToMove = toCopy.whiteToMove;
         this.board = new Piece[8][8];
         this.whitePlayer = new Player(toCopy.whitePlayer);
         this.blackPlayer = new Player(toCopy.blackPlayer);
-        this.moveHistory = new ArrayDeque<>(toCopy.moveHistory);
         this.enPassantSquare = toCopy.enPassantSquare;
+        this.halfmoveClock = toCopy.halfmoveClock;
+        this.fullmoveNumber = toCopy.fullmoveNumber;
         loadPiecePositionsToBoard(whitePlayer);
         loadPiecePositionsToBoard(blackPlayer);
+        this.zobristKey = computeZobristKey();
     }
 
     public Piece getPieceAt(Square square) {
@@ -69,7 +144,39 @@ public class Game {
     }
     
     public Piece getPieceAt(String squareName) {
-        return getPieceAt(new Square(squareName));
+        return getPieceAt(Square.of(squareName));
+    }
+
+    /**
+     * @param squareIndex a square index between 0 (a1) and 63 (h8).
+     */
+    public Piece getPieceAt(int squareIndex) {
+        return board[Bitboards.fileOf(squareIndex)][Bitboards.rankOf(squareIndex)];
+    }
+
+    /**
+     * @return A bitboard of the squares holding the given colour's pieces of the given type.
+     */
+    public long getPieceBoard(boolean isWhite, int typeIndex) {
+        return pieceBoards[getBoardIndex(isWhite, typeIndex)];
+    }
+
+    /**
+     * @return A bitboard of the squares holding the given colour's pieces.
+     */
+    public long getOccupancy(boolean isWhite) {
+        return colourBoards[isWhite ? 0 : 1];
+    }
+
+    /**
+     * @return A bitboard of all occupied squares.
+     */
+    public long getOccupancy() {
+        return colourBoards[0] | colourBoards[1];
+    }
+
+    public boolean isWhiteToMove() {
+        return whiteToMove;
     }
 
     public Player getActivePlayer() {
@@ -88,10 +195,137 @@ public class Game {
         return blackPlayer;
     }
     
+    @Override
+    public String getCurrentPlayer() {
+        return whiteToMove ? "White" : "Black";
+    }
+
+    @Override
+    public String getLastPlayer() {
+        return whiteToMove ? "Black" : "White";
+    }
+
+    /**
+     * @return The player who has checkmated their opponent, or null if nobody has.
+     * A stalemate is finished but has no winner.
+     */
+    @Override
+    public String getWinner() {
+        if (hasLegalMove() || !isActivePlayerInCheck()) {
+            return null;
+        }
+        return getLastPlayer();
+    }
+
+    /**
+     * @return Whether the player to move is checkmated or stalemated.
+     */
+    @Override
+    public boolean isFinished() {
+        return !hasLegalMove();
+    }
+
+    /**
+     * @return A copy of this game with the move made. The move must be one of getLegalMoves().
+     * Searches should prefer makeMove() and undoLastMove(), which don't copy the game.
+     */
+    @Override
+    public Game cloneWithUpdate(RegularMove move) {
+        if (!(move instanceof Move)) {
+            return this;
+        }
+        Game clone = new Game(this);
+        // The Move refers to this game's pieces; its encoding only refers to squares.
+        clone.makeMove(Moves.encode((Move) move));
+        return clone;
+    }
+
+    /**
+     * @return A 64-bit Zobrist key identifying this position: pieces, side to move,
+     * castling rights and en-passant square.
+     */
+    public long getZobristKey() {
+        return zobristKey;
+    }
+
+    /**
+     * Computes the Zobrist key from scratch. getZobristKey() should always equal this;
+     * it is kept up to date incrementally instead.
+     */
+    public long computeZobristKey() {
+        long key = 0L;
+        for (int boardIndex = 0; boardIndex < pieceBoards.length; boardIndex++) {
+            for (long pieces = pieceBoards[boardIndex]; pieces != 0; pieces &= pieces - 1) {
+                key ^= Zobrist.PIECES[boardIndex][Bitboards.lowestSquare(pieces)];
+            }
+        }
+        key ^= Zobrist.CASTLING[Zobrist.getCastlingRights(whitePlayer, blackPlayer)];
+        key ^= Zobrist.enPassantKey(enPassantSquare);
+        if (!whiteToMove) {
+            key ^= Zobrist.BLACK_TO_MOVE;
+        }
+        return key;
+    }
+
+    /**
+     * @return The middlegame score of the pieces on the board (see PieceSquareTables), in
+     * centipawns from white's point of view. It is kept up to date as moves are made and undone.
+     */
+    public int getMiddlegameScore() {
+        return middlegameScore;
+    }
+
+    /**
+     * @return The endgame score of the pieces on the board (see PieceSquareTables), in
+     * centipawns from white's point of view. It is kept up to date as moves are made and undone.
+     */
+    public int getEndgameScore() {
+        return endgameScore;
+    }
+
+    /**
+     * @return The game phase, from PieceSquareTables.MAX_PHASE for a full set of pieces
+     * down to 0 when only kings and pawns are left.
+     */
+    public int getPhase() {
+        return phase;
+    }
+
+    /**
+     * @return A Zobrist key of where the pawns of each colour are, and nothing else. Positions
+     * with the same pawn structure share it. It is kept up to date like getZobristKey().
+     */
+    public long getPawnKey() {
+        return pawnKey;
+    }
+
     public Square getEnPassantSquare() {
         return enPassantSquare;
     }
 
+    /**
+     * @return The number of plies since the last capture or pawn move, for the fifty-move rule.
+     */
+    public int getHalfmoveClock() {
+        return halfmoveClock;
+    }
+
+    /**
+     * @return The number of the current full move. It starts at 1 and goes up after black moves.
+     */
+    public int getFullmoveNumber() {
+        return fullmoveNumber;
+    }
+
+    /**
+     * Sets the move counters, as read from a FEN record. These are kept up to date as moves
+     * are made and undone.
+     */
+    void setMoveCounters(int halfmoveClock, int fullmoveNumber) {
+        this.halfmoveClock = halfmoveClock;
+        this.fullmoveNumber = fullmoveNumber;
+    }
+
     public Piece getEnPassantCapturablePiece() {
         if (enPassantSquare == null) {
             return null;
@@ -101,25 +335,81 @@ public class Game {
         // Therefore, it is always on either the 3rd or 6th rank and the corresponding
         // pawn is always on either the 4th (index 3) or 5th (index 4) rank.
         int rankIndex = enPassantSquare.getRankIndex() == 2 ? 3 : 4;
-        return getPieceAt(new Square(enPassantSquare.getFileIndex(), rankIndex));
+        return getPieceAt(Square.of(enPassantSquare.getFileIndex(), rankIndex));
     }
 
     /**
      * @return Whether the current player to move is in check.
      */
     public boolean isActivePlayerInCheck() {
-        Square target = getActivePlayer().getKing().getSquare();
-        Move[] attackingMoves = getInactivePlayer().getCapableMoves(this);
-        return canHitSquare(attackingMoves, target);
+        return isKingAttacked(whiteToMove);
     }
 
     /**
      * @return Whether the player whose turn it *isn't* is in check. This is an illegal position.
      */
     public boolean isInactivePlayerInCheck() {
-        Square target = getInactivePlayer().getKing().getSquare();
-        Move[] attackingMoves = getActivePlayer().getCapableMoves(this);
-        return canHitSquare(attackingMoves, target);
+        return isKingAttacked(!whiteToMove);
+    }
+
+    /**
+     * Returns whether any of the given side's pieces attack the square, whether or not
+     * the square is occupied. This works backwards from the target: a knight attacks the
+     * square exactly when a knight on the square would attack it, and likewise for the
+     * other piece types, so only a handful of table lookups are needed.
+     * @param square the square to test.
+     * @param byWhite whether to look for white attackers (otherwise black).
+     */
+    public boolean isSquareAttacked(Square square, boolean byWhite) {
+        return isSquareAttacked(square.getIndex(), byWhite);
+    }
+
+    /**
+     * @param squareIndex a square index between 0 (a1) and 63 (h8).
+     * @param byWhite whether to look for white attackers (otherwise black).
+     * @see #isSquareAttacked(Square, boolean)
+     */
+    public boolean isSquareAttacked(int squareIndex, boolean byWhite) {
+        if ((Bitboards.pawnAttacks(!byWhite, squareIndex) & getPieceBoard(byWhite, Piece.PAWN)) != 0) {
+            return true;
+        }
+        if ((Bitboards.knightAttacks(squareIndex) & getPieceBoard(byWhite, Piece.KNIGHT)) != 0) {
+            return true;
+        }
+        if ((Bitboards.kingAttacks(squareIndex) & getPieceBoard(byWhite, Piece.KING)) != 0) {
+            return true;
+        }
+        long occupied = getOccupancy();
+        long queens = getPieceBoard(byWhite, Piece.QUEEN);
+        long diagonalAttackers = getPieceBoard(byWhite, Piece.BISHOP) | queens;
+        if ((Bitboards.bishopAttacks(squareIndex, occupied) & diagonalAttackers) != 0) {
+            return true;
+        }
+        long linearAttackers = getPieceBoard(byWhite, Piece.ROOK) | queens;
+        return (Bitboards.rookAttacks(squareIndex, occupied) & linearAttackers) != 0;
+    }
+
+    /**
+     * Returns the pieces of both colours that attack the square, as if only the squares in
+     * `occupied` held pieces. Removing a piece from `occupied` reveals any slider behind it,
+     * which is what a static exchange evaluation needs.
+     * @param squareIndex a square index between 0 (a1) and 63 (h8).
+     * @param occupied the squares to treat as occupied. Pieces outside it are left out of the result.
+     * @return A bitboard of the attacking pieces.
+     */
+    public long getAttackers(int squareIndex, long occupied) {
+        long knights = pieceBoards[Piece.KNIGHT] | pieceBoards[Piece.KNIGHT + 6];
+        long kings = pieceBoards[Piece.KING] | pieceBoards[Piece.KING + 6];
+        long queens = pieceBoards[Piece.QUEEN] | pieceBoards[Piece.QUEEN + 6];
+        long diagonal = pieceBoards[Piece.BISHOP] | pieceBoards[Piece.BISHOP + 6] | queens;
+        long linear = pieceBoards[Piece.ROOK] | pieceBoards[Piece.ROOK + 6] | queens;
+        long attackers = (Bitboards.pawnAttacks(false, squareIndex) & pieceBoards[Piece.PAWN])
+                | (Bitboards.pawnAttacks(true, squareIndex) & pieceBoards[Piece.PAWN + 6])
+                | (Bitboards.knightAttacks(squareIndex) & knights)
+                | (Bitboards.kingAttacks(squareIndex) & kings)
+                | (Bitboards.bishopAttacks(squareIndex, occupied) & diagonal)
+                | (Bitboards.rookAttacks(squareIndex, occupied) & linear);
+        return attackers & occupied;
     }
 
     /**
@@ -128,38 +418,58 @@ public class Game {
      * minus any that would leave the player in check or otherwise break the rules.
      * @return an array of Moves that can be taken in this position.
      */
+    @Override
     public Move[] getLegalMoves() {
-        Move[] capableMoves = getActivePlayer().getCapableMoves(this);
-        ArrayList<Move> legalMoves = new ArrayList<>(capableMoves.length);
-        for (Move move: capableMoves) {
-            if (move.isCastle()) {
-                // You can't castle out of check or "through" check.
-                // Look at the inactive player's current moves to see whether they can hit
-                // the King's current square or the square he passes "through".
-                Move[] opponentMoves = getInactivePlayer().getCapableMoves(this);
-                if (canHitSquare(opponentMoves, move.getOriginSquare())) {
-                    continue;
-                }
-                
-                int fileIndex = (move.getDestSquare().getFileIndex() + 4) / 2; // Average the files.
-                Square intermediate = new Square(fileIndex, move.getOriginSquare().getRankIndex());
-                if (canHitSquare(opponentMoves, intermediate)) {
-                    continue;
-                }
+        MoveList moveList = new MoveList();
+        getLegalMoves(moveList);
+        Move[] legalMoves = new Move[moveList.size()];
+        for (int i = 0; i < legalMoves.length; i++) {
+            legalMoves[i] = Moves.toMove(moveList.get(i), this);
+        }
+        return legalMoves;
+    }
+
+    /**
+     * Fills the list with the legal moves for the player to move, as int-encoded moves
+     * (see Moves). This is the version of getLegalMoves() for search code: with a MoveList
+     * kept per ply, it doesn't allocate anything.
+     * @param moves a list to fill. It is cleared first.
+     */
+    public void getLegalMoves(MoveList moves) {
+        moves.clear();
+        MoveGenerator.generateLegal(this, moves);
+    }
+
+    /**
+     * Checks a pseudo-legal move from MoveGenerator for the player to move.
+     * @return Whether the move is legal: it doesn't castle out of or through check, and
+     * doesn't leave the player's king in check.
+     */
+    public boolean isLegal(int move) {
+        if (Moves.isCastle(move)) {
+            // You can't castle out of check or "through" check.
+            // Check whether the inactive player attacks the King's current square
+            // or the square he passes "through".
+            int from = Moves.getFrom(move);
+            int intermediate = (from + Moves.getTo(move)) / 2;
+            if (isSquareAttacked(from, !whiteToMove) || isSquareAttacked(intermediate, !whiteToMove)) {
+                return false;
             }
-            
-            // Now check whether making the move would leave this player in check.
-            // If so, it is an illegal move.
-            Game cloneGame = new Game(this);
-            Move cloneMove = new Move(move, cloneGame);
-            cloneGame.makeMove(cloneMove);
-//            if (cloneGame.isInactivePlayerInCheck()) {
-//                continue;
-//            }
-            
-            legalMoves.add(move);
         }
-        return legalMoves.toArray(new Move[0]);
+
+        // Now check whether making the move would leave this player in check.
+        // The move is played and taken back in place, so no copy of the game is needed.
+        makeMove(move);
+        boolean leavesKingInCheck = isInactivePlayerInCheck();
+        undoLastMove();
+        return !leavesKingInCheck;
+    }
+
+    // Returns whether the player to move has any legal move.
+    private boolean hasLegalMove() {
+        MoveList moves = new MoveList();
+        MoveGenerator.generateLegal(this, moves);
+        return !moves.isEmpty();
     }
 
     /**
@@ -171,24 +481,141 @@ public class Game {
      * @param move a Move object returned from getLegalMoves.
      */
     public void makeMove(Move move) {
+        // Take the castling rights and en-passant square out of the key; they are added
+        // back after the move. Piece keys are updated by setPieceAt.
+        zobristKey ^= Zobrist.CASTLING[Zobrist.getCastlingRights(whitePlayer, blackPlayer)];
+        zobristKey ^= Zobrist.enPassantKey(enPassantSquare);
         if (move.isCapture()) {
             Piece captured = move.getCapturedPiece();
             captured.removeFromPlay();
             setPieceAt(captured.getSquare(), null);
+            revokeCastlingForCapturedRook(move, captured);
         } 
         getActivePlayer().makeMove(move);
         setPieceAt(move.getOriginSquare(), null);
-        setPieceAt(move.getDestSquare(), move.getMover());
+        if (move.isPromotion()) {
+            if (move.promotedPiece == null) {
+                move.promotedPiece = Piece.create(
+                        move.getPromotionTypeIndex(), move.getMover().isWhite(), move.getDestSquare());
+            }
+            getActivePlayer().replacePiece(move.getMover(), move.promotedPiece);
+            setPieceAt(move.getDestSquare(), move.promotedPiece);
+        } else {
+            setPieceAt(move.getDestSquare(), move.getMover());
+        }
+        if (move.isCastle()) {
+            moveCastlingRook(move);
+        }
+        move.previousEnPassantSquare = enPassantSquare;
         enPassantSquare = move.getEnPassantSquare();
-        moveHistory.push(move);
+        ensureHistoryCapacity(historySize + 1);
+        halfmoveClockHistory[historySize] = halfmoveClock;
+        moveHistory[historySize++] = move;
+        advanceMoveCounters(move.isCapture() || move.getMover().getTypeIndex() == Piece.PAWN);
         whiteToMove = !whiteToMove;
+        zobristKey ^= Zobrist.CASTLING[Zobrist.getCastlingRights(whitePlayer, blackPlayer)];
+        zobristKey ^= Zobrist.enPassantKey(enPassantSquare);
+        zobristKey ^= Zobrist.BLACK_TO_MOVE;
+    }
+
+    @Override
+    public void makeMove(RegularMove move) {
+        if (move instanceof Move) {
+            makeMove((Move) move);
+        }
+    }
+
+    /**
+     * Updates the game with an int-encoded move (see Moves), such as one from getLegalMoves(MoveList).
+     * This does the same as makeMove(Move) without creating any objects, so search code should
+     * use it. As with makeMove(Move), the move is assumed to be legal.
+     * @param move an encoded move for the player to move.
+     */
+    public void makeMove(int move) {
+        int from = Moves.getFrom(move);
+        int to = Moves.getTo(move);
+        int flags = Moves.getFlags(move);
+        int ply = historySize;
+        ensureHistoryCapacity(ply + 1);
+
+        int castlingRights = Zobrist.getCastlingRights(whitePlayer, blackPlayer);
+        zobristKey ^= Zobrist.CASTLING[castlingRights];
+        zobristKey ^= Zobrist.enPassantKey(enPassantSquare);
+
+        Piece mover = getPieceAt(from);
+        Piece captured = null;
+        if (flags == Moves.EN_PASSANT) {
+            captured = getEnPassantCapturablePiece();
+        } else if (Moves.isCapture(move)) {
+            captured = getPieceAt(to);
+        }
+        if (captured != null) {
+            captured.removeFromPlay();
+            setPieceAt(captured.getSquare(), null);
+        }
+        setPieceAt(mover.getSquare(), null);
+        Square dest = Square.of(to);
+        mover.setSquare(dest);
+        if (Moves.isPromotion(move)) {
+            Piece promoted = getPromotedPiece(ply, mover.isWhite(), Moves.getPromotionTypeIndex(move), dest);
+            getActivePlayer().replacePiece(mover, promoted);
+            setPieceAt(dest, promoted);
+        } else {
+            setPieceAt(dest, mover);
+        }
+        if (flags == Moves.KING_CASTLE) {
+            movePiece(from + 3, from + 1);
+        } else if (flags == Moves.QUEEN_CASTLE) {
+            movePiece(from - 4, from - 1);
+        }
+        setCastlingRights(castlingRights & CASTLING_MASKS[from] & CASTLING_MASKS[to]);
+
+        moveHistory[ply] = null;
+        encodedMoveHistory[ply] = move;
+        moverHistory[ply] = mover;
+        capturedHistory[ply] = captured;
+        castlingRightsHistory[ply] = castlingRights;
+        enPassantHistory[ply] = enPassantSquare;
+        halfmoveClockHistory[ply] = halfmoveClock;
+        historySize = ply + 1;
+
+        enPassantSquare = flags == Moves.DOUBLE_PAWN_PUSH ? Square.of((from + to) / 2) : null;
+        advanceMoveCounters(captured != null || mover.getTypeIndex() == Piece.PAWN);
+        whiteToMove = !whiteToMove;
+        zobristKey ^= Zobrist.CASTLING[Zobrist.getCastlingRights(whitePlayer, blackPlayer)];
+        zobristKey ^= Zobrist.enPassantKey(enPassantSquare);
+        zobristKey ^= Zobrist.BLACK_TO_MOVE;
+    }
+
+    /**
+     * Passes the turn to the other player without moving, as a search does to test whether
+     * a position is so good that even a free move for the opponent doesn't save them. There
+     * is no en-passant capture after a null move. Undo it with undoLastMove().
+     */
+    public void makeNullMove() {
+        int ply = historySize;
+        ensureHistoryCapacity(ply + 1);
+        zobristKey ^= Zobrist.enPassantKey(enPassantSquare);
+        moveHistory[ply] = null;
+        encodedMoveHistory[ply] = Moves.NONE;
+        moverHistory[ply] = null;
+        capturedHistory[ply] = null;
+        castlingRightsHistory[ply] = Zobrist.getCastlingRights(whitePlayer, blackPlayer);
+        enPassantHistory[ply] = enPassantSquare;
+        halfmoveClockHistory[ply] = halfmoveClock;
+        historySize = ply + 1;
+        enPassantSquare = null;
+        advanceMoveCounters(false);
+        whiteToMove = !whiteToMove;
+        zobristKey ^= Zobrist.BLACK_TO_MOVE;
     }
 
     /**
      * @return Whether we have a move in the history that we can undo.
      */
+    @Override
     public boolean canUndoLastMove() {
-        return !moveHistory.isEmpty();
+        return historySize > 0;
     }
 
     /**
@@ -198,14 +625,38 @@ public class Game {
      * 
      * If there is no move history that we can undo, this method does nothing.
      */
+    @Override
     public void undoLastMove() {
         if (!canUndoLastMove()) {
             return;
         }
         
-        Move lastMove = moveHistory.pop();
-        setPieceAt(lastMove.getOriginSquare(), lastMove.getMover());
+        zobristKey ^= Zobrist.CASTLING[Zobrist.getCastlingRights(whitePlayer, blackPlayer)];
+        zobristKey ^= Zobrist.enPassantKey(enPassantSquare);
+        
+        int ply = historySize - 1;
+        Move lastMove = moveHistory[ply];
+        if (lastMove == null) {
+            undoEncodedMove(ply);
+            return;
+        }
+        moveHistory[ply] = null;
+        historySize = ply;
+        Piece mover = lastMove.getMover();
+        Player moverPlayer = mover.isWhite() ? whitePlayer : blackPlayer;
+        Player opponent = mover.isWhite() ? blackPlayer : whitePlayer;
+        if (lastMove.isCastle()) {
+            Move rookMove = lastMove.castlingRookMove;
+            rookMove.getMover().undoMove(rookMove);
+            setPieceAt(rookMove.getDestSquare(), null);
+            setPieceAt(rookMove.getOriginSquare(), rookMove.getMover());
+        }
+        mover.undoMove(lastMove);
         setPieceAt(lastMove.getDestSquare(), null);
+        if (lastMove.isPromotion()) {
+            moverPlayer.replacePiece(lastMove.promotedPiece, mover);
+        }
+        setPieceAt(lastMove.getOriginSquare(), mover);
         
         if (lastMove.isCapture()) {
             Piece captured = lastMove.getCapturedPiece();
@@ -213,29 +664,229 @@ public class Game {
             setPieceAt(captured.getSquare(), captured);
         }
         
-        // Handle the en-passant square: peek at the preceding move (before the one 
-        // we are undoing) to see if it is a pawn double jump. If so, set the en-passant square.
-        // Note that FEN files don't have a complete move history, so undoing moves is limited.
-        enPassantSquare = moveHistory.isEmpty() ? null : moveHistory.peek().getEnPassantSquare();
+        // The move records which castling rights it took away, so give those back.
+        if (lastMove.didRevokeKingsideCastle) {
+            moverPlayer.canCastleKingside = true;
+        }
+        if (lastMove.didRevokeQueensideCastle) {
+            moverPlayer.canCastleQueenside = true;
+        }
+        if (lastMove.didRevokeOpponentKingsideCastle) {
+            opponent.canCastleKingside = true;
+        }
+        if (lastMove.didRevokeOpponentQueensideCastle) {
+            opponent.canCastleQueenside = true;
+        }
+        
+        // The move remembers the en-passant square from before it was made. This also
+        // restores a square loaded from a FEN file, which has no move history behind it.
+        enPassantSquare = lastMove.previousEnPassantSquare;
         whiteToMove = !whiteToMove;
+        restoreMoveCounters(ply);
+        zobristKey ^= Zobrist.CASTLING[Zobrist.getCastlingRights(whitePlayer, blackPlayer)];
+        zobristKey ^= Zobrist.enPassantKey(enPassantSquare);
+        zobristKey ^= Zobrist.BLACK_TO_MOVE;
     }
-    
-    
-    
+
+    // Undoes an int-encoded move or a null move. The caller has already taken the castling
+    // rights and en-passant square out of the Zobrist key.
+    private void undoEncodedMove(int ply) {
+        int move = encodedMoveHistory[ply];
+        historySize = ply;
+        if (move == Moves.NONE) {
+            // A null move: only the turn and the en-passant square changed.
+            enPassantSquare = enPassantHistory[ply];
+            whiteToMove = !whiteToMove;
+            restoreMoveCounters(ply);
+            zobristKey ^= Zobrist.CASTLING[Zobrist.getCastlingRights(whitePlayer, blackPlayer)];
+            zobristKey ^= Zobrist.enPassantKey(enPassantSquare);
+            zobristKey ^= Zobrist.BLACK_TO_MOVE;
+            return;
+        }
+        int from = Moves.getFrom(move);
+        int to = Moves.getTo(move);
+        int flags = Moves.getFlags(move);
+        Piece mover = moverHistory[ply];
+        Piece captured = capturedHistory[ply];
+
+        if (flags == Moves.KING_CASTLE) {
+            movePiece(from + 1, from + 3);
+        } else if (flags == Moves.QUEEN_CASTLE) {
+            movePiece(from - 1, from - 4);
+        }
+        if (Moves.isPromotion(move)) {
+            (mover.isWhite() ? whitePlayer : blackPlayer).replacePiece(getPieceAt(to), mover);
+        }
+        setPieceAt(Square.of(to), null);
+        Square origin = Square.of(from);
+        mover.setSquare(origin);
+        setPieceAt(origin, mover);
+        if (captured != null) {
+            captured.returnToPlay();
+            setPieceAt(captured.getSquare(), captured);
+        }
+
+        setCastlingRights(castlingRightsHistory[ply]);
+        enPassantSquare = enPassantHistory[ply];
+        whiteToMove = !whiteToMove;
+        restoreMoveCounters(ply);
+        zobristKey ^= Zobrist.CASTLING[Zobrist.getCastlingRights(whitePlayer, blackPlayer)];
+        zobristKey ^= Zobrist.enPassantKey(enPassantSquare);
+        zobristKey ^= Zobrist.BLACK_TO_MOVE;
+    }
+
+    // Updates the move counters for a move by the player to move, before the turn passes.
+    private void advanceMoveCounters(boolean resetsClock) {
+        halfmoveClock = resetsClock ? 0 : halfmoveClock + 1;
+        if (!whiteToMove) {
+            fullmoveNumber++;
+        }
+    }
+
+    // Puts back the move counters from before the move at the given ply, once the turn has
+    // passed back to the player who made it.
+    private void restoreMoveCounters(int ply) {
+        halfmoveClock = halfmoveClockHistory[ply];
+        if (!whiteToMove) {
+            fullmoveNumber--;
+        }
+    }
+
+    // Moves whatever piece is on one square to another, e.g. the rook when castling.
+    private void movePiece(int from, int to) {
+        Piece piece = getPieceAt(from);
+        setPieceAt(Square.of(from), null);
+        Square dest = Square.of(to);
+        piece.setSquare(dest);
+        setPieceAt(dest, piece);
+    }
+
+    // Returns the piece a pawn promotes to in an int-encoded move at the given ply. These are
+    // kept per ply, since a search promotes on the same plies over and over.
+    private Piece getPromotedPiece(int ply, boolean isWhite, int typeIndex, Square square) {
+        if (promotedPieces[ply] == null) {
+            promotedPieces[ply] = new Piece[12];
+        }
+        int boardIndex = getBoardIndex(isWhite, typeIndex);
+        Piece piece = promotedPieces[ply][boardIndex];
+        if (piece == null) {
+            piece = Piece.create(typeIndex, isWhite, square);
+            promotedPieces[ply][boardIndex] = piece;
+        } else {
+            piece.setSquare(square);
+        }
+        return piece;
+    }
+
+    // Sets the players' castling flags from a set of Zobrist castling rights bits.
+    private void setCastlingRights(int rights) {
+        whitePlayer.canCastleKingside = (rights & Zobrist.WHITE_KINGSIDE) != 0;
+        whitePlayer.canCastleQueenside = (rights & Zobrist.WHITE_QUEENSIDE) != 0;
+        blackPlayer.canCastleKingside = (rights & Zobrist.BLACK_KINGSIDE) != 0;
+        blackPlayer.canCastleQueenside = (rights & Zobrist.BLACK_QUEENSIDE) != 0;
+    }
+
+    private void ensureHistoryCapacity(int capacity) {
+        if (capacity <= moveHistory.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, moveHistory.length * 2);
+        moveHistory = Arrays.copyOf(moveHistory, newCapacity);
+        encodedMoveHistory = Arrays.copyOf(encodedMoveHistory, newCapacity);
+        moverHistory = Arrays.copyOf(moverHistory, newCapacity);
+        capturedHistory = Arrays.copyOf(capturedHistory, newCapacity);
+        castlingRightsHistory = Arrays.copyOf(castlingRightsHistory, newCapacity);
+        enPassantHistory = Arrays.copyOf(enPassantHistory, newCapacity);
+        halfmoveClockHistory = Arrays.copyOf(halfmoveClockHistory, newCapacity);
+        promotedPieces = Arrays.copyOf(promotedPieces, newCapacity);
+    }
+
+    // Moves the rook to the other side of the king when castling.
+    private void moveCastlingRook(Move castle) {
+        if (castle.castlingRookMove == null) {
+            int rankIndex = castle.getOriginSquare().getRankIndex();
+            boolean isKingside = castle.getDestSquare().getFileIndex() == 6;
+            Piece rook = getPieceAt(Square.of(isKingside ? 7 : 0, rankIndex));
+            castle.castlingRookMove = new Move(rook, Square.of(isKingside ? 5 : 3, rankIndex));
+        }
+        Move rookMove = castle.castlingRookMove;
+        rookMove.getMover().makeMove(rookMove);
+        setPieceAt(rookMove.getOriginSquare(), null);
+        setPieceAt(rookMove.getDestSquare(), rookMove.getMover());
+    }
+
+    // A rook captured on its starting square can no longer castle, so the opponent loses that right.
+    private void revokeCastlingForCapturedRook(Move move, Piece captured) {
+        move.didRevokeOpponentKingsideCastle = false;
+        move.didRevokeOpponentQueensideCastle = false;
+        if (captured.getTypeIndex() != Piece.ROOK) {
+            return;
+        }
+        Player opponent = getInactivePlayer();
+        int homeRankIndex = captured.isWhite() ? 0 : 7;
+        Square square = captured.getSquare();
+        if (square.getRankIndex() != homeRankIndex) {
+            return;
+        }
+        if (square.getFileIndex() == 7 && opponent.canCastleKingside) {
+            move.didRevokeOpponentKingsideCastle = true;
+            opponent.canCastleKingside = false;
+        } else if (square.getFileIndex() == 0 && opponent.canCastleQueenside) {
+            move.didRevokeOpponentQueensideCastle = true;
+            opponent.canCastleQueenside = false;
+        }
+    }
+
     private void loadPiecePositionsToBoard(Player player) {
         for (Piece piece : player.getPieces()) {
-            setPieceAt(piece.getSquare(), piece);
+            if (piece.isInPlay()) {
+                setPieceAt(piece.getSquare(), piece);
+            }
         }
     }
     
     // Private helper function since external callers should use makeMove();
+    // Keeps the bitboards, the piece part of the Zobrist key, the pawn key and the
+    // piece-square scores in sync with the board array.
     private void setPieceAt(Square square, Piece piece) {
+        Piece previous = board[square.getFileIndex()][square.getRankIndex()];
+        int squareIndex = square.getIndex();
+        long bit = 1L << squareIndex;
+        if (previous != null) {
+            int boardIndex = getBoardIndex(previous.isWhite(), previous.getTypeIndex());
+            pieceBoards[boardIndex] &= ~bit;
+            colourBoards[previous.isWhite() ? 0 : 1] &= ~bit;
+            zobristKey ^= Zobrist.PIECES[boardIndex][squareIndex];
+            if (previous.getTypeIndex() == Piece.PAWN) {
+                pawnKey ^= Zobrist.PIECES[boardIndex][squareIndex];
+            }
+            middlegameScore -= PieceSquareTables.MIDDLEGAME[boardIndex][squareIndex];
+            endgameScore -= PieceSquareTables.ENDGAME[boardIndex][squareIndex];
+            phase -= PieceSquareTables.PHASE_WEIGHTS[previous.getTypeIndex()];
+        }
         board[square.getFileIndex()][square.getRankIndex()] = piece;
+        if (piece != null) {
+            int boardIndex = getBoardIndex(piece.isWhite(), piece.getTypeIndex());
+            pieceBoards[boardIndex] |= bit;
+            colourBoards[piece.isWhite() ? 0 : 1] |= bit;
+            zobristKey ^= Zobrist.PIECES[boardIndex][squareIndex];
+            if (piece.getTypeIndex() == Piece.PAWN) {
+                pawnKey ^= Zobrist.PIECES[boardIndex][squareIndex];
+            }
+            middlegameScore += PieceSquareTables.MIDDLEGAME[boardIndex][squareIndex];
+            endgameScore += PieceSquareTables.ENDGAME[boardIndex][squareIndex];
+            phase += PieceSquareTables.PHASE_WEIGHTS[piece.getTypeIndex()];
+        }
+    }
+
+    // The index into pieceBoards for pieces of the colour and type.
+    static int getBoardIndex(boolean isWhite, int typeIndex) {
+        return isWhite ? typeIndex : typeIndex + 6;
     }
     
-    // Returns whether any of the capableMoves have <target> as their destination.
-    // This indicates whether a king on <target> is currently checked.
-    private boolean canHitSquare(Move[] capableMoves, Square target) {
-        return Arrays.stream(capableMoves).anyMatch(move -> move.getDestSquare().equals(target));
+    // Returns whether the given side's king is attacked. A side without a king is never in check.
+    private boolean isKingAttacked(boolean isWhite) {
+        long king = getPieceBoard(isWhite, Piece.KING);
+        return king != 0 && isSquareAttacked(Bitboards.lowestSquare(king), !isWhite);
     }
 }
\ No newline at end of file
@@ -0,0 +1,12 @@
+package games.chess.model;
+
+public class InvalidPGNException extends Exception {
+
+    public InvalidPGNException(String message) {
+        super(message);
+    }
+
+    public InvalidPGNException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,170 @@
+package games.chess.model;
+
+import java.util.Random;
+
+/**
+ * Precomputed "magic bitboard" attack tables for sliding pieces.
+ *
+ * For each square, the occupancy of the squares a rook (or bishop) could be blocked on is
+ * multiplied by a magic number and shifted, giving a unique index into a table of attack sets.
+ * This turns a blocker-aware sliding attack lookup into a mask, a multiply, a shift and a load.
+ *
+ * The magic numbers below were found with the seeded random search in initSquare(). Searching
+ * for them takes over a second, which is too slow to do every time the class is loaded, so the
+ * tables are built from the saved numbers. The search is still used if a saved number ever
+ * fails to index its square's table without collisions.
+ */
+final class MagicBitboards {
+
+    private static final long[] ROOK_MASKS = new long[64];
+    private static final long[] ROOK_MAGICS = new long[]{
+            0x2200108041002200L, 0x0140200040001000L, 0x2080081000802001L, 0x5280100004800801L,
+            0x0E00041018320020L, 0x0200041008010200L, 0x0400500082012408L, 0x0100018A02284100L,
+            0x1000800090204000L, 0x0080400020100040L, 0x0025002007004010L, 0x0002802800807001L,
+            0x0008800400800800L, 0x020A800200240080L, 0x0009001409000200L, 0x00020000805C2201L,
+            0x0380014020004000L, 0x2010004020004000L, 0x00A0028020807000L, 0x0008028010008148L,
+            0x0000808004000800L, 0x0906010088040100L, 0x1001010100020004L, 0x0080020001009044L,
+            0x0080400480008220L, 0x4008208200410601L, 0x0082004200201080L, 0x8040210100100008L,
+            0x8201001100080084L, 0x840A200801104004L, 0x0002000200640128L, 0x00108782000900C4L,
+            0x0000400020800090L, 0x0800401002402000L, 0x1000801000802000L, 0x020C080080801002L,
+            0xC034008008080040L, 0x1012001002000408L, 0x8400021004000108L, 0x0000208042000104L,
+            0x8000208840148001L, 0x5000402010014008L, 0x1100200010008080L, 0x2000100100210009L,
+            0x0008000402004040L, 0x4014008002008004L, 0x0842008001004040L, 0x18001640A1020004L,
+            0x1540028000442880L, 0x00C8810134400100L, 0x1020801020420200L, 0x0008090010002100L,
+            0x8014008008000480L, 0x02A2040080020080L, 0x0501000402000100L, 0x0002044405008600L,
+            0x8040208002110843L, 0x2000110820428202L, 0x2086200070084103L, 0x2800100104210009L,
+            0x0852002004100802L, 0x4019000400080201L, 0x4000014210008804L, 0x1002042049028402L
+    };
+    private static final int[] ROOK_SHIFTS = new int[64];
+    private static final long[][] ROOK_TABLE = new long[64][];
+
+    private static final long[] BISHOP_MASKS = new long[64];
+    private static final long[] BISHOP_MAGICS = new long[]{
+            0x0128283800440425L, 0x200202040C008158L, 0x00B408020054000AL, 0x00880A0320004014L,
+            0x5044042001100000L, 0x0895010842C82000L, 0x0008482844102000L, 0x0122010C02020200L,
+            0x080010A0080080B0L, 0x022008104400A220L, 0x0000484881020062L, 0x4000209200400000L,
+            0x0000040420061490L, 0x0100484110500102L, 0x0080021082084002L, 0x4018010100822000L,
+            0x003002C002926400L, 0x00108004100A0A60L, 0x0050000104102040L, 0x4009002020408211L,
+            0x4814000480A04180L, 0x4800810C10040102L, 0x0010448184142104L, 0x0101200051043000L,
+            0x400484C010101000L, 0x0401280224500400L, 0x0080405008008902L, 0x013A08008C010420L,
+            0x110901000C104002L, 0xC008082016100C08L, 0x0008510030808843L, 0x8021044401006800L,
+            0x8541484060200400L, 0x0081280800021000L, 0x100C002C00888400L, 0x0B10200800110106L,
+            0x9040020201002080L, 0x44481003201100A9L, 0x0C0808A080810821L, 0xC480808200028602L,
+            0x90082410080204A2L, 0x040A120202202000L, 0x0101022110001308L, 0x050840C010400600L,
+            0x1000200410420400L, 0xC440100460400480L, 0x3208020082108C01L, 0x8098021C00444A20L,
+            0x4510842120100000L, 0x0020820101600200L, 0xC400011041100020L, 0x00000080840C4000L,
+            0x4002002202440200L, 0x1A48842044011005L, 0x00C0900400808004L, 0x2049081080820200L,
+            0x0000441401011000L, 0x2004402202500483L, 0x0C8802220084440AL, 0x00004101020A0200L,
+            0x0708004440482880L, 0x0110224110520080L, 0x1800410822008201L, 0x8208100400840010L
+    };
+    private static final int[] BISHOP_SHIFTS = new int[64];
+    private static final long[][] BISHOP_TABLE = new long[64][];
+
+    static {
+        Random random = new Random(0x5EED_CAFEL);
+        for (int square = 0; square < 64; square++) {
+            ROOK_MASKS[square] = relevantOccupancy(square, true);
+            BISHOP_MASKS[square] = relevantOccupancy(square, false);
+            initSquare(square, true, random);
+            initSquare(square, false, random);
+        }
+    }
+
+    private MagicBitboards() {}
+
+    static long rookAttacks(int square, long occupied) {
+        int index = (int) (((occupied & ROOK_MASKS[square]) * ROOK_MAGICS[square]) >>> ROOK_SHIFTS[square]);
+        return ROOK_TABLE[square][index];
+    }
+
+    static long bishopAttacks(int square, long occupied) {
+        int index = (int) (((occupied & BISHOP_MASKS[square]) * BISHOP_MAGICS[square]) >>> BISHOP_SHIFTS[square]);
+        return BISHOP_TABLE[square][index];
+    }
+
+    // Fills the square's table using the saved magic number. If that number maps two blocker
+    // subsets with different attack sets to the same slot, searches for a new one instead.
+    private static void initSquare(int square, boolean isRook, Random random) {
+        long mask = isRook ? ROOK_MASKS[square] : BISHOP_MASKS[square];
+        int bits = Long.bitCount(mask);
+        int size = 1 << bits;
+        long[] occupancies = new long[size];
+        long[] attacks = new long[size];
+
+        // Enumerate every subset of the mask (the "Carry-Rippler" trick).
+        long subset = 0L;
+        for (int i = 0; i < size; i++) {
+            occupancies[i] = subset;
+            attacks[i] = isRook
+                    ? Bitboards.slowRookAttacks(square, subset)
+                    : Bitboards.slowBishopAttacks(square, subset);
+            subset = (subset - mask) & mask;
+        }
+
+        int shift = 64 - bits;
+        long[] table = new long[size];
+        int[] epoch = new int[size];
+        long magic = isRook ? ROOK_MAGICS[square] : BISHOP_MAGICS[square];
+        for (int attempt = 1; !fillTable(magic, shift, occupancies, attacks, table, epoch, attempt); attempt++) {
+            magic = findCandidateMagic(mask, random);
+        }
+        if (isRook) {
+            ROOK_MAGICS[square] = magic;
+            ROOK_SHIFTS[square] = shift;
+            ROOK_TABLE[square] = table;
+        } else {
+            BISHOP_MAGICS[square] = magic;
+            BISHOP_SHIFTS[square] = shift;
+            BISHOP_TABLE[square] = table;
+        }
+    }
+
+    // Puts each attack set in the slot the magic number gives its blocker subset.
+    // Slots whose epoch is older than the attempt count as empty, so the table needn't be cleared.
+    // Returns false if two different attack sets land in the same slot.
+    private static boolean fillTable(long magic, int shift, long[] occupancies, long[] attacks,
+                                     long[] table, int[] epoch, int attempt) {
+        for (int i = 0; i < occupancies.length; i++) {
+            int index = (int) ((occupancies[i] * magic) >>> shift);
+            if (epoch[index] < attempt) {
+                epoch[index] = attempt;
+                table[index] = attacks[i];
+            } else if (table[index] != attacks[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Returns a random number with few bits set that spreads the mask's high bits well.
+    private static long findCandidateMagic(long mask, Random random) {
+        while (true) {
+            long magic = random.nextLong() & random.nextLong() & random.nextLong();
+            if (Long.bitCount((mask * magic) >>> 56) >= 6) {
+                return magic;
+            }
+        }
+    }
+
+    // The squares whose occupancy can change the attack set: each ray, minus the edge square
+    // at its end (a piece there can't block anything further).
+    private static long relevantOccupancy(int square, boolean isRook) {
+        int[] fileSteps = isRook ? new int[]{0, 1, 0, -1} : new int[]{1, 1, -1, -1};
+        int[] rankSteps = isRook ? new int[]{1, 0, -1, 0} : new int[]{1, -1, -1, 1};
+        long result = 0L;
+        for (int i = 0; i < 4; i++) {
+            int f = Bitboards.fileOf(square) + fileSteps[i];
+            int r = Bitboards.rankOf(square) + rankSteps[i];
+            while (isInside(f + fileSteps[i]) && isInside(r + rankSteps[i])) {
+                result |= 1L << Bitboards.index(f, r);
+                f += fileSteps[i];
+                r += rankSteps[i];
+            }
+        }
+        return result;
+    }
+
+    private static boolean isInside(int index) {
+        return index >= 0 && index < 8;
+    }
+}
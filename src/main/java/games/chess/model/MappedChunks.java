@@ -0,0 +1,181 @@
+package games.chess.model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+
+/**
+ * A file memory-mapped and cut into chunks of about a megabyte that end at record boundaries,
+ * so each chunk can be read on its own. FENCorpus cuts at line breaks and PGNArchive at the
+ * start of a game; both read their chunks with a RangeSpliterator.
+ */
+final class MappedChunks {
+
+    static final int DEFAULT_CHUNK_BYTES = 1 << 20;
+    // The most one mapping can hold is 2GB; larger files are mapped in several segments.
+    private static final long SEGMENT_BYTES = 1L << 30;
+
+    /**
+     * Where records start in the mapped bytes.
+     */
+    interface Boundary {
+        /**
+         * @param index an index from 1 to the buffer's limit - 1.
+         * @return Whether a record starts at the index.
+         */
+        boolean isRecordStart(ByteBuffer buffer, int index);
+    }
+
+    private final Path file;
+    private final ByteBuffer[] chunks;
+    // The file offset of each chunk, for error messages.
+    private final long[] offsets;
+
+    /**
+     * @param chunkBytes roughly how many bytes to put in a chunk. A chunk is longer when it
+     *                   needs to be to end at a boundary.
+     * @param recordName what a record is called, for the error if one doesn't fit a mapping.
+     */
+    MappedChunks(Path file, int chunkBytes, Boundary boundary, String recordName) throws IOException {
+        this.file = file;
+        List<ByteBuffer> chunkList = new ArrayList<>();
+        List<Long> offsetList = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long segmentStart = 0;
+            while (segmentStart < size) {
+                long length = Math.min(SEGMENT_BYTES, size - segmentStart);
+                // The mappings stay valid after the channel is closed.
+                MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY, segmentStart, length);
+                int segmentEnd = (int) length;
+                if (segmentStart + length < size) {
+                    segmentEnd = lastRecordStart(segment, segmentEnd, boundary);
+                    if (segmentEnd == 0) {
+                        throw new IOException("A " + recordName + " in " + file + " is longer than "
+                                + SEGMENT_BYTES + " bytes");
+                    }
+                }
+                for (int start = 0; start < segmentEnd; ) {
+                    int end = nextRecordStart(segment, Math.min(segmentEnd, start + chunkBytes), segmentEnd, boundary);
+                    chunkList.add(segment.slice(start, end - start));
+                    offsetList.add(segmentStart + start);
+                    start = end;
+                }
+                segmentStart += segmentEnd;
+            }
+        }
+        chunks = chunkList.toArray(new ByteBuffer[0]);
+        offsets = offsetList.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    Path getFile() {
+        return file;
+    }
+
+    int size() {
+        return chunks.length;
+    }
+
+    ByteBuffer get(int chunk) {
+        return chunks[chunk];
+    }
+
+    /**
+     * @return The offset in the file of the chunk's first byte.
+     */
+    long getOffset(int chunk) {
+        return offsets[chunk];
+    }
+
+    /**
+     * Iterates over the records of a range of chunks. Splitting gives away the first half of
+     * the remaining chunks, including the one being read; subclasses say how to hand over
+     * what they have read of it.
+     */
+    abstract static class RangeSpliterator<T> implements Spliterator<T> {
+        final MappedChunks chunks;
+        // The chunk being read, and one past the last chunk of the range.
+        int chunk;
+        final int end;
+        private final int bytesPerRecord;
+
+        /**
+         * @param bytesPerRecord roughly how long a record is, to estimate the size from.
+         */
+        RangeSpliterator(MappedChunks chunks, int chunk, int end, int bytesPerRecord) {
+            this.chunks = chunks;
+            this.chunk = chunk;
+            this.end = end;
+            this.bytesPerRecord = bytesPerRecord;
+        }
+
+        /**
+         * @return A spliterator over the chunks from the current one up to `middle`, which
+         * carries on from where this one is in the current chunk. This one then starts afresh
+         * at `middle`.
+         */
+        abstract RangeSpliterator<T> splitOff(int middle);
+
+        /**
+         * @return How many bytes of the current chunk have been read, if that is known.
+         */
+        int getPosition() {
+            return 0;
+        }
+
+        @Override
+        public Spliterator<T> trySplit() {
+            if (end - chunk < 2) {
+                return null;
+            }
+            int middle = (chunk + end) >>> 1;
+            RangeSpliterator<T> prefix = splitOff(middle);
+            chunk = middle;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            long bytes = 0;
+            for (int i = chunk; i < end; i++) {
+                bytes += chunks.get(i).limit();
+            }
+            return Math.max(0, bytes - getPosition()) / bytesPerRecord;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | NONNULL | IMMUTABLE;
+        }
+    }
+
+    /**
+     * @return The first index at or after `from` where a record starts, or `limit` if there is none.
+     */
+    private static int nextRecordStart(ByteBuffer buffer, int from, int limit, Boundary boundary) {
+        for (int i = from; i < limit; i++) {
+            if (boundary.isRecordStart(buffer, i)) {
+                return i;
+            }
+        }
+        return limit;
+    }
+
+    /**
+     * @return The last index before `end` where a record starts, or 0 if there is none.
+     */
+    private static int lastRecordStart(ByteBuffer buffer, int end, Boundary boundary) {
+        for (int i = end - 1; i > 0; i--) {
+            if (boundary.isRecordStart(buffer, i)) {
+                return i;
+            }
+        }
+        return 0;
+    }
+}
@@ -3,56 +3,85 @@ package games.chess.model;
 import games.chess.model.piece.King;
 import games.chess.model.piece.Pawn;
 import games.chess.model.piece.Piece;
+import games.common.RegularMove;
 
-public class Move {
+import java.util.Objects;
+
+public class Move implements RegularMove {
+
+    public static final int NO_PROMOTION = -1;
 
     private final Piece mover;
     private final Piece capturedPiece;
     private final Square originSquare;
     private final Square destSquare;
+    private final int promotionTypeIndex;
 
     boolean didRevokeKingsideCastle = false;
     boolean didRevokeQueensideCastle = false;
     boolean isAmbiguousByFile = false;
     boolean isAmbiguousByRank = false;
     
+    // Set by Game when the move is made, so the en-passant square can be restored on undo.
+    Square previousEnPassantSquare = null;
+    // Set by Game when capturing a rook on its starting square takes away the opponent's castling.
+    boolean didRevokeOpponentKingsideCastle = false;
+    boolean didRevokeOpponentQueensideCastle = false;
+    // Set by Game for castles and promotions: the rook's half of the castle, and the new piece.
+    Move castlingRookMove = null;
+    Piece promotedPiece = null;
+    
     public Move(Piece mover, Square destSquare) {
         this(mover, destSquare, null);
     }
     
     public Move(Piece mover, String squareName) {
-        this(mover, new Square(squareName), null);
+        this(mover, Square.of(squareName), null);
     }
     
     public Move(Piece mover, String squareName, Piece capturedPiece) {
-        this(mover, new Square(squareName), capturedPiece);
+        this(mover, Square.of(squareName), capturedPiece);
     }
 
     public Move(Piece mover, Square destSquare, Piece capturedPiece) {
+        this(mover, destSquare, capturedPiece, NO_PROMOTION);
+    }
+
+    /**
+     * @param promotionTypeIndex for a pawn reaching the last rank, the type index (e.g. Piece.QUEEN)
+     *                           of the piece it becomes. Otherwise NO_PROMOTION.
+     */
+    public Move(Piece mover, Square destSquare, Piece capturedPiece, int promotionTypeIndex) {
         this.mover = mover;
         this.originSquare = mover.getSquare();
         this.destSquare = destSquare;
         this.capturedPiece = capturedPiece;
+        this.promotionTypeIndex = promotionTypeIndex;
     }
     
     public Move(Move toCopy, Game game) {
         this.mover = game.getPieceAt(toCopy.getOriginSquare());
         this.originSquare = toCopy.getOriginSquare();
         this.destSquare = toCopy.getDestSquare();
-        this.capturedPiece = toCopy.getCapturedPiece();
+        this.capturedPiece = toCopy.isCapture() ? game.getPieceAt(toCopy.getCapturedPiece().getSquare()) : null;
+        this.promotionTypeIndex = toCopy.promotionTypeIndex;
     }
 
+    /**
+     * @return Whether the name is written in standard Chess notation (see SAN), whether or
+     * not the move could be played.
+     */
     public static boolean canParse(String moveName) {
-        return false;  // TODO implement
+        return SAN.isValidSyntax(moveName);
     }
 
     public static Move castleKingside(King king) {
-        Square dest = new Square(6, king.getSquare().getRankIndex()); // King to g file.
+        Square dest = Square.of(6, king.getSquare().getRankIndex()); // King to g file.
         return new Move(king, dest);
     }
 
     public static Move castleQueenside(King king) {
-        Square dest = new Square(2, king.getSquare().getRankIndex()); // King to c file.
+        Square dest = Square.of(2, king.getSquare().getRankIndex()); // King to c file.
         return new Move(king, dest);
     }
 
@@ -68,6 +97,14 @@ public class Move {
         return this.capturedPiece != null;
     }
 
+    public boolean isPromotion() {
+        return promotionTypeIndex != NO_PROMOTION;
+    }
+
+    public int getPromotionTypeIndex() {
+        return promotionTypeIndex;
+    }
+
     public boolean isPawnDoubleJump() {
         return mover instanceof Pawn && 
                 Math.abs(destSquare.getRankIndex() - originSquare.getRankIndex()) == 2;
@@ -80,7 +117,7 @@ public class Move {
         
         int rankModifier = mover.isWhite() ? -1 : 1;
         int rankIndex = destSquare.getRankIndex() + rankModifier;
-        return new Square(destSquare.getFileIndex(), rankIndex);
+        return Square.of(destSquare.getFileIndex(), rankIndex);
     }
 
     public boolean isCastle() {
@@ -98,12 +135,15 @@ public class Move {
 
     /**
      * Writes this move in standard Chess notation.
-     * Examples: e4, Be2, exd5, 0-0, Rd8#
+     * Examples: e4, Be2, exd5, 0-0, e8=Q, Rd8
      * 
-     * // TODO - checks and checkmates
+     * The file and rank needed to tell it apart from other moves, and the check or mate
+     * suffix, depend on the position, so this only writes a file or rank set with
+     * setIsAmbiguous() and never a suffix. getCanonicalName(Game) works them all out.
      * 
      * @return a String representation of the move, in normal Chess notation.
      */
+    @Override
     public String getCanonicalName() {
         if (isCastle()) {
             return destSquare.getFileIndex() == 6 ? "O-O" : "O-O-O";
@@ -112,18 +152,54 @@ public class Move {
         StringBuilder builder = new StringBuilder();
         builder.append(mover.getAbbrevName());
         if (isAmbiguousByFile || (mover instanceof Pawn && isCapture())) {
-            builder.append(mover.getSquare().getFileName());
+            builder.append(originSquare.getFileName());
         }
         if (isAmbiguousByRank) {
-            builder.append(mover.getSquare().getRankName());
+            builder.append(originSquare.getRankName());
         }
         if (isCapture()) {
             builder.append("x");
         }
         builder.append(destSquare.getName());
+        if (isPromotion()) {
+            builder.append('=').append(Piece.getAbbrevName(promotionTypeIndex));
+        }
         return builder.toString();
     }
 
+    /**
+     * Writes this move in SAN (see SAN) as it would be played in the game, with the file or
+     * rank that tells it apart from other moves and a check or mate suffix. This costs a move
+     * generation or two, so it is for display and notation, not for search.
+     * @param game the game in the position before this move, e.g. the one it came from.
+     */
+    public String getCanonicalName(Game game) {
+        return new SAN().toSAN(game, Moves.encode(this));
+    }
+
+    /**
+     * Moves are equal if they go between the same squares with the same promotion, so a move
+     * from a copy of a game (see Game.cloneWithUpdate) matches the original's move.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Move)) {
+            return false;
+        }
+        Move other = (Move) o;
+        return originSquare.equals(other.originSquare)
+                && destSquare.equals(other.destSquare)
+                && promotionTypeIndex == other.promotionTypeIndex;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(originSquare, destSquare, promotionTypeIndex);
+    }
+
     public void setIsAmbiguous(boolean byFile, boolean byRank) {
         isAmbiguousByFile = byFile;
         isAmbiguousByRank = byRank;
@@ -0,0 +1,490 @@
+package games.chess.model;
+
+import games.chess.model.piece.Piece;
+
+/**
+ * Generates int-encoded moves (see Moves) from the Game bitboards into a MoveList, without
+ * allocating anything.
+ *
+ * The moves are pseudo-legal: they follow how the pieces move, including castling and en
+ * passant, but may leave the mover's own king in check. Game.getLegalMoves(MoveList)
+ * filters those out.
+ */
+public final class MoveGenerator {
+
+    // The squares between king and rook that must be empty to castle, per colour.
+    private static final long WHITE_KINGSIDE_GAP = 0x60L;
+    private static final long WHITE_QUEENSIDE_GAP = 0x0EL;
+    private static final long BLACK_KINGSIDE_GAP = WHITE_KINGSIDE_GAP << 56;
+    private static final long BLACK_QUEENSIDE_GAP = WHITE_QUEENSIDE_GAP << 56;
+
+    private MoveGenerator() {}
+
+    /**
+     * Adds every pseudo-legal move for the given side to the list. The list is not cleared first.
+     */
+    public static void generate(Game game, boolean isWhite, MoveList moves) {
+        long own = game.getOccupancy(isWhite);
+        long enemy = game.getOccupancy(!isWhite);
+        long occupied = own | enemy;
+
+        addPawnPushes(game, isWhite, moves, occupied);
+
+        long knights = game.getPieceBoard(isWhite, Piece.KNIGHT);
+        for (; knights != 0; knights &= knights - 1) {
+            int from = Bitboards.lowestSquare(knights);
+            addMovesToTargets(moves, from, Bitboards.knightAttacks(from) & ~own, enemy);
+        }
+        long bishops = game.getPieceBoard(isWhite, Piece.BISHOP);
+        for (; bishops != 0; bishops &= bishops - 1) {
+            int from = Bitboards.lowestSquare(bishops);
+            addMovesToTargets(moves, from, Bitboards.bishopAttacks(from, occupied) & ~own, enemy);
+        }
+        long rooks = game.getPieceBoard(isWhite, Piece.ROOK);
+        for (; rooks != 0; rooks &= rooks - 1) {
+            int from = Bitboards.lowestSquare(rooks);
+            addMovesToTargets(moves, from, Bitboards.rookAttacks(from, occupied) & ~own, enemy);
+        }
+        long queens = game.getPieceBoard(isWhite, Piece.QUEEN);
+        for (; queens != 0; queens &= queens - 1) {
+            int from = Bitboards.lowestSquare(queens);
+            addMovesToTargets(moves, from, Bitboards.queenAttacks(from, occupied) & ~own, enemy);
+        }
+        long kings = game.getPieceBoard(isWhite, Piece.KING);
+        for (; kings != 0; kings &= kings - 1) {
+            int from = Bitboards.lowestSquare(kings);
+            addMovesToTargets(moves, from, Bitboards.kingAttacks(from) & ~own, enemy);
+        }
+
+        addPawnCaptures(game, isWhite, moves, enemy);
+        addCastles(game, isWhite, moves, occupied);
+    }
+
+    /**
+     * Adds every legal move for the player to move to the list, which is not cleared first.
+     *
+     * Rather than making each move to see whether it leaves the king in check, this works out
+     * once per position which pieces give check and which are pinned to their king:
+     * - In double check, only the king can move.
+     * - In single check, other pieces must capture the checker or block its line.
+     * - A pinned piece can only move along the line through its king and the pinner.
+     * - The king can't move to an attacked square, counting squares behind it on a checking
+     *   slider's line, and can't castle out of or through check.
+     * En passant is checked by playing it out on the occupancy, since taking two pawns off
+     * one rank can uncover the king.
+     */
+    public static void generateLegal(Game game, MoveList moves) {
+        boolean isWhite = game.isWhiteToMove();
+        long kingBoard = game.getPieceBoard(isWhite, Piece.KING);
+        if (kingBoard == 0) {
+            // Without a king nothing can be illegal, and there is nothing to castle with.
+            generate(game, isWhite, moves);
+            return;
+        }
+        int king = Bitboards.lowestSquare(kingBoard);
+        long own = game.getOccupancy(isWhite);
+        long enemy = game.getOccupancy(!isWhite);
+        long occupied = own | enemy;
+        long enemyQueens = game.getPieceBoard(!isWhite, Piece.QUEEN);
+        long enemyLinear = game.getPieceBoard(!isWhite, Piece.ROOK) | enemyQueens;
+        long enemyDiagonal = game.getPieceBoard(!isWhite, Piece.BISHOP) | enemyQueens;
+
+        // The king may not step onto an attacked square. It is taken off the board first, so
+        // that it can't hide behind itself from a slider checking it along the line.
+        long withoutKing = occupied ^ kingBoard;
+        for (long targets = Bitboards.kingAttacks(king) & ~own; targets != 0; targets &= targets - 1) {
+            int to = Bitboards.lowestSquare(targets);
+            if ((game.getAttackers(to, withoutKing) & enemy) == 0) {
+                moves.add(Moves.encode(king, to, (enemy & (1L << to)) != 0 ? Moves.CAPTURE : Moves.QUIET));
+            }
+        }
+
+        long checkers = game.getAttackers(king, occupied) & enemy;
+        if (Long.bitCount(checkers) > 1) {
+            return;
+        }
+        // The squares other pieces must move to: anywhere, or onto the checker or its line.
+        long evasions = checkers == 0
+                ? -1L
+                : checkers | Bitboards.between(king, Bitboards.lowestSquare(checkers));
+
+        long pinned = 0L;
+        long snipers = (Bitboards.rookAttacks(king, 0L) & enemyLinear)
+                | (Bitboards.bishopAttacks(king, 0L) & enemyDiagonal);
+        for (; snipers != 0; snipers &= snipers - 1) {
+            long blockers = Bitboards.between(king, Bitboards.lowestSquare(snipers)) & occupied;
+            if (Long.bitCount(blockers) == 1) {
+                pinned |= blockers & own;
+            }
+        }
+
+        long targetMask = ~own & evasions;
+        long knights = game.getPieceBoard(isWhite, Piece.KNIGHT) & ~pinned; // A pinned knight can't move.
+        for (; knights != 0; knights &= knights - 1) {
+            int from = Bitboards.lowestSquare(knights);
+            addMovesToTargets(moves, from, Bitboards.knightAttacks(from) & targetMask, enemy);
+        }
+        long diagonal = game.getPieceBoard(isWhite, Piece.BISHOP) | game.getPieceBoard(isWhite, Piece.QUEEN);
+        for (; diagonal != 0; diagonal &= diagonal - 1) {
+            int from = Bitboards.lowestSquare(diagonal);
+            long targets = Bitboards.bishopAttacks(from, occupied) & targetMask;
+            addMovesToTargets(moves, from, pinMask(pinned, king, from) & targets, enemy);
+        }
+        long linear = game.getPieceBoard(isWhite, Piece.ROOK) | game.getPieceBoard(isWhite, Piece.QUEEN);
+        for (; linear != 0; linear &= linear - 1) {
+            int from = Bitboards.lowestSquare(linear);
+            long targets = Bitboards.rookAttacks(from, occupied) & targetMask;
+            addMovesToTargets(moves, from, pinMask(pinned, king, from) & targets, enemy);
+        }
+
+        int forward = isWhite ? 8 : -8;
+        long startRank = isWhite ? Bitboards.RANK_2 : Bitboards.RANK_7;
+        for (long pawns = game.getPieceBoard(isWhite, Piece.PAWN); pawns != 0; pawns &= pawns - 1) {
+            int from = Bitboards.lowestSquare(pawns);
+            long allowed = evasions & pinMask(pinned, king, from);
+            int to = from + forward;
+            if ((occupied & (1L << to)) == 0) {
+                if ((allowed & (1L << to)) != 0) {
+                    addPawnMove(moves, from, to, false);
+                }
+                int doubleTo = to + forward;
+                if (((1L << from) & startRank) != 0 && (occupied & (1L << doubleTo)) == 0
+                        && (allowed & (1L << doubleTo)) != 0) {
+                    moves.add(Moves.encode(from, doubleTo, Moves.DOUBLE_PAWN_PUSH));
+                }
+            }
+            long captures = Bitboards.pawnAttacks(isWhite, from) & enemy & allowed;
+            for (; captures != 0; captures &= captures - 1) {
+                addPawnMove(moves, from, Bitboards.lowestSquare(captures), true);
+            }
+        }
+
+        Piece capturable = game.getEnPassantCapturablePiece();
+        if (capturable != null && capturable.isWhite() != isWhite) {
+            int target = game.getEnPassantSquare().getIndex();
+            long capturedBit = 1L << capturable.getSquare().getIndex();
+            long attackers = Bitboards.pawnAttacks(!isWhite, target) & game.getPieceBoard(isWhite, Piece.PAWN);
+            // The capture must take the checker or block its line.
+            if ((evasions & (capturedBit | (1L << target))) == 0) {
+                attackers = 0L;
+            }
+            for (; attackers != 0; attackers &= attackers - 1) {
+                int from = Bitboards.lowestSquare(attackers);
+                long after = (occupied ^ (1L << from) ^ capturedBit) | (1L << target);
+                if ((Bitboards.rookAttacks(king, after) & enemyLinear) == 0
+                        && (Bitboards.bishopAttacks(king, after) & enemyDiagonal) == 0) {
+                    moves.add(Moves.encode(from, target, Moves.EN_PASSANT));
+                }
+            }
+        }
+
+        if (checkers == 0) {
+            boolean byWhite = !isWhite;
+            if (canCastle(game, isWhite, true, occupied)
+                    && !game.isSquareAttacked(king + 1, byWhite) && !game.isSquareAttacked(king + 2, byWhite)) {
+                moves.add(Moves.encode(king, king + 2, Moves.KING_CASTLE));
+            }
+            if (canCastle(game, isWhite, false, occupied)
+                    && !game.isSquareAttacked(king - 1, byWhite) && !game.isSquareAttacked(king - 2, byWhite)) {
+                moves.add(Moves.encode(king, king - 2, Moves.QUEEN_CASTLE));
+            }
+        }
+    }
+
+    // The squares a piece can move to without exposing its king: anywhere if it isn't pinned,
+    // otherwise the line through the king and the pinner.
+    private static long pinMask(long pinned, int king, int from) {
+        return (pinned & (1L << from)) == 0 ? -1L : Bitboards.line(king, from);
+    }
+
+    /**
+     * Adds the side's pseudo-legal captures, including en passant, and pawn pushes that
+     * promote to a queen. This is the move set of a quiescence search; under-promotions
+     * without a capture are left out.
+     */
+    public static void generateCaptures(Game game, boolean isWhite, MoveList moves) {
+        long enemy = game.getOccupancy(!isWhite);
+        long occupied = game.getOccupancy();
+
+        long pawns = game.getPieceBoard(isWhite, Piece.PAWN);
+        long promotionPushes = isWhite
+                ? ((pawns & Bitboards.RANK_7) << 8) & ~occupied
+                : ((pawns & Bitboards.RANK_2) >>> 8) & ~occupied;
+        for (; promotionPushes != 0; promotionPushes &= promotionPushes - 1) {
+            int to = Bitboards.lowestSquare(promotionPushes);
+            moves.add(Moves.encodePromotion(isWhite ? to - 8 : to + 8, to, Piece.QUEEN, false));
+        }
+        addPawnCaptures(game, isWhite, moves, enemy);
+
+        long knights = game.getPieceBoard(isWhite, Piece.KNIGHT);
+        for (; knights != 0; knights &= knights - 1) {
+            int from = Bitboards.lowestSquare(knights);
+            addMovesToTargets(moves, from, Bitboards.knightAttacks(from) & enemy, enemy);
+        }
+        long bishops = game.getPieceBoard(isWhite, Piece.BISHOP);
+        for (; bishops != 0; bishops &= bishops - 1) {
+            int from = Bitboards.lowestSquare(bishops);
+            addMovesToTargets(moves, from, Bitboards.bishopAttacks(from, occupied) & enemy, enemy);
+        }
+        long rooks = game.getPieceBoard(isWhite, Piece.ROOK);
+        for (; rooks != 0; rooks &= rooks - 1) {
+            int from = Bitboards.lowestSquare(rooks);
+            addMovesToTargets(moves, from, Bitboards.rookAttacks(from, occupied) & enemy, enemy);
+        }
+        long queens = game.getPieceBoard(isWhite, Piece.QUEEN);
+        for (; queens != 0; queens &= queens - 1) {
+            int from = Bitboards.lowestSquare(queens);
+            addMovesToTargets(moves, from, Bitboards.queenAttacks(from, occupied) & enemy, enemy);
+        }
+        long kings = game.getPieceBoard(isWhite, Piece.KING);
+        for (; kings != 0; kings &= kings - 1) {
+            int from = Bitboards.lowestSquare(kings);
+            addMovesToTargets(moves, from, Bitboards.kingAttacks(from) & enemy, enemy);
+        }
+    }
+
+    /**
+     * Adds the side's pseudo-legal moves that generateCaptures() leaves out: moves that don't
+     * capture, except pawn pushes that promote to a queen. Together the two give the same
+     * moves as generate().
+     */
+    public static void generateQuiets(Game game, boolean isWhite, MoveList moves) {
+        long occupied = game.getOccupancy();
+        long empty = ~occupied;
+
+        long pawns = game.getPieceBoard(isWhite, Piece.PAWN);
+        long singles;
+        long doubles;
+        int forward;
+        if (isWhite) {
+            singles = (pawns << 8) & empty;
+            doubles = ((singles & Bitboards.RANK_3) << 8) & empty;
+            forward = 8;
+        } else {
+            singles = (pawns >>> 8) & empty;
+            doubles = ((singles & Bitboards.RANK_6) >>> 8) & empty;
+            forward = -8;
+        }
+        for (; singles != 0; singles &= singles - 1) {
+            int to = Bitboards.lowestSquare(singles);
+            if (to < 8 || to >= 56) {
+                moves.add(Moves.encodePromotion(to - forward, to, Piece.ROOK, false));
+                moves.add(Moves.encodePromotion(to - forward, to, Piece.BISHOP, false));
+                moves.add(Moves.encodePromotion(to - forward, to, Piece.KNIGHT, false));
+            } else {
+                moves.add(Moves.encode(to - forward, to, Moves.QUIET));
+            }
+        }
+        for (; doubles != 0; doubles &= doubles - 1) {
+            int to = Bitboards.lowestSquare(doubles);
+            moves.add(Moves.encode(to - 2 * forward, to, Moves.DOUBLE_PAWN_PUSH));
+        }
+
+        long knights = game.getPieceBoard(isWhite, Piece.KNIGHT);
+        for (; knights != 0; knights &= knights - 1) {
+            int from = Bitboards.lowestSquare(knights);
+            addMovesToTargets(moves, from, Bitboards.knightAttacks(from) & empty, 0L);
+        }
+        long bishops = game.getPieceBoard(isWhite, Piece.BISHOP);
+        for (; bishops != 0; bishops &= bishops - 1) {
+            int from = Bitboards.lowestSquare(bishops);
+            addMovesToTargets(moves, from, Bitboards.bishopAttacks(from, occupied) & empty, 0L);
+        }
+        long rooks = game.getPieceBoard(isWhite, Piece.ROOK);
+        for (; rooks != 0; rooks &= rooks - 1) {
+            int from = Bitboards.lowestSquare(rooks);
+            addMovesToTargets(moves, from, Bitboards.rookAttacks(from, occupied) & empty, 0L);
+        }
+        long queens = game.getPieceBoard(isWhite, Piece.QUEEN);
+        for (; queens != 0; queens &= queens - 1) {
+            int from = Bitboards.lowestSquare(queens);
+            addMovesToTargets(moves, from, Bitboards.queenAttacks(from, occupied) & empty, 0L);
+        }
+        long kings = game.getPieceBoard(isWhite, Piece.KING);
+        for (; kings != 0; kings &= kings - 1) {
+            int from = Bitboards.lowestSquare(kings);
+            addMovesToTargets(moves, from, Bitboards.kingAttacks(from) & empty, 0L);
+        }
+        addCastles(game, isWhite, moves, occupied);
+    }
+
+    /**
+     * Tells whether an encoded move is one generate() would produce for the player to move,
+     * without generating anything. Searches use it to check moves that come from elsewhere,
+     * such as a transposition table or killer slot, before making them: those may belong to
+     * a different position.
+     */
+    public static boolean isPseudoLegal(Game game, int move) {
+        if (move == Moves.NONE) {
+            return false;
+        }
+        boolean isWhite = game.isWhiteToMove();
+        int from = Moves.getFrom(move);
+        int to = Moves.getTo(move);
+        int flags = Moves.getFlags(move);
+        Piece mover = game.getPieceAt(from);
+        if (mover == null || mover.isWhite() != isWhite) {
+            return false;
+        }
+        long toBit = 1L << to;
+        long enemy = game.getOccupancy(!isWhite);
+        long occupied = game.getOccupancy();
+        int type = mover.getTypeIndex();
+        if (type == Piece.PAWN) {
+            return isPseudoLegalPawnMove(game, isWhite, from, to, flags, enemy, occupied);
+        }
+        if (flags == Moves.KING_CASTLE || flags == Moves.QUEEN_CASTLE) {
+            boolean isKingside = flags == Moves.KING_CASTLE;
+            return type == Piece.KING && to == (isKingside ? from + 2 : from - 2)
+                    && canCastle(game, isWhite, isKingside, occupied);
+        }
+        if (flags == Moves.CAPTURE) {
+            if ((enemy & toBit) == 0) {
+                return false;
+            }
+        } else if (flags != Moves.QUIET || (occupied & toBit) != 0) {
+            return false;
+        }
+        long attacks;
+        switch (type) {
+            case Piece.KNIGHT:
+                attacks = Bitboards.knightAttacks(from);
+                break;
+            case Piece.BISHOP:
+                attacks = Bitboards.bishopAttacks(from, occupied);
+                break;
+            case Piece.ROOK:
+                attacks = Bitboards.rookAttacks(from, occupied);
+                break;
+            case Piece.QUEEN:
+                attacks = Bitboards.queenAttacks(from, occupied);
+                break;
+            default:
+                attacks = Bitboards.kingAttacks(from);
+        }
+        return (attacks & toBit) != 0;
+    }
+
+    private static boolean isPseudoLegalPawnMove(Game game, boolean isWhite, int from, int to, int flags,
+                                                 long enemy, long occupied) {
+        int forward = isWhite ? 8 : -8;
+        long toBit = 1L << to;
+        boolean reachesLastRank = to < 8 || to >= 56;
+        if (flags == Moves.EN_PASSANT) {
+            Square enPassantSquare = game.getEnPassantSquare();
+            Piece capturable = game.getEnPassantCapturablePiece();
+            return enPassantSquare != null && enPassantSquare.getIndex() == to
+                    && capturable != null && capturable.isWhite() != isWhite
+                    && (Bitboards.pawnAttacks(isWhite, from) & toBit) != 0;
+        }
+        if (flags == Moves.DOUBLE_PAWN_PUSH) {
+            long startRank = isWhite ? Bitboards.RANK_2 : Bitboards.RANK_7;
+            return ((1L << from) & startRank) != 0 && to == from + 2 * forward
+                    && (occupied & (toBit | (1L << (from + forward)))) == 0;
+        }
+        boolean isPromotion = (flags & Moves.PROMOTION) != 0;
+        if (isPromotion != reachesLastRank || (!isPromotion && flags != Moves.QUIET && flags != Moves.CAPTURE)) {
+            return false;
+        }
+        if ((flags & Moves.CAPTURE) != 0) {
+            return (enemy & toBit) != 0 && (Bitboards.pawnAttacks(isWhite, from) & toBit) != 0;
+        }
+        return to == from + forward && (occupied & toBit) == 0;
+    }
+
+    private static void addMovesToTargets(MoveList moves, int from, long targets, long enemy) {
+        for (; targets != 0; targets &= targets - 1) {
+            int to = Bitboards.lowestSquare(targets);
+            int flags = (enemy & (1L << to)) != 0 ? Moves.CAPTURE : Moves.QUIET;
+            moves.add(Moves.encode(from, to, flags));
+        }
+    }
+
+    // Pawns move one square forward, or two from their starting rank, if the way is clear.
+    private static void addPawnPushes(Game game, boolean isWhite, MoveList moves, long occupied) {
+        long pawns = game.getPieceBoard(isWhite, Piece.PAWN);
+        long singles;
+        long doubles;
+        int forward;
+        if (isWhite) {
+            singles = (pawns << 8) & ~occupied;
+            doubles = ((singles & Bitboards.RANK_3) << 8) & ~occupied;
+            forward = 8;
+        } else {
+            singles = (pawns >>> 8) & ~occupied;
+            doubles = ((singles & Bitboards.RANK_6) >>> 8) & ~occupied;
+            forward = -8;
+        }
+        for (; singles != 0; singles &= singles - 1) {
+            int to = Bitboards.lowestSquare(singles);
+            addPawnMove(moves, to - forward, to, false);
+        }
+        for (; doubles != 0; doubles &= doubles - 1) {
+            int to = Bitboards.lowestSquare(doubles);
+            moves.add(Moves.encode(to - 2 * forward, to, Moves.DOUBLE_PAWN_PUSH));
+        }
+    }
+
+    private static void addPawnCaptures(Game game, boolean isWhite, MoveList moves, long enemy) {
+        long pawns = game.getPieceBoard(isWhite, Piece.PAWN);
+        for (; pawns != 0; pawns &= pawns - 1) {
+            int from = Bitboards.lowestSquare(pawns);
+            long targets = Bitboards.pawnAttacks(isWhite, from) & enemy;
+            for (; targets != 0; targets &= targets - 1) {
+                addPawnMove(moves, from, Bitboards.lowestSquare(targets), true);
+            }
+        }
+
+        Square enPassantSquare = game.getEnPassantSquare();
+        Piece capturable = game.getEnPassantCapturablePiece();
+        if (capturable != null && capturable.isWhite() != isWhite) {
+            // Our pawns that could capture on the en-passant square are exactly those
+            // an enemy pawn on that square would attack.
+            int target = enPassantSquare.getIndex();
+            long attackers = Bitboards.pawnAttacks(!isWhite, target) & game.getPieceBoard(isWhite, Piece.PAWN);
+            for (; attackers != 0; attackers &= attackers - 1) {
+                moves.add(Moves.encode(Bitboards.lowestSquare(attackers), target, Moves.EN_PASSANT));
+            }
+        }
+    }
+
+    // Adds a pawn move, or one move per promotion piece if the pawn reaches the last rank.
+    private static void addPawnMove(MoveList moves, int from, int to, boolean isCapture) {
+        if (to < 8 || to >= 56) {
+            moves.add(Moves.encodePromotion(from, to, Piece.QUEEN, isCapture));
+            moves.add(Moves.encodePromotion(from, to, Piece.ROOK, isCapture));
+            moves.add(Moves.encodePromotion(from, to, Piece.BISHOP, isCapture));
+            moves.add(Moves.encodePromotion(from, to, Piece.KNIGHT, isCapture));
+        } else {
+            moves.add(Moves.encode(from, to, isCapture ? Moves.CAPTURE : Moves.QUIET));
+        }
+    }
+
+    // Adds castles the side still has the right to make, if the squares between the king
+    // and rook are empty. Game.getLegalMoves checks that the king doesn't pass through check.
+    private static void addCastles(Game game, boolean isWhite, MoveList moves, long occupied) {
+        int kingSquare = isWhite ? 4 : 60;
+        if (canCastle(game, isWhite, true, occupied)) {
+            moves.add(Moves.encode(kingSquare, kingSquare + 2, Moves.KING_CASTLE));
+        }
+        if (canCastle(game, isWhite, false, occupied)) {
+            moves.add(Moves.encode(kingSquare, kingSquare - 2, Moves.QUEEN_CASTLE));
+        }
+    }
+
+    private static boolean canCastle(Game game, boolean isWhite, boolean isKingside, long occupied) {
+        Player player = isWhite ? game.getWhitePlayer() : game.getBlackPlayer();
+        if (isKingside ? !player.canCastleKingside : !player.canCastleQueenside) {
+            return false;
+        }
+        int kingSquare = isWhite ? 4 : 60;
+        if ((game.getPieceBoard(isWhite, Piece.KING) & (1L << kingSquare)) == 0) {
+            return false;
+        }
+        long gap = isKingside
+                ? (isWhite ? WHITE_KINGSIDE_GAP : BLACK_KINGSIDE_GAP)
+                : (isWhite ? WHITE_QUEENSIDE_GAP : BLACK_QUEENSIDE_GAP);
+        int rookSquare = isKingside ? kingSquare + 3 : kingSquare - 4;
+        return (occupied & gap) == 0 && (game.getPieceBoard(isWhite, Piece.ROOK) & (1L << rookSquare)) != 0;
+    }
+}
@@ -0,0 +1,138 @@
+package games.chess.model;
+
+import games.chess.model.piece.King;
+import games.chess.model.piece.Piece;
+
+/**
+ * Static helpers for moves packed into an int, for search code that can't afford a Move
+ * object per move. Only the low 16 bits are used:
+ *
+ *   bits 0-5:   origin square index (see Bitboards)
+ *   bits 6-11:  destination square index
+ *   bits 12-15: flags - QUIET, DOUBLE_PAWN_PUSH, KING_CASTLE, QUEEN_CASTLE, CAPTURE, EN_PASSANT,
+ *               or PROMOTION (plus CAPTURE) with the promotion piece in the low two bits.
+ *
+ * The value 0 (a1 to a1) is never a real move, so it is used as NONE.
+ */
+public final class Moves {
+
+    public static final int NONE = 0;
+
+    public static final int QUIET = 0;
+    public static final int DOUBLE_PAWN_PUSH = 1;
+    public static final int KING_CASTLE = 2;
+    public static final int QUEEN_CASTLE = 3;
+    public static final int CAPTURE = 4;
+    public static final int EN_PASSANT = 5;
+    public static final int PROMOTION = 8;
+
+    private Moves() {}
+
+    public static int encode(int from, int to, int flags) {
+        return from | (to << 6) | (flags << 12);
+    }
+
+    /**
+     * @param promotionTypeIndex the piece the pawn becomes, from Piece.KNIGHT to Piece.QUEEN.
+     */
+    public static int encodePromotion(int from, int to, int promotionTypeIndex, boolean isCapture) {
+        int flags = PROMOTION | (promotionTypeIndex - Piece.KNIGHT) | (isCapture ? CAPTURE : 0);
+        return encode(from, to, flags);
+    }
+
+    public static int getFrom(int move) {
+        return move & 63;
+    }
+
+    public static int getTo(int move) {
+        return (move >>> 6) & 63;
+    }
+
+    public static int getFlags(int move) {
+        return (move >>> 12) & 15;
+    }
+
+    /**
+     * @return Whether the move takes a piece, including en-passant and capturing promotions.
+     */
+    public static boolean isCapture(int move) {
+        return (getFlags(move) & CAPTURE) != 0;
+    }
+
+    public static boolean isEnPassant(int move) {
+        return getFlags(move) == EN_PASSANT;
+    }
+
+    public static boolean isCastle(int move) {
+        int flags = getFlags(move);
+        return flags == KING_CASTLE || flags == QUEEN_CASTLE;
+    }
+
+    public static boolean isPromotion(int move) {
+        return (getFlags(move) & PROMOTION) != 0;
+    }
+
+    /**
+     * @return The type index of the promotion piece, or Move.NO_PROMOTION.
+     */
+    public static int getPromotionTypeIndex(int move) {
+        if (!isPromotion(move)) {
+            return Move.NO_PROMOTION;
+        }
+        return (getFlags(move) & 3) + Piece.KNIGHT;
+    }
+
+    /**
+     * Writes the move in coordinate notation, e.g. e2e4 or e7e8q.
+     */
+    public static String toCoordinateName(int move) {
+        String name = Square.of(getFrom(move)).getName() + Square.of(getTo(move)).getName();
+        if (isPromotion(move)) {
+            name += Piece.getAbbrevName(getPromotionTypeIndex(move)).toLowerCase();
+        }
+        return name;
+    }
+
+    /**
+     * Packs a Move object. The mover must still be on its origin square.
+     */
+    public static int encode(Move move) {
+        int from = move.getOriginSquare().getIndex();
+        int to = move.getDestSquare().getIndex();
+        if (move.isPromotion()) {
+            return encodePromotion(from, to, move.getPromotionTypeIndex(), move.isCapture());
+        }
+        int flags;
+        if (move.isCastle()) {
+            flags = move.getDestSquare().getFileIndex() == 6 ? KING_CASTLE : QUEEN_CASTLE;
+        } else if (move.isPawnDoubleJump()) {
+            flags = DOUBLE_PAWN_PUSH;
+        } else if (move.isCapture()) {
+            flags = move.getCapturedPiece().getSquare().equals(move.getDestSquare()) ? CAPTURE : EN_PASSANT;
+        } else {
+            flags = QUIET;
+        }
+        return encode(from, to, flags);
+    }
+
+    /**
+     * Unpacks a move into a Move object with the pieces from the game, for the console and
+     * notation code. The move must be valid in the game's current position.
+     */
+    public static Move toMove(int move, Game game) {
+        Piece mover = game.getPieceAt(getFrom(move));
+        Square dest = Square.of(getTo(move));
+        if (isCastle(move)) {
+            return getFlags(move) == KING_CASTLE
+                    ? Move.castleKingside((King) mover)
+                    : Move.castleQueenside((King) mover);
+        }
+        Piece captured = null;
+        if (isEnPassant(move)) {
+            captured = game.getEnPassantCapturablePiece();
+        } else if (isCapture(move)) {
+            captured = game.getPieceAt(getTo(move));
+        }
+        return new Move(mover, dest, captured, getPromotionTypeIndex(move));
+    }
+}
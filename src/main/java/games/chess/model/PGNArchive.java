@@ -0,0 +1,151 @@
+package games.chess.model;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A PGN file of many games, read in parallel without loading it onto the heap.
+ *
+ * As with FENCorpus, the file is memory-mapped and cut into chunks of about a megabyte (see
+ * MappedChunks), and stream() splits the chunks between the threads of a parallel Stream.
+ * Here the chunks end at game boundaries: a line starting with "[" after a blank line, which
+ * is where the export format puts the tags of each game. Each chunk is read by its own
+ * PGNReader, so every game is replayed and checked as it is read. A game that can't be read
+ * makes the stream throw an IllegalArgumentException giving its byte offset.
+ *
+ * Usage: PGNArchive &lt;file&gt; reads every game of the file on all cores and prints how many
+ * games and moves there were and how long it took.
+ */
+public class PGNArchive {
+
+    private final MappedChunks chunks;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: PGNArchive <file>");
+            return;
+        }
+        long start = System.currentTimeMillis();
+        PGNArchive archive = new PGNArchive(Path.of(args[0]));
+        long[] counts = archive.stream().parallel()
+                .map(game -> new long[]{1, game.getMoveCount()})
+                .reduce(new long[2], (a, b) -> new long[]{a[0] + b[0], a[1] + b[1]});
+        long millis = Math.max(1, System.currentTimeMillis() - start);
+        System.out.printf("%d games, %d moves in %dms (%d moves/s)%n",
+                counts[0], counts[1], millis, counts[1] * 1000 / millis);
+    }
+
+    public PGNArchive(Path file) throws IOException {
+        this(file, MappedChunks.DEFAULT_CHUNK_BYTES);
+    }
+
+    /**
+     * @param chunkBytes roughly how many bytes to read per chunk. A chunk is longer when it
+     *                   needs to be to end at a game boundary.
+     */
+    PGNArchive(Path file, int chunkBytes) throws IOException {
+        chunks = new MappedChunks(file, chunkBytes, PGNArchive::isGameStart, "game");
+    }
+
+    public int getChunkCount() {
+        return chunks.size();
+    }
+
+    /**
+     * @return The file's games in order. The stream can be made parallel, in which case each
+     * thread reads whole chunks.
+     */
+    public Stream<PGNGame> stream() {
+        return StreamSupport.stream(new GameSpliterator(0, chunks.size(), null), false);
+    }
+
+    /**
+     * Iterates over the games of a range of chunks.
+     */
+    private final class GameSpliterator extends MappedChunks.RangeSpliterator<PGNGame> {
+        // Reads the current chunk. Null until it is started.
+        private PGNReader reader;
+
+        GameSpliterator(int chunk, int end, PGNReader reader) {
+            // A game with its tags is about a kilobyte.
+            super(PGNArchive.this.chunks, chunk, end, 1000);
+            this.reader = reader;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super PGNGame> action) {
+            while (chunk < end) {
+                if (reader == null) {
+                    reader = new PGNReader(new BufferReader(chunks.get(chunk)));
+                }
+                PGNGame game;
+                try {
+                    game = reader.next();
+                } catch (InvalidPGNException e) {
+                    throw new IllegalArgumentException("Cannot read the game at byte "
+                            + (chunks.getOffset(chunk) + reader.getGameOffset()) + " of " + chunks.getFile(), e);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                if (game != null) {
+                    action.accept(game);
+                    return true;
+                }
+                reader = null;
+                chunk++;
+            }
+            return false;
+        }
+
+        @Override
+        GameSpliterator splitOff(int middle) {
+            GameSpliterator prefix = new GameSpliterator(chunk, middle, reader);
+            reader = null;
+            return prefix;
+        }
+    }
+
+    /**
+     * Reads a chunk's bytes as ISO-8859-1 characters, which PGN files are written in.
+     */
+    private static final class BufferReader extends Reader {
+        private final ByteBuffer buffer;
+        private int position = 0;
+
+        BufferReader(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read(char[] chars, int offset, int length) {
+            int count = Math.min(length, buffer.limit() - position);
+            if (count <= 0) {
+                return -1;
+            }
+            for (int i = 0; i < count; i++) {
+                chars[offset + i] = (char) (buffer.get(position + i) & 0xFF);
+            }
+            position += count;
+            return count;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    // Whether a game can start at the index: a "[" at the start of a line after a blank line.
+    private static boolean isGameStart(ByteBuffer buffer, int index) {
+        if (buffer.get(index) != '[' || index < 2 || buffer.get(index - 1) != '\n') {
+            return false;
+        }
+        return buffer.get(index - 2) == '\n'
+                || (index >= 3 && buffer.get(index - 2) == '\r' && buffer.get(index - 3) == '\n');
+    }
+}
@@ -0,0 +1,99 @@
+package games.chess.model;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * One game of a PGN file: its tag pairs, such as [White "Carlsen, Magnus"], its moves as
+ * int-encoded moves (see Moves) and its result. PGNReader reads these and PGNWriter writes them.
+ *
+ * The moves are played from the position in the FEN tag if there is one, otherwise from the
+ * usual starting position.
+ */
+public class PGNGame {
+
+    public static final String WHITE_WINS = "1-0";
+    public static final String BLACK_WINS = "0-1";
+    public static final String DRAWN = "1/2-1/2";
+    public static final String UNKNOWN_RESULT = "*";
+
+    public static final String START_FEN = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+    // Tags in the order they were read or set.
+    private final Map<String, String> tags = new LinkedHashMap<>();
+    private int[] moves = new int[64];
+    private int moveCount = 0;
+    private String result = UNKNOWN_RESULT;
+
+    /**
+     * @return The value of the tag, or null if the game doesn't have it.
+     */
+    public String getTag(String name) {
+        return tags.get(name);
+    }
+
+    public void setTag(String name, String value) {
+        tags.put(name, value);
+    }
+
+    /**
+     * @return The tags in order, as an unmodifiable view.
+     */
+    public Map<String, String> getTags() {
+        return Collections.unmodifiableMap(tags);
+    }
+
+    /**
+     * @return The FEN of the position before the first move.
+     */
+    public String getStartingFEN() {
+        String fen = tags.get("FEN");
+        return fen == null ? START_FEN : fen;
+    }
+
+    /**
+     * Adds a move to the end of the game. It must be legal after the moves before it.
+     */
+    public void addMove(int move) {
+        if (moveCount == moves.length) {
+            moves = Arrays.copyOf(moves, moveCount * 2);
+        }
+        moves[moveCount++] = move;
+    }
+
+    public int getMove(int index) {
+        return moves[index];
+    }
+
+    /**
+     * @return The number of moves, counting each side's separately.
+     */
+    public int getMoveCount() {
+        return moveCount;
+    }
+
+    /**
+     * @return The result at the end of the movetext: WHITE_WINS, BLACK_WINS, DRAWN or UNKNOWN_RESULT.
+     */
+    public String getResult() {
+        return result;
+    }
+
+    public void setResult(String result) {
+        this.result = result;
+    }
+
+    /**
+     * @return A new Game with the moves played from the starting position.
+     * @throws InvalidFENFileException if the FEN tag can't be parsed.
+     */
+    public Game replay() throws InvalidFENFileException {
+        Game game = new Parser().parseFromFENString(getStartingFEN());
+        for (int i = 0; i < moveCount; i++) {
+            game.makeMove(moves[i]);
+        }
+        return game;
+    }
+}
@@ -0,0 +1,323 @@
+package games.chess.model;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reads the games of a PGN file one at a time, so a file of any size can be read in the
+ * memory of a single game.
+ *
+ * Each move is read as SAN and played on a live Game, so every game is checked to be legal
+ * as it is read: a move that is illegal or ambiguous in its position is an error. The game
+ * starts from its FEN tag if it has one. Comments ({...} and ; to the end of the line),
+ * variations in parentheses, numeric annotations such as $1, move numbers and lines starting
+ * with % are skipped. A game ends at its result (1-0, 0-1, 1/2-1/2 or *), or at the next
+ * game's tags or the end of the file if the result is missing. Tags after a blank line that
+ * follows other tags are the next game's, so a game of only tags is a game with no moves; a
+ * tag given twice in one game is an error.
+ *
+ * PGN files are ISO-8859-1, so the Reader should decode that, e.g.
+ * Files.newBufferedReader(path, StandardCharsets.ISO_8859_1). The reader does its own
+ * buffering, so it needn't be buffered.
+ */
+public class PGNReader implements Closeable {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int END = -1;
+
+    private final Reader in;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int position = 0;
+    private int limit = 0;
+    // Characters in the buffers before this one, so offset + position is the offset in the input.
+    private long offset = 0;
+    private int line = 1;
+    private boolean atLineStart = true;
+
+    private final Parser parser = new Parser();
+    private final SAN san = new SAN();
+    private final Game game = new Game();
+    // The symbol being read, reused for every token.
+    private final StringBuilder token = new StringBuilder();
+    // Where the last game read starts, for error messages.
+    private long gameOffset;
+    private int gameLine;
+
+    public PGNReader(Reader in) {
+        this.in = in;
+    }
+
+    /**
+     * Reads the next game.
+     * @return The game, or null at the end of the input.
+     * @throws InvalidPGNException if the game can't be read, or one of its moves isn't legal.
+     */
+    public PGNGame next() throws IOException, InvalidPGNException {
+        PGNGame pgn = null;
+        boolean inMovetext = false;
+        // Line breaks since the last token: two or more make a blank line.
+        int lineBreaks = 0;
+        while (true) {
+            int c = peek();
+            if (c == END) {
+                return pgn == null ? null : finish(pgn, inMovetext);
+            }
+            if (c <= ' ') {
+                if (read() == '\n') {
+                    lineBreaks++;
+                }
+                continue;
+            }
+            if (c == '%' && atLineStart) {
+                skipLine();
+                lineBreaks++;
+                continue;
+            }
+            boolean afterBlankLine = lineBreaks >= 2;
+            lineBreaks = 0;
+            if (pgn == null) {
+                pgn = new PGNGame();
+                gameOffset = offset + position;
+                gameLine = line;
+            }
+            switch (c) {
+                case '[':
+                    if (inMovetext || (afterBlankLine && !pgn.getTags().isEmpty())) {
+                        // The next game's tags, after a game without a result or moves.
+                        return finish(pgn, inMovetext);
+                    }
+                    readTag(pgn);
+                    break;
+                case '{':
+                    skipComment();
+                    break;
+                case ';':
+                    skipLine();
+                    break;
+                case '(':
+                    skipVariation();
+                    break;
+                case '.':
+                    read();
+                    break;
+                case '*':
+                    read();
+                    pgn.setResult(PGNGame.UNKNOWN_RESULT);
+                    return finish(pgn, inMovetext);
+                case '$':
+                    read();
+                    readSymbol();
+                    break;
+                default:
+                    if (!isSymbolStart(c)) {
+                        throw invalid("unexpected character '" + (char) c + "'");
+                    }
+                    readSymbol();
+                    String result = getResult(token);
+                    if (result != null) {
+                        pgn.setResult(result);
+                        return finish(pgn, inMovetext);
+                    }
+                    if (isMoveNumberOrAnnotation(token)) {
+                        break;
+                    }
+                    if (!inMovetext) {
+                        setUpPosition(pgn);
+                        inMovetext = true;
+                    }
+                    int move = san.parse(game, token);
+                    if (move == Moves.NONE) {
+                        throw invalid("\"" + token + "\" is not a legal move");
+                    }
+                    game.makeMove(move);
+                    pgn.addMove(move);
+            }
+        }
+    }
+
+    /**
+     * @return The position at the end of the last game read, with its moves played. It is
+     * replaced when the next game is read.
+     */
+    public Game getGame() {
+        return game;
+    }
+
+    /**
+     * @return The offset in the input, in characters, of the start of the last game read.
+     */
+    public long getGameOffset() {
+        return gameOffset;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private PGNGame finish(PGNGame pgn, boolean inMovetext) throws InvalidPGNException {
+        if (!inMovetext) {
+            // A game with no moves still starts from its FEN tag.
+            setUpPosition(pgn);
+        }
+        return pgn;
+    }
+
+    private void setUpPosition(PGNGame pgn) throws InvalidPGNException {
+        try {
+            parser.parseInto(pgn.getStartingFEN(), game);
+        } catch (InvalidFENFileException e) {
+            throw new InvalidPGNException("Game at line " + gameLine + ": " + e.getMessage(), e);
+        }
+    }
+
+    // Reads a tag pair such as [Event "F/S Return Match"], with \" and \\ escaped in the value.
+    private void readTag(PGNGame pgn) throws IOException, InvalidPGNException {
+        read();
+        skipSpaces();
+        if (!isSymbolStart(peek())) {
+            throw invalid("a tag has no name");
+        }
+        readSymbol();
+        String name = token.toString();
+        skipSpaces();
+        if (read() != '"') {
+            throw invalid("the tag " + name + " has no quoted value");
+        }
+        token.setLength(0);
+        for (int c = read(); c != '"'; c = read()) {
+            if (c == '\\') {
+                c = read();
+            }
+            if (c == END || c == '\n') {
+                throw invalid("the value of the tag " + name + " is not closed");
+            }
+            token.append((char) c);
+        }
+        skipSpaces();
+        if (read() != ']') {
+            throw invalid("the tag " + name + " is not closed");
+        }
+        if (pgn.getTag(name) != null) {
+            throw invalid("the tag " + name + " is given twice");
+        }
+        pgn.setTag(name, token.toString());
+    }
+
+    // Reads a run of symbol characters into `token`.
+    private void readSymbol() throws IOException {
+        token.setLength(0);
+        while (isSymbolCharacter(peek())) {
+            token.append((char) read());
+        }
+    }
+
+    private void skipComment() throws IOException, InvalidPGNException {
+        int startLine = line;
+        for (int c = read(); c != '}'; c = read()) {
+            if (c == END) {
+                throw new InvalidPGNException("Line " + startLine + ": a comment is not closed");
+            }
+        }
+    }
+
+    // Skips a variation, with any variations and comments inside it.
+    private void skipVariation() throws IOException, InvalidPGNException {
+        int startLine = line;
+        int depth = 0;
+        do {
+            int c = read();
+            if (c == END) {
+                throw new InvalidPGNException("Line " + startLine + ": a variation is not closed");
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+            } else if (c == '{') {
+                skipComment();
+            } else if (c == ';') {
+                skipLine();
+            }
+        } while (depth > 0);
+    }
+
+    private void skipLine() throws IOException {
+        for (int c = read(); c != '\n' && c != END; c = read()) {
+            // Skip to the end of the line.
+        }
+    }
+
+    private void skipSpaces() throws IOException {
+        while (peek() != END && peek() <= ' ') {
+            read();
+        }
+    }
+
+    private int peek() throws IOException {
+        if (position == limit && !fill()) {
+            return END;
+        }
+        return buffer[position];
+    }
+
+    private int read() throws IOException {
+        if (position == limit && !fill()) {
+            return END;
+        }
+        char c = buffer[position++];
+        atLineStart = c == '\n';
+        if (atLineStart) {
+            line++;
+        }
+        return c;
+    }
+
+    private boolean fill() throws IOException {
+        offset += limit;
+        position = 0;
+        limit = 0;
+        int count = in.read(buffer, 0, buffer.length);
+        if (count <= 0) {
+            return false;
+        }
+        limit = count;
+        return true;
+    }
+
+    private InvalidPGNException invalid(String reason) {
+        return new InvalidPGNException("Line " + line + " (game at line " + gameLine + "): " + reason);
+    }
+
+    // Returns the result the token stands for, or null if it isn't one. "*" is read on its own.
+    private static String getResult(CharSequence token) {
+        for (String result : new String[]{PGNGame.WHITE_WINS, PGNGame.BLACK_WINS, PGNGame.DRAWN}) {
+            if (result.contentEquals(token)) {
+                return result;
+            }
+        }
+        return null;
+    }
+
+    // Whether the token is a move number, whose dots are read separately, or an annotation
+    // such as "!?" written apart from its move.
+    private static boolean isMoveNumberOrAnnotation(CharSequence token) {
+        boolean digits = true;
+        boolean annotation = true;
+        for (int i = 0; i < token.length(); i++) {
+            char c = token.charAt(i);
+            digits &= c >= '0' && c <= '9';
+            annotation &= c == '!' || c == '?';
+        }
+        return digits || annotation;
+    }
+
+    private static boolean isSymbolStart(int c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '!' || c == '?';
+    }
+
+    // Letters, digits and _+#=:-/ as in the PGN standard, plus annotations written onto a move.
+    private static boolean isSymbolCharacter(int c) {
+        return isSymbolStart(c) || (c != END && "_+#=:-/".indexOf(c) >= 0);
+    }
+}
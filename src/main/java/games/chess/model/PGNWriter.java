@@ -0,0 +1,98 @@
+package games.chess.model;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Writes games in PGN's export format: the tag pairs one per line, a blank line, the movetext
+ * in SAN with move numbers and check and mate suffixes, wrapped before LINE_LENGTH characters
+ * and ending with the result, then another blank line. What PGNReader reads back from the
+ * output is the same game.
+ *
+ * Each game is built up in a buffer the writer keeps and then appended to the output in one
+ * go, so writing many games doesn't allocate much per game. A PGNWriter is not for use from
+ * several threads at once.
+ */
+public class PGNWriter {
+
+    // Movetext lines are kept shorter than this, as the PGN standard asks.
+    public static final int LINE_LENGTH = 80;
+
+    private final Appendable out;
+    private final Parser parser = new Parser();
+    private final SAN san = new SAN();
+    private final Game game = new Game();
+    private final StringBuilder text = new StringBuilder();
+    private final StringBuilder move = new StringBuilder();
+
+    /**
+     * @param out where to write, such as a Writer or a StringBuilder. The caller flushes and
+     *            closes it.
+     */
+    public PGNWriter(Appendable out) {
+        this.out = out;
+    }
+
+    /**
+     * Writes the game. Its moves must be legal, as they are from PGNReader.
+     * @throws InvalidPGNException if the game's FEN tag can't be parsed.
+     */
+    public void write(PGNGame pgn) throws IOException, InvalidPGNException {
+        try {
+            parser.parseInto(pgn.getStartingFEN(), game);
+        } catch (InvalidFENFileException e) {
+            throw new InvalidPGNException(e.getMessage(), e);
+        }
+        text.setLength(0);
+        for (Map.Entry<String, String> tag : pgn.getTags().entrySet()) {
+            text.append('[').append(tag.getKey()).append(" \"");
+            appendEscaped(tag.getValue());
+            text.append("\"]\n");
+        }
+        text.append('\n');
+
+        int lineStart = text.length();
+        for (int i = 0; i < pgn.getMoveCount(); i++) {
+            move.setLength(0);
+            if (game.isWhiteToMove()) {
+                move.append(game.getFullmoveNumber()).append(". ");
+            } else if (i == 0) {
+                move.append(game.getFullmoveNumber()).append("... ");
+            }
+            san.append(game, pgn.getMove(i), move);
+            game.makeMove(pgn.getMove(i));
+            lineStart = appendWord(move, lineStart);
+        }
+        appendWord(pgn.getResult(), lineStart);
+        text.append("\n\n");
+        out.append(text);
+    }
+
+    /**
+     * Appends the word to the movetext, after a space or on a new line if it would make the
+     * line too long. A move number stays with its move.
+     * @return Where the current line starts.
+     */
+    private int appendWord(CharSequence word, int lineStart) {
+        if (text.length() > lineStart) {
+            if (text.length() - lineStart + 1 + word.length() >= LINE_LENGTH) {
+                text.append('\n');
+                lineStart = text.length();
+            } else {
+                text.append(' ');
+            }
+        }
+        text.append(word);
+        return lineStart;
+    }
+
+    private void appendEscaped(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                text.append('\\');
+            }
+            text.append(c);
+        }
+    }
+}
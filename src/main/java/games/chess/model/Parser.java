@@ -5,7 +5,6 @@ import games.chess.model.piece.*;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.util.Scanner;
-import java.util.TreeSet;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -14,54 +13,221 @@ public class Parser {
     public Game parseFromFENFile(String filePath)
             throws FileNotFoundException, InvalidFENFileException {
         String fenString = loadFENFile(filePath);
-        Matcher matcher = matchFENString(fenString);
-        if (!matcher.matches()) {
+        if (!matchFENString(fenString).matches()) {
             throw new InvalidFENFileException("File at " + filePath + " cannot be parsed");
         }
+        return parseFromFENString(fenString);
+    }
+
+    /**
+     * Parses a single FEN record, e.g. "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1".
+     * @throws InvalidFENFileException if the string is not valid FEN.
+     */
+    public Game parseFromFENString(String fenString) throws InvalidFENFileException {
+        return parse(fenString, null);
+    }
 
-        // We use a TreeSet to insert the pieces so they are sorted at the end of parsing.
-        // See the compare() method of PieceComparator to see how the pieces are sorted.
-        TreeSet<Piece> whitePieces = new TreeSet<>(new PieceComparator());
-        TreeSet<Piece> blackPieces = new TreeSet<>(new PieceComparator());
+    /**
+     * Parses a single FEN record from any CharSequence, such as a slice of a larger buffer,
+     * without copying it. The same records are accepted as by parseFromFENString().
+     * @throws InvalidFENFileException if the record is not valid FEN.
+     */
+    public Game parseFromFEN(CharSequence fen) throws InvalidFENFileException {
+        return parse(fen, null);
+    }
+
+    /**
+     * Parses a single FEN record into an existing Game, replacing its position and clearing
+     * its history. Reusing one Game saves allocating its boards and history for every position
+     * when loading many. If the record is invalid, the Game is left as it was.
+     * @throws InvalidFENFileException if the record is not valid FEN.
+     */
+    public void parseInto(CharSequence fen, Game game) throws InvalidFENFileException {
+        parse(fen, game);
+    }
 
-        String[] rows = matcher.group("board").split("/");
-        
-        for (int i = 0; i < rows.length; i++) {
-            String row = rows[i];
-            int rankIndex = 7 - i; // Rank 8 is the first in a FEN file.
-            int fileIndex = 0;
+    /**
+     * Parses the record in one pass over its characters, validating it as strictly as the
+     * FEN regex (see getFENRegex()) does.
+     * @param target a Game to reset to the position, or null to create a new one.
+     */
+    private Game parse(CharSequence fen, Game target) throws InvalidFENFileException {
+        // Surrounding whitespace is ignored, as String.trim() would remove it.
+        int end = fen.length();
+        while (end > 0 && fen.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        int i = 0;
+        while (i < end && fen.charAt(i) <= ' ') {
+            i++;
+        }
 
-            for (char c: row.toCharArray()) {
-                if (Character.isDigit(c)) {
-                    fileIndex += Character.getNumericValue(c);
-                    continue;
+        // The piece letter on each square, indexed as in Bitboards, or 0 if empty.
+        char[] squares = new char[64];
+        int[][] typeCounts = new int[2][TYPE_ORDER.length()];
+        int rankIndex = 7; // Rank 8 is the first in a FEN record.
+        int fileIndex = 0;
+        for (; ; i++) {
+            if (i == end) {
+                throw invalid(fen, "it ends in the board");
+            }
+            char c = fen.charAt(i);
+            if (c == ' ' || c == '/') {
+                if (fileIndex != 8) {
+                    throw invalid(fen, "rank " + (rankIndex + 1) + " is not 8 squares");
                 }
-                
-                boolean isWhite = Character.isUpperCase(c);
-                Square square = new Square(fileIndex, rankIndex);
-                Piece piece = makeFromChar(c, isWhite, square);
-                if (isWhite) {
-                    whitePieces.add(piece);
-                } else {
-                    blackPieces.add(piece);
+                if (c == ' ') {
+                    break;
                 }
-                fileIndex += 1;
+                if (--rankIndex < 0) {
+                    throw invalid(fen, "it has more than 8 ranks");
+                }
+                fileIndex = 0;
+            } else if (c >= '1' && c <= '8') {
+                fileIndex += c - '0';
+            } else if (PIECE_LETTERS.indexOf(c) >= 0) {
+                if (fileIndex < 8) {
+                    squares[Bitboards.index(fileIndex, rankIndex)] = c;
+                    typeCounts[Character.isUpperCase(c) ? 0 : 1][TYPE_ORDER.indexOf(Character.toUpperCase(c))]++;
+                }
+                fileIndex++;
+            } else {
+                throw invalid(fen, "'" + c + "' is not a piece or a count of empty squares");
             }
-            if (fileIndex != 8) {
-                throw new InvalidFENFileException("Row %s is not 8 squares");
+        }
+        if (rankIndex != 0) {
+            throw invalid(fen, "it has fewer than 8 ranks");
+        }
+        i++;
+
+        if (i >= end || (fen.charAt(i) != 'w' && fen.charAt(i) != 'b')) {
+            throw invalid(fen, "the player to move is not w or b");
+        }
+        boolean whiteToMove = fen.charAt(i) == 'w';
+        i = skipSpace(fen, i + 1, end);
+
+        boolean[] castling = new boolean[4]; // K, Q, k, q
+        if (i < end && fen.charAt(i) == '-') {
+            i++;
+        } else {
+            int start = i;
+            for (; i < end && CASTLING_LETTERS.indexOf(fen.charAt(i)) >= 0; i++) {
+                castling[CASTLING_LETTERS.indexOf(fen.charAt(i))] = true;
+            }
+            if (i == start) {
+                throw invalid(fen, "the castling rights are not - or from KQkq");
             }
         }
-        Player whitePlayer = new Player(true, whitePieces);
-        whitePlayer.canCastleKingside = matcher.group("castling").contains("K");
-        whitePlayer.canCastleQueenside = matcher.group("castling").contains("Q");
-        Player blackPlayer = new Player(false, blackPieces);
-        blackPlayer.canCastleKingside = matcher.group("castling").contains("k");
-        blackPlayer.canCastleQueenside = matcher.group("castling").contains("q");
-        boolean whiteToMove = matcher.group("playerToMove").equals("w");
-        Square enPassantSquare = new Square(matcher.group("enPassant"));
-        return new Game(whiteToMove, whitePlayer, blackPlayer, enPassantSquare);
+        i = skipSpace(fen, i, end);
+
+        Square enPassantSquare = Square.OFF_BOARD;
+        if (i < end && fen.charAt(i) == '-') {
+            i++;
+        } else if (i + 1 < end && fen.charAt(i) >= 'a' && fen.charAt(i) <= 'h'
+                && (fen.charAt(i + 1) == '3' || fen.charAt(i + 1) == '6')) {
+            enPassantSquare = Square.of(fen.charAt(i) - 'a', fen.charAt(i + 1) - '1');
+            i += 2;
+        } else {
+            throw invalid(fen, "the en-passant square is not - or on rank 3 or 6");
+        }
+        i = skipSpace(fen, i, end);
+
+        int digits = skipDigits(fen, i, end);
+        if (digits == 0 || digits > 3) {
+            throw invalid(fen, "the halfmove clock is not 1 to 3 digits");
+        }
+        int halfmoveClock = readNumber(fen, i, digits);
+        i = skipSpace(fen, i + digits, end);
+        digits = skipDigits(fen, i, end);
+        if (digits == 0 || i + digits != end) {
+            throw invalid(fen, "the move number is not a number at the end");
+        }
+        int fullmoveNumber = readNumber(fen, i, digits);
+
+        Piece[][] pieces = createPieces(squares, typeCounts);
+        Player whitePlayer = new Player(true, pieces[0]);
+        whitePlayer.canCastleKingside = castling[0];
+        whitePlayer.canCastleQueenside = castling[1];
+        Player blackPlayer = new Player(false, pieces[1]);
+        blackPlayer.canCastleKingside = castling[2];
+        blackPlayer.canCastleQueenside = castling[3];
+        Game game = target;
+        if (game == null) {
+            game = new Game(whiteToMove, whitePlayer, blackPlayer, enPassantSquare);
+        } else {
+            game.reset(whiteToMove, whitePlayer, blackPlayer, enPassantSquare);
+        }
+        game.setMoveCounters(halfmoveClock, fullmoveNumber);
+        return game;
     }
-    
+
+    private static final String PIECE_LETTERS = "kqrnbpKQRNBP";
+    private static final String CASTLING_LETTERS = "KQkq";
+    // The order PieceComparator sorts piece types in: pawns first and the king last.
+    private static final String TYPE_ORDER = "PRNBQK";
+
+    /**
+     * @return The white and black pieces on the squares, sorted as PieceComparator sorts them:
+     * by type, then file, then rank.
+     * @param typeCounts the number of pieces of each colour (white first) and type, with the
+     *                   types in TYPE_ORDER.
+     */
+    private static Piece[][] createPieces(char[] squares, int[][] typeCounts) {
+        Piece[][] pieces = new Piece[2][];
+        // Where the next piece of each colour and type goes.
+        int[][] next = new int[2][TYPE_ORDER.length()];
+        for (int colour = 0; colour < 2; colour++) {
+            int total = 0;
+            for (int t = 0; t < TYPE_ORDER.length(); t++) {
+                next[colour][t] = total;
+                total += typeCounts[colour][t];
+            }
+            pieces[colour] = new Piece[total];
+        }
+        for (int fileIndex = 0; fileIndex < 8; fileIndex++) {
+            for (int rankIndex = 0; rankIndex < 8; rankIndex++) {
+                char c = squares[Bitboards.index(fileIndex, rankIndex)];
+                if (c != 0) {
+                    boolean isWhite = Character.isUpperCase(c);
+                    int colour = isWhite ? 0 : 1;
+                    int t = TYPE_ORDER.indexOf(Character.toUpperCase(c));
+                    pieces[colour][next[colour][t]++] = makeFromChar(c, isWhite, Square.of(fileIndex, rankIndex));
+                }
+            }
+        }
+        return pieces;
+    }
+
+    // Checks for the single space between fields, and returns the index after it.
+    private static int skipSpace(CharSequence fen, int i, int end) throws InvalidFENFileException {
+        if (i >= end || fen.charAt(i) != ' ') {
+            throw invalid(fen, "expected a space at character " + (i + 1));
+        }
+        return i + 1;
+    }
+
+    // Returns the number of digits starting at i.
+    private static int skipDigits(CharSequence fen, int i, int end) {
+        int start = i;
+        while (i < end && fen.charAt(i) >= '0' && fen.charAt(i) <= '9') {
+            i++;
+        }
+        return i - start;
+    }
+
+    // Returns the value of the digits, saturating at Integer.MAX_VALUE rather than overflowing.
+    private static int readNumber(CharSequence fen, int start, int digits) {
+        long value = 0;
+        for (int i = start; i < start + digits; i++) {
+            value = Math.min(value * 10 + fen.charAt(i) - '0', Integer.MAX_VALUE);
+        }
+        return (int) value;
+    }
+
+    private static InvalidFENFileException invalid(CharSequence fen, String reason) {
+        return new InvalidFENFileException("FEN string \"" + fen + "\" cannot be parsed: " + reason);
+    }
+
     private static final Pattern fenPattern = Pattern.compile(Parser.getFENRegex());
     
     protected static String getFENRegex() {
@@ -88,7 +254,7 @@ public class Parser {
         return fenPattern.matcher(input);
     }
     
-    private Piece makeFromChar(char c, boolean isWhite, Square square) {
+    private static Piece makeFromChar(char c, boolean isWhite, Square square) {
         char upper = Character.toUpperCase(c);
         switch (upper) {
             case 'R':
@@ -20,18 +20,18 @@ public class Player {
         pieces = new Piece[16];
         // Add pawns, from a-h
         for (int fileIndex = 0; fileIndex < 8; fileIndex++) {
-            pieces[fileIndex] = new Pawn(isWhite, new Square(fileIndex, pawnRankIndex));
+            pieces[fileIndex] = new Pawn(isWhite, Square.of(fileIndex, pawnRankIndex));
         }
 
         // Other pieces are added outside-in: rooks, knights, bishops, queen and king.
-        pieces[8] = new Rook(isWhite, new Square(0, pieceRankIndex));
-        pieces[9] = new Rook(isWhite, new Square(7, pieceRankIndex));
-        pieces[10] = new Knight(isWhite, new Square(1, pieceRankIndex));
-        pieces[11] = new Knight(isWhite, new Square(6, pieceRankIndex));
-        pieces[12] = new Bishop(isWhite, new Square(2, pieceRankIndex));
-        pieces[13] = new Bishop(isWhite, new Square(5, pieceRankIndex));
-        pieces[14] = new Queen(isWhite, new Square(3, pieceRankIndex));
-        pieces[15] = new King(isWhite, new Square(4, pieceRankIndex));
+        pieces[8] = new Rook(isWhite, Square.of(0, pieceRankIndex));
+        pieces[9] = new Rook(isWhite, Square.of(7, pieceRankIndex));
+        pieces[10] = new Knight(isWhite, Square.of(1, pieceRankIndex));
+        pieces[11] = new Knight(isWhite, Square.of(6, pieceRankIndex));
+        pieces[12] = new Bishop(isWhite, Square.of(2, pieceRankIndex));
+        pieces[13] = new Bishop(isWhite, Square.of(5, pieceRankIndex));
+        pieces[14] = new Queen(isWhite, Square.of(3, pieceRankIndex));
+        pieces[15] = new King(isWhite, Square.of(4, pieceRankIndex));
         this.isWhite = isWhite;
     }
 
@@ -43,6 +43,15 @@ public class Player {
         this.pieces = parsedPieces.toArray(new Piece[0]);
     }
 
+    /**
+     * Creates a player that owns the given array of pieces, sorted as for the Collection
+     * constructor, without copying it.
+     */
+    Player(boolean isWhite, Piece[] sortedPieces) {
+        this.isWhite = isWhite;
+        this.pieces = sortedPieces;
+    }
+
     /**
      * Creates a deep copy of the given player.
      * @param toCopy a Player to copy, so we can modify the new one without changing the original.
@@ -51,10 +60,14 @@ public class Player {
         this.isWhite = toCopy.isWhite;
         this.canCastleKingside = toCopy.canCastleKingside;
         this.canCastleQueenside = toCopy.canCastleQueenside;
-        this.pieces = new Piece[toCopy.pieces.length];
-        for (int i = 0; i < toCopy.pieces.length; i++) {
-            this.pieces[i] = Piece.copy(toCopy.pieces[i]);
+        // Captured pieces are left out of the copy.
+        ArrayList<Piece> inPlay = new ArrayList<>(toCopy.pieces.length);
+        for (Piece piece : toCopy.pieces) {
+            if (piece.isInPlay()) {
+                inPlay.add(Piece.copy(piece));
+            }
         }
+        this.pieces = inPlay.toArray(new Piece[0]);
     }
 
     public boolean isWhite() {
@@ -69,6 +82,19 @@ public class Player {
         return this.pieces.clone();
     }
 
+    /**
+     * Swaps one of the player's pieces for another, e.g. a pawn for the piece it promotes to.
+     * Does nothing if the player doesn't own `toReplace`.
+     */
+    void replacePiece(Piece toReplace, Piece replacement) {
+        for (int i = 0; i < pieces.length; i++) {
+            if (pieces[i] == toReplace) {
+                pieces[i] = replacement;
+                return;
+            }
+        }
+    }
+
     /**
      * Updates the player's pieces with the given move.
      * @param move a Move for the player to make.
@@ -93,8 +119,8 @@ public class Player {
         // has been captured? Game will check for the other prohibitions.
         if (mover instanceof Rook) {
             int startingRankIndex = mover.isWhite() ? 0 : 7;
-            Square aRookStartingSquare = new Square(0, startingRankIndex);
-            Square hRookStartingSquare = new Square(7, startingRankIndex);
+            Square aRookStartingSquare = Square.of(0, startingRankIndex);
+            Square hRookStartingSquare = Square.of(7, startingRankIndex);
             if (mover.getSquare().equals(aRookStartingSquare)) {
                 move.didRevokeQueensideCastle = canCastleQueenside;
                 canCastleQueenside = false;
@@ -116,97 +142,39 @@ public class Player {
      *
      * The returned array is expected to contain some "illegal" moves: in particular,
      * moves which result in the player being in check are not filtered out here.
+     * 
+     * Moves are generated as ints by MoveGenerator and converted to Move objects here.
+     * Search code should use MoveGenerator directly, which doesn't allocate.
      *
      * @param game Current game state, including the board positions of pieces.
      * @return a list of moves the player could make, if not worried about checks.
      */
     public Move[] getCapableMoves(Game game) {
-        ArrayList<Move> moves = new ArrayList<>();
-        for (Piece piece : pieces) {
-            if (piece != null && piece.isInPlay()) {
-                Square[][] capableSquares = piece.getCapableSquares();
-                for (Square[] path : capableSquares) {
-                    moves.addAll(getAllowedMovesAlongPath(game, piece, path));
-                }
-            }
-        }
-        // TODO - add special moves.
-        moves.addAll(getPawnCaptures(game));
-        moves.addAll(getEnPassantMoves(game));
-        
-        return moves.toArray(new Move[0]);
-    }
-
-    // Iterate along the given path of squares, checking whether there is a blocking piece there.
-    protected ArrayList<Move> getAllowedMovesAlongPath(Game game, Piece mover, Square[] path) {
-        ArrayList<Move> moves = new ArrayList<>(path.length);
-        for (Square dest : path) {
-            Piece occupier = game.getPieceAt(dest);
-            if (occupier == null) {
-                moves.add(new Move(mover, dest)); // Square is empty - valid move!
-            } else {
-                if (isOppositeColor(occupier)) {
-                    if (!(mover instanceof Pawn)) { // Capture if the mover isn't a pawn.
-                        moves.add(new Move(mover, dest, occupier));
-                    }
-                }
-                break; // Break at the first occupied square.
-            }
+        MoveList moveList = new MoveList();
+        MoveGenerator.generate(game, isWhite, moveList);
+        Move[] moves = new Move[moveList.size()];
+        for (int i = 0; i < moves.length; i++) {
+            moves[i] = Moves.toMove(moveList.get(i), game);
         }
         return moves;
     }
 
-    protected ArrayList<Move> getPawnCaptures(Game game) {
-        ArrayList<Move> pawnCaptures = new ArrayList<>();
-        int rankModifier = isWhite ? 1 : -1;
-        for (Piece mover: pieces) {
-            if (mover instanceof Pawn) {
-                Square s = mover.getSquare();
-                Square left = new Square(s.getFileIndex() - 1,s.getRankIndex() + rankModifier);
-                Square right = new Square(s.getFileIndex() + 1, s.getRankIndex() + rankModifier);
-
-                Piece atLeft = game.getPieceAt(left);
-                if (atLeft != null && isOppositeColor(atLeft)) {
-                    pawnCaptures.add(new Move(mover, left, atLeft));
-                }
-
-                Piece atRight = game.getPieceAt(right);
-                if (atRight != null && isOppositeColor(atRight)) {
-                    pawnCaptures.add(new Move(mover, right, atRight));
-                }
-            }
-        }
-        return pawnCaptures;
-    }
-
     protected ArrayList<Move> getEnPassantMoves(Game game) {
         ArrayList<Move> enPassantMoves = new ArrayList<>(2);
         Piece capturablePiece = game.getEnPassantCapturablePiece();
         if (capturablePiece != null && isOppositeColor(capturablePiece)) {
-            Square s = capturablePiece.getSquare();
-            Square left = new Square(s.getFileIndex() - 1, s.getRankIndex());
-            Square right = new Square(s.getFileIndex() + 1, s.getRankIndex());
-            
-            Piece atLeft = game.getPieceAt(left);
-            if (atLeft instanceof Pawn && isSameColor(atLeft)) {
-                Move move = new Move(atLeft, game.getEnPassantSquare(), atLeft);
-                enPassantMoves.add(move);
-            }
-            
-            Piece atRight = game.getPieceAt(right);
-            if (atRight instanceof Pawn && isSameColor(atRight)) {
-                Move move = new Move(atRight, game.getEnPassantSquare(), atRight);
-                enPassantMoves.add(move);
+            // Our pawns that could capture on the en-passant square are exactly those
+            // an enemy pawn on that square would attack.
+            int target = game.getEnPassantSquare().getIndex();
+            long attackers = Bitboards.pawnAttacks(!isWhite, target) & game.getPieceBoard(isWhite, Piece.PAWN);
+            for (; attackers != 0; attackers &= attackers - 1) {
+                Piece mover = game.getPieceAt(Bitboards.lowestSquare(attackers));
+                enPassantMoves.add(new Move(mover, game.getEnPassantSquare(), capturablePiece));
             }
         }
         return enPassantMoves;
     }
     
-    // Returns whether the given piece belongs to the player.
-    private boolean isSameColor(Piece piece) {
-        return piece.isWhite() == this.isWhite;
-    }
-    
     // Returns whether the given piece belongs to the opponent.
     private boolean isOppositeColor(Piece piece) {
         return piece.isWhite() != this.isWhite;
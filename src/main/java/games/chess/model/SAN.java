@@ -0,0 +1,246 @@
+package games.chess.model;
+
+import games.chess.model.piece.Piece;
+
+import java.util.regex.Pattern;
+
+/**
+ * Standard Algebraic Notation, the move format of PGN: e4, Nbd7, exd5, O-O, e8=Q, Qxf7#.
+ *
+ * Moves are read and written as int-encoded moves (see Moves) against the Game they are
+ * played in, since only the position can say which piece "Nd7" moves or whether a move needs
+ * a file or rank to tell it apart. A SAN keeps its own move lists, so it can be reused for any
+ * number of moves without allocating, but not from several threads at once.
+ */
+public class SAN {
+
+    // Disambiguation bits from getDisambiguation(): the origin's file, rank, or both.
+    private static final int BY_FILE = 1;
+    private static final int BY_RANK = 2;
+
+    // Piece letters by type index. Pawns have none.
+    private static final String PIECE_LETTERS = "PNBRQK";
+
+    // Pawns only promote on the first or last rank.
+    private static final Pattern SAN_PATTERN = Pattern.compile(
+            "(O-O(-O)?|0-0(-0)?|[KQRBN][a-h]?[1-8]?x?[a-h][1-8]|([a-h]x)?([a-h][1-8]|[a-h][18]=?[QRBN]))[+#]?[!?]{0,2}");
+
+    private final MoveList moves = new MoveList();
+    private final MoveList replies = new MoveList();
+
+    /**
+     * @return Whether the text is written like a SAN move, whether or not it could be played.
+     * A check or mate suffix and annotations such as "!?" are allowed.
+     */
+    public static boolean isValidSyntax(CharSequence text) {
+        return SAN_PATTERN.matcher(text).matches();
+    }
+
+    /**
+     * @return The legal move in the game that the text names, or Moves.NONE if it names no
+     * legal move or more than one.
+     */
+    public int parse(Game game, CharSequence text) {
+        return parse(game, text, 0, text.length());
+    }
+
+    /**
+     * Reads the move from part of the text, as parse(game, text) does.
+     * Check and mate suffixes and annotations such as "!?" are ignored, and so are a missing
+     * "x" on a capture and a missing "=" before a promotion piece.
+     * @param start the index of the first character of the move.
+     * @param end the index after the last character.
+     */
+    public int parse(Game game, CharSequence text, int start, int end) {
+        while (end > start && "+#!?".indexOf(text.charAt(end - 1)) >= 0) {
+            end--;
+        }
+        game.getLegalMoves(moves);
+        int castle = getCastleFlags(text, start, end);
+        if (castle != Moves.NONE) {
+            for (int i = 0; i < moves.size(); i++) {
+                if (Moves.getFlags(moves.get(i)) == castle) {
+                    return moves.get(i);
+                }
+            }
+            return Moves.NONE;
+        }
+
+        int type = Piece.PAWN;
+        if (start < end && PIECE_LETTERS.indexOf(text.charAt(start)) > 0) {
+            type = PIECE_LETTERS.indexOf(text.charAt(start));
+            start++;
+        }
+        int promotion = Move.NO_PROMOTION;
+        if (type == Piece.PAWN && end - start > 2 && PIECE_LETTERS.indexOf(text.charAt(end - 1)) > 0) {
+            promotion = PIECE_LETTERS.indexOf(text.charAt(end - 1));
+            end -= text.charAt(end - 2) == '=' ? 2 : 1;
+        }
+        if (end - start < 2 || !isFile(text.charAt(end - 2)) || !isRank(text.charAt(end - 1))) {
+            return Moves.NONE;
+        }
+        int to = Bitboards.index(text.charAt(end - 2) - 'a', text.charAt(end - 1) - '1');
+        // What's left between the piece and the destination: an origin file or rank, or both,
+        // and the capture sign.
+        int fromFile = -1;
+        int fromRank = -1;
+        for (int i = start; i < end - 2; i++) {
+            char c = text.charAt(i);
+            if (isFile(c)) {
+                fromFile = c - 'a';
+            } else if (isRank(c)) {
+                fromRank = c - '1';
+            } else if (c != 'x' && c != ':') {
+                return Moves.NONE;
+            }
+        }
+
+        int found = Moves.NONE;
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            int from = Moves.getFrom(move);
+            if (Moves.getTo(move) != to || Moves.isCastle(move)
+                    || game.getPieceAt(from).getTypeIndex() != type
+                    || Moves.getPromotionTypeIndex(move) != promotion
+                    || (fromFile >= 0 && Bitboards.fileOf(from) != fromFile)
+                    || (fromRank >= 0 && Bitboards.rankOf(from) != fromRank)) {
+                continue;
+            }
+            if (found != Moves.NONE) {
+                return Moves.NONE;
+            }
+            found = move;
+        }
+        return found;
+    }
+
+    /**
+     * @return The legal move in SAN, with a check or mate suffix.
+     */
+    public String toSAN(Game game, int move) {
+        StringBuilder name = new StringBuilder(8);
+        append(game, move, name);
+        return name.toString();
+    }
+
+    /**
+     * Appends the legal move in SAN, with a check or mate suffix.
+     */
+    public void append(Game game, int move, StringBuilder out) {
+        int from = Moves.getFrom(move);
+        int to = Moves.getTo(move);
+        int flags = Moves.getFlags(move);
+        if (flags == Moves.KING_CASTLE) {
+            out.append("O-O");
+        } else if (flags == Moves.QUEEN_CASTLE) {
+            out.append("O-O-O");
+        } else {
+            int type = game.getPieceAt(from).getTypeIndex();
+            if (type == Piece.PAWN) {
+                if (Moves.isCapture(move)) {
+                    out.append((char) ('a' + Bitboards.fileOf(from)));
+                }
+            } else {
+                out.append(PIECE_LETTERS.charAt(type));
+                game.getLegalMoves(moves);
+                int disambiguation = getDisambiguation(game, moves, move);
+                if ((disambiguation & BY_FILE) != 0) {
+                    out.append((char) ('a' + Bitboards.fileOf(from)));
+                }
+                if ((disambiguation & BY_RANK) != 0) {
+                    out.append((char) ('1' + Bitboards.rankOf(from)));
+                }
+            }
+            if (Moves.isCapture(move)) {
+                out.append('x');
+            }
+            out.append((char) ('a' + Bitboards.fileOf(to))).append((char) ('1' + Bitboards.rankOf(to)));
+            if (Moves.isPromotion(move)) {
+                out.append('=').append(PIECE_LETTERS.charAt(Moves.getPromotionTypeIndex(move)));
+            }
+        }
+        char suffix = getCheckSuffix(game, move, replies);
+        if (suffix != 0) {
+            out.append(suffix);
+        }
+    }
+
+    /**
+     * Works out what SAN needs to tell a piece move apart from moves by other pieces of the
+     * same type to the same square: the origin's file if that is enough, otherwise its rank,
+     * otherwise both. Pawn and king moves never need it.
+     * @param legalMoves the legal moves in the game, including the move.
+     * @return BY_FILE, BY_RANK, both or neither.
+     */
+    private static int getDisambiguation(Game game, MoveList legalMoves, int move) {
+        int from = Moves.getFrom(move);
+        int to = Moves.getTo(move);
+        int type = game.getPieceAt(from).getTypeIndex();
+        if (type == Piece.PAWN || type == Piece.KING) {
+            return 0;
+        }
+        boolean ambiguous = false;
+        boolean sharesFile = false;
+        boolean sharesRank = false;
+        for (int i = 0; i < legalMoves.size(); i++) {
+            int other = Moves.getFrom(legalMoves.get(i));
+            if (other == from || Moves.getTo(legalMoves.get(i)) != to
+                    || game.getPieceAt(other).getTypeIndex() != type) {
+                continue;
+            }
+            ambiguous = true;
+            sharesFile |= Bitboards.fileOf(other) == Bitboards.fileOf(from);
+            sharesRank |= Bitboards.rankOf(other) == Bitboards.rankOf(from);
+        }
+        if (!ambiguous) {
+            return 0;
+        } else if (!sharesFile) {
+            return BY_FILE;
+        } else if (!sharesRank) {
+            return BY_RANK;
+        }
+        return BY_FILE | BY_RANK;
+    }
+
+    /**
+     * Plays the legal move and takes it back to see whether it gives check or mate.
+     * @param replies a list to generate the opponent's replies into.
+     * @return '#' for checkmate, '+' for check, otherwise 0.
+     */
+    private static char getCheckSuffix(Game game, int move, MoveList replies) {
+        game.makeMove(move);
+        char suffix = 0;
+        if (game.isActivePlayerInCheck()) {
+            game.getLegalMoves(replies);
+            suffix = replies.isEmpty() ? '#' : '+';
+        }
+        game.undoLastMove();
+        return suffix;
+    }
+
+    // Returns KING_CASTLE or QUEEN_CASTLE if the text is a castle, written with O or 0, or NONE.
+    private static int getCastleFlags(CharSequence text, int start, int end) {
+        int length = end - start;
+        if (length != 3 && length != 5) {
+            return Moves.NONE;
+        }
+        char o = text.charAt(start);
+        if (o != 'O' && o != '0') {
+            return Moves.NONE;
+        }
+        for (int i = start; i < end; i++) {
+            if (text.charAt(i) != ((i - start) % 2 == 0 ? o : '-')) {
+                return Moves.NONE;
+            }
+        }
+        return length == 3 ? Moves.KING_CASTLE : Moves.QUEEN_CASTLE;
+    }
+
+    private static boolean isFile(char c) {
+        return c >= 'a' && c <= 'h';
+    }
+
+    private static boolean isRank(char c) {
+        return c >= '1' && c <= '8';
+    }
+}
@@ -4,11 +4,26 @@ import java.util.regex.Pattern;
 
 /**
  * Represents a square on the board.
+ * 
+ * Squares are immutable, so hot paths should use the shared instances from Square.of()
+ * rather than constructing new ones.
  */
 public class Square {
 
     static Pattern pattern = Pattern.compile("^[a-h][1-8]$");
 
+    // The 64 board squares, indexed as in Bitboards, plus a shared off-board sentinel.
+    private static final Square[] SQUARES = new Square[64];
+    private static final String[] NAMES = new String[64];
+    public static final Square OFF_BOARD = new Square(-1, -1);
+
+    static {
+        for (int index = 0; index < 64; index++) {
+            SQUARES[index] = new Square(Bitboards.fileOf(index), Bitboards.rankOf(index));
+            NAMES[index] = "" + (char) (Bitboards.fileOf(index) + (int) 'a') + (Bitboards.rankOf(index) + 1);
+        }
+    }
+
     private final int fileIndex;
     private final int rankIndex;
 
@@ -22,6 +37,38 @@ public class Square {
         this.rankIndex = Square.parseRankIndex(squareName);
     }
 
+    /**
+     * @return The shared Square for the given indexes, or OFF_BOARD if they are not on the board.
+     */
+    public static Square of(int fileIndex, int rankIndex) {
+        if (fileIndex < 0 || fileIndex > 7 || rankIndex < 0 || rankIndex > 7) {
+            return OFF_BOARD;
+        }
+        return SQUARES[(rankIndex << 3) | fileIndex];
+    }
+
+    /**
+     * @param index a bitboard square index, from 0 (a1) to 63 (h8).
+     * @return The shared Square for the index, or OFF_BOARD if it is out of range.
+     */
+    public static Square of(int index) {
+        if (index < 0 || index > 63) {
+            return OFF_BOARD;
+        }
+        return SQUARES[index];
+    }
+
+    /**
+     * Parses a square name (e.g. "e4") without going through the regex.
+     * @return The shared Square with that name, or OFF_BOARD if the name can't be parsed.
+     */
+    public static Square of(String squareName) {
+        if (squareName == null || squareName.length() != 2) {
+            return OFF_BOARD;
+        }
+        return of(squareName.charAt(0) - 'a', squareName.charAt(1) - '1');
+    }
+
     public static boolean canParse(String squareName) {
         return pattern.matcher(squareName).matches();
     }
@@ -52,6 +99,11 @@ public class Square {
         return fileIndex == square.fileIndex && rankIndex == square.rankIndex;
     }
 
+    @Override
+    public int hashCode() {
+        return 31 * fileIndex + rankIndex;
+    }
+
     public int getFileIndex() {
         return fileIndex;
     }
@@ -60,6 +112,13 @@ public class Square {
         return rankIndex;
     }
 
+    /**
+     * @return The bitboard index of this square, from 0 (a1) to 63 (h8).
+     */
+    public int getIndex() {
+        return Bitboards.index(fileIndex, rankIndex);
+    }
+
     public String getFileName() {
         return "" + (char) (fileIndex + (int) 'a');
     }
@@ -72,7 +131,10 @@ public class Square {
      * @return The canonical Square representation (e.g. e4 or f7)
      */
     public String getName() {
-        return getFileName() + getRankName();
+        if (!isOnBoard()) {
+            return getFileName() + getRankName();
+        }
+        return NAMES[getIndex()];
     }
 
     /**
@@ -0,0 +1,127 @@
+package games.chess.model;
+
+import games.chess.model.piece.Piece;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Exact results for endgames of two kings and one other piece: KQK, KRK and KPK, with the
+ * piece on either side. TablebaseGenerator builds the files; this class memory-maps them, so
+ * a probe is a single byte read with no heap cost however many positions are looked up.
+ *
+ * Each file has one byte per position, indexed by index(). Positions are stored with white as
+ * the side with the extra piece; positions where black has it are probed with the board
+ * flipped. A byte of 0 is a draw (or a position that can't occur), a positive byte n means the
+ * side to move mates in n plies, and a negative byte -n means it is mated in n - 1 plies.
+ * Castling and the fifty-move rule are ignored.
+ */
+public class Tablebase {
+
+    public static final int NOT_FOUND = Integer.MIN_VALUE;
+    public static final int WIN = 1;
+    public static final int DRAW = 0;
+    public static final int LOSS = -1;
+
+    // The most pieces, kings included, in any position the tables cover.
+    public static final int MAX_PIECES = 3;
+    // Positions per file: side to move, then the three pieces' squares.
+    public static final int POSITIONS = 2 * 64 * 64 * 64;
+    // The piece types with tables, in the order they must be generated: a pawn promotes to
+    // the others.
+    static final int[] PIECE_TYPES = new int[]{Piece.QUEEN, Piece.ROOK, Piece.PAWN};
+
+    // Indexed by the type of the extra piece. Null where there is no table.
+    private final MappedByteBuffer[] tables = new MappedByteBuffer[Piece.KING];
+
+    /**
+     * Maps the tables in the directory. Tables that are missing are skipped, and positions
+     * they would cover are not found.
+     * @throws IOException if a table can't be read or has the wrong size.
+     */
+    public Tablebase(Path directory) throws IOException {
+        for (int type : PIECE_TYPES) {
+            Path file = directory.resolve(getFileName(type));
+            if (!Files.isRegularFile(file)) {
+                continue;
+            }
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                if (channel.size() != POSITIONS) {
+                    throw new IOException("Not a tablebase: " + file);
+                }
+                tables[type] = channel.map(FileChannel.MapMode.READ_ONLY, 0, POSITIONS);
+            }
+        }
+    }
+
+    /**
+     * @return The name of the file for the endgame with an extra piece of the type, e.g. KQK.tb.
+     */
+    public static String getFileName(int typeIndex) {
+        String piece = typeIndex == Piece.PAWN ? "P" : Piece.getAbbrevName(typeIndex);
+        return "K" + piece + "K.tb";
+    }
+
+    /**
+     * @return The position's index in a table.
+     * @param strongToMove whether the side with the extra piece is to move.
+     */
+    public static int index(boolean strongToMove, int strongKing, int weakKing, int pieceSquare) {
+        return (((strongToMove ? 0 : 1) * 64 + strongKing) * 64 + weakKing) * 64 + pieceSquare;
+    }
+
+    /**
+     * Looks up the position.
+     * @return The table's value for the position (see getOutcome() and getPliesToMate()),
+     * or NOT_FOUND if no table covers it.
+     */
+    public int probe(Game game) {
+        if (Bitboards.count(game.getOccupancy()) != MAX_PIECES) {
+            return NOT_FOUND;
+        }
+        boolean strongIsWhite = Bitboards.count(game.getOccupancy(true)) == 2;
+        int pieceSquare = Bitboards.lowestSquare(
+                game.getOccupancy(strongIsWhite) & ~game.getPieceBoard(strongIsWhite, Piece.KING));
+        int type = game.getPieceAt(pieceSquare).getTypeIndex();
+        if (tables[type] == null) {
+            return NOT_FOUND;
+        }
+        int strongKing = Bitboards.lowestSquare(game.getPieceBoard(strongIsWhite, Piece.KING));
+        int weakKing = Bitboards.lowestSquare(game.getPieceBoard(!strongIsWhite, Piece.KING));
+        if (!strongIsWhite) {
+            // Flip the board so the extra piece is white's.
+            strongKing ^= 56;
+            weakKing ^= 56;
+            pieceSquare ^= 56;
+        }
+        return tables[type].get(index(game.isWhiteToMove() == strongIsWhite, strongKing, weakKing, pieceSquare));
+    }
+
+    /**
+     * @param value a value from probe().
+     * @return WIN, DRAW or LOSS for the side to move.
+     */
+    public static int getOutcome(int value) {
+        return Integer.signum(value);
+    }
+
+    /**
+     * @param value a value from probe() for a win or a loss.
+     * @return The plies until the side to move mates, or is mated if it's a loss.
+     */
+    public static int getPliesToMate(int value) {
+        return value > 0 ? value : -value - 1;
+    }
+
+    static byte encodeWin(int plies) {
+        return (byte) plies;
+    }
+
+    static byte encodeLoss(int plies) {
+        return (byte) -(plies + 1);
+    }
+}
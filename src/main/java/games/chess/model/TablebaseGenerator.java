@@ -0,0 +1,272 @@
+package games.chess.model;
+
+import games.chess.model.piece.King;
+import games.chess.model.piece.Piece;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Builds the Tablebase files by retrograde analysis.
+ *
+ * Every position of a table is set up as a Game and its legal moves are made to find the
+ * positions they lead to. Moves that capture the extra piece lead to a drawn KK ending, and
+ * promotions lead into a table built earlier (or to a drawn KNK or KBK ending). The results
+ * then spread backwards from the checkmates one ply at a time: a position with a move to a
+ * loss in n plies is a win in n + 1, and a position whose moves all lead to wins, the longest
+ * in n plies, is a loss in n + 1. Whatever is left unresolved is a draw.
+ *
+ * Usage: TablebaseGenerator &lt;directory&gt; writes KQK.tb, KRK.tb and KPK.tb to the directory.
+ */
+public class TablebaseGenerator {
+
+    // Events in the retrograde queue: a position that can win, and a position that has lost
+    // one more of its moves to a win for the opponent.
+    private static final int WIN_EVENT = 0;
+    private static final int DECREMENT_EVENT = 1;
+
+    private TablebaseGenerator() {}
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: TablebaseGenerator <directory>");
+            return;
+        }
+        generateAll(Path.of(args[0]), System.out);
+    }
+
+    /**
+     * Generates all the tables into the directory, printing a summary of each.
+     */
+    public static void generateAll(Path directory, PrintStream output) throws IOException {
+        Files.createDirectories(directory);
+        byte[][] tables = new byte[Piece.KING][];
+        for (int type : Tablebase.PIECE_TYPES) {
+            long start = System.currentTimeMillis();
+            tables[type] = generate(type, tables);
+            Files.write(directory.resolve(Tablebase.getFileName(type)), tables[type]);
+            int wins = 0;
+            int losses = 0;
+            int longest = 0;
+            for (byte value : tables[type]) {
+                if (value > 0) {
+                    wins++;
+                    longest = Math.max(longest, Tablebase.getPliesToMate(value));
+                } else if (value < 0) {
+                    losses++;
+                }
+            }
+            output.printf("%s: %d wins, %d losses, longest mate %d plies, %dms%n",
+                    Tablebase.getFileName(type), wins, losses, longest,
+                    System.currentTimeMillis() - start);
+        }
+    }
+
+    /**
+     * Generates the table for the extra piece type.
+     * @param tables the tables generated so far, indexed by piece type, for promotions to look up.
+     * @return The table, with a byte per position as described in Tablebase.
+     */
+    static byte[] generate(int type, byte[][] tables) {
+        byte[] values = new byte[Tablebase.POSITIONS];
+        boolean[] resolved = new boolean[Tablebase.POSITIONS];
+        // Moves not yet known to lose, for positions that aren't resolved.
+        int[] remaining = new int[Tablebase.POSITIONS];
+        int[] successorStart = new int[Tablebase.POSITIONS + 1];
+        IntArray successors = new IntArray();
+        IntArray mates = new IntArray();
+        List<IntArray> events = new ArrayList<>();
+        MoveList moves = new MoveList();
+
+        for (int index = 0; index < Tablebase.POSITIONS; index++) {
+            successorStart[index] = successors.size();
+            Game game = createGame(type, index);
+            if (game == null) {
+                resolved[index] = true;
+                continue;
+            }
+            game.getLegalMoves(moves);
+            if (moves.isEmpty()) {
+                resolved[index] = true;
+                if (game.isActivePlayerInCheck()) {
+                    mates.add(index);
+                }
+                continue;
+            }
+            for (int i = 0; i < moves.size(); i++) {
+                game.makeMove(moves.get(i));
+                int next = getIndex(game, type);
+                if (next >= 0) {
+                    successors.add(next);
+                    remaining[index]++;
+                } else {
+                    // The move leaves the table. Its value is for the opponent, who is to move.
+                    int value = getValueOutside(game, tables);
+                    if (value < 0) {
+                        addEvent(events, Tablebase.getPliesToMate(value) + 1, index, WIN_EVENT);
+                    } else {
+                        remaining[index]++;
+                        if (value > 0) {
+                            addEvent(events, Tablebase.getPliesToMate(value) + 1, index, DECREMENT_EVENT);
+                        }
+                    }
+                }
+                game.undoLastMove();
+            }
+        }
+        successorStart[Tablebase.POSITIONS] = successors.size();
+        int[] predecessorStart = new int[Tablebase.POSITIONS + 1];
+        int[] predecessors = invert(successorStart, successors, predecessorStart);
+
+        for (int i = 0; i < mates.size(); i++) {
+            int index = mates.get(i);
+            values[index] = Tablebase.encodeLoss(0);
+            addPredecessorEvents(events, 1, index, WIN_EVENT, predecessorStart, predecessors);
+        }
+        for (int plies = 1; plies < events.size(); plies++) {
+            IntArray level = events.get(plies);
+            // Events added while processing this level are for the next one.
+            for (int i = 0; level != null && i < level.size(); i++) {
+                int index = level.get(i) >>> 1;
+                if (resolved[index]) {
+                    continue;
+                }
+                if ((level.get(i) & 1) == WIN_EVENT) {
+                    resolved[index] = true;
+                    values[index] = Tablebase.encodeWin(plies);
+                    addPredecessorEvents(events, plies + 1, index, DECREMENT_EVENT, predecessorStart, predecessors);
+                } else if (--remaining[index] == 0) {
+                    resolved[index] = true;
+                    values[index] = Tablebase.encodeLoss(plies);
+                    addPredecessorEvents(events, plies + 1, index, WIN_EVENT, predecessorStart, predecessors);
+                }
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Sets up the table's position as a Game.
+     * @return The game, or null if the position can't occur: two pieces on a square, the
+     * kings touching, a pawn on the first or last rank, or the side not to move in check.
+     */
+    static Game createGame(int type, int index) {
+        int pieceSquare = index & 63;
+        int weakKing = (index >>> 6) & 63;
+        int strongKing = (index >>> 12) & 63;
+        boolean strongToMove = (index >>> 18) == 0;
+        if (pieceSquare == weakKing || pieceSquare == strongKing
+                || (Bitboards.kingAttacks(strongKing) & (1L << weakKing)) != 0 || strongKing == weakKing) {
+            return null;
+        }
+        if (type == Piece.PAWN && (Bitboards.rankOf(pieceSquare) == 0 || Bitboards.rankOf(pieceSquare) == 7)) {
+            return null;
+        }
+        // The king goes last, where Player.getKing() expects it.
+        Player white = new Player(true, Arrays.asList(
+                Piece.create(type, true, Square.of(pieceSquare)), new King(true, Square.of(strongKing))));
+        Player black = new Player(false, List.of(new King(false, Square.of(weakKing))));
+        for (Player player : new Player[]{white, black}) {
+            player.canCastleKingside = false;
+            player.canCastleQueenside = false;
+        }
+        Game game = new Game(strongToMove, white, black, null);
+        return game.isInactivePlayerInCheck() ? null : game;
+    }
+
+    /**
+     * @return The index in the table for the extra piece type of the game's position, or -1
+     * if the piece has been captured or promoted.
+     */
+    private static int getIndex(Game game, int type) {
+        long pieces = game.getPieceBoard(true, type);
+        if (pieces == 0) {
+            return -1;
+        }
+        return Tablebase.index(game.isWhiteToMove(),
+                Bitboards.lowestSquare(game.getPieceBoard(true, Piece.KING)),
+                Bitboards.lowestSquare(game.getPieceBoard(false, Piece.KING)),
+                Bitboards.lowestSquare(pieces));
+    }
+
+    /**
+     * @return The value for the side to move of a position that has left the table: a draw
+     * for bare kings or a minor piece, otherwise the value from the table of the promoted piece.
+     */
+    private static int getValueOutside(Game game, byte[][] tables) {
+        for (int type = Piece.KNIGHT; type <= Piece.QUEEN; type++) {
+            int index = getIndex(game, type);
+            if (index >= 0) {
+                return tables[type] == null ? 0 : tables[type][index];
+            }
+        }
+        return 0;
+    }
+
+    private static void addEvent(List<IntArray> events, int plies, int index, int event) {
+        while (events.size() <= plies) {
+            events.add(null);
+        }
+        if (events.get(plies) == null) {
+            events.set(plies, new IntArray());
+        }
+        events.get(plies).add(index << 1 | event);
+    }
+
+    private static void addPredecessorEvents(List<IntArray> events, int plies, int index, int event,
+                                             int[] predecessorStart, int[] predecessors) {
+        for (int i = predecessorStart[index]; i < predecessorStart[index + 1]; i++) {
+            addEvent(events, plies, predecessors[i], event);
+        }
+    }
+
+    /**
+     * Reverses the move graph: fills predecessorStart with where each position's predecessors
+     * start in the returned array, as successorStart does for successors.
+     */
+    private static int[] invert(int[] successorStart, IntArray successors, int[] predecessorStart) {
+        int positions = predecessorStart.length - 1;
+        for (int i = 0; i < successors.size(); i++) {
+            predecessorStart[successors.get(i) + 1]++;
+        }
+        for (int i = 0; i < positions; i++) {
+            predecessorStart[i + 1] += predecessorStart[i];
+        }
+        int[] predecessors = new int[successors.size()];
+        int[] next = Arrays.copyOf(predecessorStart, positions);
+        for (int index = 0; index < positions; index++) {
+            for (int i = successorStart[index]; i < successorStart[index + 1]; i++) {
+                predecessors[next[successors.get(i)]++] = index;
+            }
+        }
+        return predecessors;
+    }
+
+    /**
+     * A growable list of ints, so millions of moves don't each need a boxed Integer.
+     */
+    private static final class IntArray {
+        private int[] values = new int[16];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int get(int index) {
+            return values[index];
+        }
+
+        int size() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package games.chess.model;
+
+import java.util.Random;
+
+/**
+ * Random keys for Zobrist hashing of chess positions.
+ *
+ * A position's key is the XOR of the keys of every (piece, square) pair on the board, the
+ * castling rights, the en-passant file (if any) and the side to move. Since XOR is its own
+ * inverse, Game can update the key as pieces move instead of recomputing it.
+ *
+ * Keys come from a seeded generator so they are stable between runs, which lets keys be
+ * stored and compared across processes.
+ */
+public final class Zobrist {
+
+    // Castling rights are packed into 4 bits with these flags to index CASTLING.
+    public static final int WHITE_KINGSIDE = 1;
+    public static final int WHITE_QUEENSIDE = 2;
+    public static final int BLACK_KINGSIDE = 4;
+    public static final int BLACK_QUEENSIDE = 8;
+
+    // Indexed by [piece board index][square], matching the Game bitboards.
+    static final long[][] PIECES = new long[12][64];
+    static final long[] CASTLING = new long[16];
+    static final long[] EN_PASSANT_FILES = new long[8];
+    static final long BLACK_TO_MOVE;
+
+    static {
+        Random random = new Random(0x2B7E151628AED2A6L);
+        for (long[] pieceKeys : PIECES) {
+            for (int square = 0; square < 64; square++) {
+                pieceKeys[square] = random.nextLong();
+            }
+        }
+        // Each combination of rights is the XOR of its individual flags' keys.
+        long[] rightKeys = new long[4];
+        for (int i = 0; i < rightKeys.length; i++) {
+            rightKeys[i] = random.nextLong();
+        }
+        for (int rights = 0; rights < CASTLING.length; rights++) {
+            for (int i = 0; i < rightKeys.length; i++) {
+                if ((rights & (1 << i)) != 0) {
+                    CASTLING[rights] ^= rightKeys[i];
+                }
+            }
+        }
+        for (int file = 0; file < 8; file++) {
+            EN_PASSANT_FILES[file] = random.nextLong();
+        }
+        BLACK_TO_MOVE = random.nextLong();
+    }
+
+    private Zobrist() {}
+
+    /**
+     * @return The castling rights of both players packed into the 4-bit flag format.
+     */
+    public static int getCastlingRights(Player white, Player black) {
+        int rights = 0;
+        if (white.canCastleKingside) {
+            rights |= WHITE_KINGSIDE;
+        }
+        if (white.canCastleQueenside) {
+            rights |= WHITE_QUEENSIDE;
+        }
+        if (black.canCastleKingside) {
+            rights |= BLACK_KINGSIDE;
+        }
+        if (black.canCastleQueenside) {
+            rights |= BLACK_QUEENSIDE;
+        }
+        return rights;
+    }
+
+    // Returns the key for the en-passant square, or 0 if there is none.
+    static long enPassantKey(Square enPassantSquare) {
+        if (enPassantSquare == null) {
+            return 0L;
+        }
+        return EN_PASSANT_FILES[enPassantSquare.getFileIndex()];
+    }
+}
@@ -12,6 +12,11 @@ public class Bishop extends Piece {
         return getDiagonalSquares();
     }
 
+    @Override
+    public int getTypeIndex() {
+        return BISHOP;
+    }
+
     @Override
     public String getName() {
         return "Bishop";
@@ -13,7 +13,7 @@ public class King extends Piece {
         int[] fileModifiers = new int[]{0, 1, 1, 1, 0, -1, -1, -1};
         int[] rankModifiers = new int[]{1, 1, 0, -1, -1, -1, 0, 1};
         for (int i = 0; i < fileModifiers.length; i++) {
-            Square candidate = new Square(
+            Square candidate = Square.of(
                     this.getSquare().getFileIndex() + fileModifiers[i],
                     this.getSquare().getRankIndex() + rankModifiers[i]
             );
@@ -26,6 +26,11 @@ public class King extends Piece {
         return result;
     }
 
+    @Override
+    public int getTypeIndex() {
+        return KING;
+    }
+
     @Override
     public String getName() {
         return "King";
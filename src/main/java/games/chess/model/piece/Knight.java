@@ -13,7 +13,7 @@ public class Knight extends Piece {
         int[] fileModifiers = new int[]{1, 2, 2, 1, -1, -2, -2, -1};
         int[] rankModifiers = new int[]{2, 1, -1, -2, -2, -1, 1, 2};
         for (int i = 0; i < fileModifiers.length; i++) {
-            Square candidate = new Square(
+            Square candidate = Square.of(
                     this.getSquare().getFileIndex() + fileModifiers[i],
                     this.getSquare().getRankIndex() + rankModifiers[i]
             );
@@ -26,6 +26,11 @@ public class Knight extends Piece {
         return result;
     }
 
+    @Override
+    public int getTypeIndex() {
+        return KNIGHT;
+    }
+
     @Override
     public String getName() {
         return "Knight";
@@ -17,13 +17,18 @@ public class Pawn extends Piece {
             squares = new Square[1];
         } else {
             squares = new Square[2];
-            squares[1] = new Square(curr.getFileIndex(), curr.getRankIndex() + (2 * rankModifier));
+            squares[1] = Square.of(curr.getFileIndex(), curr.getRankIndex() + (2 * rankModifier));
         }
-        squares[0] = new Square(curr.getFileIndex(), curr.getRankIndex() + rankModifier);
+        squares[0] = Square.of(curr.getFileIndex(), curr.getRankIndex() + rankModifier);
 
         return new Square[][]{squares};
     }
 
+    @Override
+    public int getTypeIndex() {
+        return PAWN;
+    }
+
     @Override
     public String getName() {
         return "Pawn";
@@ -7,6 +7,16 @@ import java.util.ArrayList;
 
 public abstract class Piece {
 
+    // Type indexes, used to address per-type tables such as the Game bitboards.
+    public static final int PAWN = 0;
+    public static final int KNIGHT = 1;
+    public static final int BISHOP = 2;
+    public static final int ROOK = 3;
+    public static final int QUEEN = 4;
+    public static final int KING = 5;
+
+    private static final String[] TYPE_ABBREV_NAMES = new String[]{"", "N", "B", "R", "Q", "K"};
+
     private final boolean isWhite;
     private Square square;
     private boolean isInPlay = true;
@@ -17,23 +27,40 @@ public abstract class Piece {
     }
 
     public static Piece copy(Piece piece) {
-        if (piece instanceof Pawn) {
-            return new Pawn(piece.isWhite, piece.getSquare());
-        } else if (piece instanceof Rook) {
-            return new Rook(piece.isWhite, piece.getSquare());
-        } else if (piece instanceof Knight) {
-            return new Knight(piece.isWhite, piece.getSquare());
-        } else if (piece instanceof Bishop) {
-            return new Bishop(piece.isWhite, piece.getSquare());
-        } else if (piece instanceof Queen) {
-            return new Queen(piece.isWhite, piece.getSquare());
-        } else if (piece instanceof King) {
-            return new King(piece.isWhite, piece.getSquare());
-        } else {
-            return null;
+        return create(piece.getTypeIndex(), piece.isWhite, piece.getSquare());
+    }
+
+    /**
+     * Creates a piece from its type index, e.g. when a pawn promotes.
+     * @param typeIndex one of the type index constants (PAWN, KNIGHT, ...).
+     * @return A new Piece, or null if the type index is not known.
+     */
+    public static Piece create(int typeIndex, boolean isWhite, Square square) {
+        switch (typeIndex) {
+            case PAWN:
+                return new Pawn(isWhite, square);
+            case KNIGHT:
+                return new Knight(isWhite, square);
+            case BISHOP:
+                return new Bishop(isWhite, square);
+            case ROOK:
+                return new Rook(isWhite, square);
+            case QUEEN:
+                return new Queen(isWhite, square);
+            case KING:
+                return new King(isWhite, square);
+            default:
+                return null;
         }
     }
 
+    /**
+     * @return The abbreviated name for the type index, as from getAbbrevName() ("" for pawns).
+     */
+    public static String getAbbrevName(int typeIndex) {
+        return TYPE_ABBREV_NAMES[typeIndex];
+    }
+
     /**
      * Returns the squares this piece can move to based on its current square.
      * The results are given in a series of lists, each list sorted on distance
@@ -46,6 +73,11 @@ public abstract class Piece {
      */
     public abstract Square[][] getCapableSquares();
 
+    /**
+     * @return One of the type index constants (PAWN, KNIGHT, BISHOP, ROOK, QUEEN, KING).
+     */
+    public abstract int getTypeIndex();
+
     public abstract String getName();
 
     public abstract String getAbbrevName();
@@ -80,6 +112,21 @@ public abstract class Piece {
         square = move.getDestSquare();
     }
 
+    /**
+     * Moves the piece back to where it was before the given move was made.
+     */
+    public void undoMove(Move move) {
+        square = move.getOriginSquare();
+    }
+
+    /**
+     * Puts the piece on the given square. Game uses this for int-encoded moves (see
+     * games.chess.model.Moves), which have no Move object to pass to makeMove().
+     */
+    public void setSquare(Square square) {
+        this.square = square;
+    }
+
     public void removeFromPlay() {
         isInPlay = false;
     }
@@ -119,7 +166,7 @@ public abstract class Piece {
             ArrayList<Square> list = new ArrayList<>(8);
             while (candidate.isOnBoard()) {
                 list.add(candidate);
-                candidate = new Square(
+                candidate = Square.of(
                         candidate.getFileIndex() + fileModifiers[i],
                         candidate.getRankIndex() + rankModifiers[i]
                 );
@@ -20,6 +20,11 @@ public class Queen extends Piece {
         return result.toArray(new Square[0][]);
     }
 
+    @Override
+    public int getTypeIndex() {
+        return QUEEN;
+    }
+
     @Override
     public String getName() {
         return "Queen";
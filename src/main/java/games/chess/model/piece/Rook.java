@@ -12,6 +12,11 @@ public class Rook extends Piece {
         return this.getLinearSquares();
     }
 
+    @Override
+    public int getTypeIndex() {
+        return ROOK;
+    }
+
     @Override
     public String getName() {
         return "Rook";
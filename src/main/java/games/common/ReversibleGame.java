@@ -0,0 +1,20 @@
+package games.common;
+
+/**
+ * A RegularGame that can make and take back moves in place. Searches should prefer this
+ * over cloneWithUpdate(), which copies the whole game for every node.
+ */
+public interface ReversibleGame extends RegularGame {
+
+    /**
+     * Updates this game with the move, which must be one of getLegalMoves().
+     */
+    public void makeMove(RegularMove move);
+
+    /**
+     * Restores the game to how it was before the last call to makeMove().
+     */
+    public void undoLastMove();
+
+    public boolean canUndoLastMove();
+}
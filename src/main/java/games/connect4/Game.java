@@ -2,18 +2,40 @@ package games.connect4;
 
 import games.common.RegularGame;
 import games.common.RegularMove;
+import games.common.ReversibleGame;
 
 import java.util.Arrays;
+import java.util.Random;
 
-public class Game implements RegularGame {
+public class Game implements ReversibleGame {
 
     public final static int NUM_COLS = 7;
     public final static int COL_HEIGHT = 6;
 
+    // Zobrist keys for a red or blue disc in each cell, indexed [red ? 0 : 1][col][row].
+    private final static long[][][] CELL_KEYS = new long[2][NUM_COLS][COL_HEIGHT];
+    private final static long BLUE_TO_MOVE_KEY;
+
+    static {
+        Random random = new Random(0x4C0FFEEL);
+        for (long[][] colour : CELL_KEYS) {
+            for (long[] col : colour) {
+                for (int row = 0; row < COL_HEIGHT; row++) {
+                    col[row] = random.nextLong();
+                }
+            }
+        }
+        BLUE_TO_MOVE_KEY = random.nextLong();
+    }
+
     private final char[][] grid;
     private final int[] heights;
+    // The column of each move played so far, so moves can be undone.
+    private final int[] columnHistory = new int[NUM_COLS * COL_HEIGHT];
+    private int numMovesPlayed = 0;
     private boolean redsTurn;
     private Move lastMove = null;
+    private long positionKey = 0L;
 
     public Game() {
         grid = new char[NUM_COLS][COL_HEIGHT];
@@ -32,6 +54,9 @@ public class Game implements RegularGame {
         }
         heights = Arrays.copyOf(toCopy.heights, NUM_COLS);
         redsTurn = toCopy.redsTurn;
+        positionKey = toCopy.positionKey;
+        System.arraycopy(toCopy.columnHistory, 0, columnHistory, 0, toCopy.numMovesPlayed);
+        numMovesPlayed = toCopy.numMovesPlayed;
     }
 
     public char getCharAt(int colId, int rowId) {
@@ -48,6 +73,42 @@ public class Game implements RegularGame {
         grid[move.column()][height] = c;
         redsTurn = !redsTurn;
         lastMove = move;
+        columnHistory[numMovesPlayed++] = move.column();
+        positionKey ^= CELL_KEYS[move.red() ? 0 : 1][move.column()][height] ^ BLUE_TO_MOVE_KEY;
+    }
+
+    @Override
+    public void makeMove(RegularMove move) {
+        if (move instanceof Move) {
+            makeMove((Move) move);
+        }
+    }
+
+    @Override
+    public boolean canUndoLastMove() {
+        return numMovesPlayed > 0;
+    }
+
+    @Override
+    public void undoLastMove() {
+        if (!canUndoLastMove()) {
+            return;
+        }
+        int column = columnHistory[--numMovesPlayed];
+        int height = --heights[column];
+        boolean red = grid[column][height] == 'R';
+        grid[column][height] = '_';
+        redsTurn = !redsTurn;
+        lastMove = numMovesPlayed > 0 ? new Move(!red, columnHistory[numMovesPlayed - 1]) : null;
+        positionKey ^= CELL_KEYS[red ? 0 : 1][column][height] ^ BLUE_TO_MOVE_KEY;
+    }
+
+    /**
+     * @return A 64-bit Zobrist hash of the grid and the player to move, for use as a
+     * TranspositionTable key. Positions reached by different move orders share a key.
+     */
+    public long getPositionKey() {
+        return positionKey;
     }
 
     public String getCurrentPlayer() {
@@ -0,0 +1,67 @@
+package games.ai;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TranspositionTableTest {
+
+    @Test
+    void probeReturnsStoredEntry() {
+        TranspositionTable table = new TranspositionTable(1);
+        long key = 0x123456789ABCDEFL;
+        table.store(key, 1234, -321, 7, TranspositionTable.BOUND_LOWER);
+        long entry = table.probe(key);
+        assertNotEquals(0L, entry);
+        assertEquals(1234, TranspositionTable.getMove(entry));
+        assertEquals(-321, TranspositionTable.getScore(entry));
+        assertEquals(7, TranspositionTable.getDepth(entry));
+        assertEquals(TranspositionTable.BOUND_LOWER, TranspositionTable.getBound(entry));
+        assertEquals(1, table.getHits());
+    }
+
+    @Test
+    void probeMissesForUnknownKey() {
+        TranspositionTable table = new TranspositionTable(1);
+        table.store(42L, 1, 0, 1, TranspositionTable.BOUND_EXACT);
+        assertEquals(0L, table.probe(43L));
+        assertEquals(1, table.getMisses());
+    }
+
+    @Test
+    void storeKeepsMoveWhenNoneGiven() {
+        TranspositionTable table = new TranspositionTable(1);
+        table.store(99L, 555, 10, 3, TranspositionTable.BOUND_EXACT);
+        table.store(99L, 0, 20, 4, TranspositionTable.BOUND_UPPER);
+        long entry = table.probe(99L);
+        assertEquals(555, TranspositionTable.getMove(entry));
+        assertEquals(20, TranspositionTable.getScore(entry));
+    }
+
+    @Test
+    void fullBucketReplacesShallowestEntry() {
+        TranspositionTable table = new TranspositionTable(1);
+        long stride = table.getCapacity() / 4; // Keys this far apart share a bucket.
+        for (int i = 0; i < 4; i++) {
+            table.store(i * stride, i + 1, 0, 10 + i, TranspositionTable.BOUND_EXACT);
+        }
+        table.store(4 * stride, 9, 0, 20, TranspositionTable.BOUND_EXACT);
+        assertEquals(0L, table.probe(0L)); // Depth 10 was the shallowest.
+        assertNotEquals(0L, table.probe(4 * stride));
+        assertNotEquals(0L, table.probe(stride));
+        assertEquals(1, table.getCollisions());
+    }
+
+    @Test
+    void olderEntriesAreReplacedFirst() {
+        TranspositionTable table = new TranspositionTable(1);
+        long stride = table.getCapacity() / 4;
+        table.store(0L, 1, 0, 10, TranspositionTable.BOUND_EXACT);
+        table.newSearch();
+        for (int i = 1; i < 4; i++) {
+            table.store(i * stride, i + 1, 0, 5, TranspositionTable.BOUND_EXACT);
+        }
+        table.store(4 * stride, 9, 0, 5, TranspositionTable.BOUND_EXACT);
+        assertEquals(0L, table.probe(0L));
+    }
+}
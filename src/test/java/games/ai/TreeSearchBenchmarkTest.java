@@ -0,0 +1,28 @@
+package games.ai;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TreeSearchBenchmarkTest {
+
+    @Test
+    void inPlaceAndCloningCountsAgreeForConnect4() {
+        games.connect4.Game game = new games.connect4.Game();
+        long key = game.getPositionKey();
+        assertEquals(2401, TreeSearchBenchmark.countLeavesByCloning(game, 4));
+        assertEquals(2401, TreeSearchBenchmark.countLeavesInPlace(game, 4));
+        assertFalse(game.canUndoLastMove());
+        assertEquals(key, game.getPositionKey());
+    }
+
+    @Test
+    void inPlaceAndCloningCountsAgreeForChess() {
+        games.chess.model.Game game = new games.chess.model.Game();
+        long key = game.getZobristKey();
+        assertEquals(8902, TreeSearchBenchmark.countLeavesByCloning(game, 3));
+        assertEquals(8902, TreeSearchBenchmark.countLeavesInPlace(game, 3));
+        assertFalse(game.canUndoLastMove());
+        assertEquals(key, game.getZobristKey());
+    }
+}
@@ -0,0 +1,42 @@
+package games.chess.engine;
+
+import games.chess.model.Game;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EvaluatorTest {
+
+    @Test
+    void startPositionIsEven() {
+        assertEquals(0, Evaluator.evaluate(new Game()));
+    }
+
+    @Test
+    void scoresAreFromTheMoversPointOfView() {
+        // The same position with the colours swapped and the board flipped.
+        Game white = PerftTest.parse("r1bqkbnr/pppp1ppp/2n5/4p3/4P3/5N2/PPPP1PPP/RNBQKB1R w KQkq - 2 3");
+        Game black = PerftTest.parse("rnbqkb1r/pppp1ppp/5n2/4p3/4P3/2N5/PPPP1PPP/R1BQKBNR b KQkq - 2 3");
+        assertEquals(Evaluator.evaluate(white), Evaluator.evaluate(black));
+    }
+
+    @Test
+    void prefersCentralisedPieces() {
+        Game centralKnight = PerftTest.parse("4k3/8/8/8/4N3/8/8/4K3 w - - 0 1");
+        Game cornerKnight = PerftTest.parse("4k3/8/8/8/8/8/8/N3K3 w - - 0 1");
+        assertTrue(Evaluator.evaluate(centralKnight) > Evaluator.evaluate(cornerKnight));
+        assertTrue(Evaluator.evaluate(cornerKnight) > 0);
+    }
+
+    @Test
+    void kingsCentraliseInTheEndgame() {
+        // With only pawns left the king belongs in the centre; with queens on, at home.
+        Game pawnEnding = PerftTest.parse("4k3/pppp4/8/8/3K4/8/PPPP4/8 w - - 0 1");
+        Game homeKing = PerftTest.parse("4k3/pppp4/8/8/8/8/PPPP4/3K4 w - - 0 1");
+        assertTrue(Evaluator.evaluate(pawnEnding) > Evaluator.evaluate(homeKing));
+
+        Game middlegame = PerftTest.parse("rnbqkbnr/pppppppp/8/8/4K3/8/PPPPPPPP/RNBQ1BNR w kq - 0 1");
+        Game safeKing = PerftTest.parse("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w kq - 0 1");
+        assertTrue(Evaluator.evaluate(middlegame) < Evaluator.evaluate(safeKing));
+    }
+}
@@ -0,0 +1,88 @@
+package games.chess.engine;
+
+import games.chess.model.Game;
+import games.chess.model.MoveList;
+import games.chess.model.Moves;
+import games.chess.model.Square;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MoveOrdererTest {
+
+    private static int move(String from, String to, int flags) {
+        return Moves.encode(Square.of(from).getIndex(), Square.of(to).getIndex(), flags);
+    }
+
+    @Test
+    void mvvLvaPrefersBigVictimsAndSmallAttackers() {
+        Game game = PerftTest.parse("4k3/8/8/2q1r3/1P6/3N4/8/4K3 w - - 0 1");
+        int pawnTakesQueen = MoveOrderer.getMvvLvaScore(game, move("b4", "c5", Moves.CAPTURE));
+        int knightTakesQueen = MoveOrderer.getMvvLvaScore(game, move("d3", "c5", Moves.CAPTURE));
+        int knightTakesRook = MoveOrderer.getMvvLvaScore(game, move("d3", "e5", Moves.CAPTURE));
+        assertTrue(pawnTakesQueen > knightTakesQueen);
+        assertTrue(knightTakesQueen > knightTakesRook);
+    }
+
+    @Test
+    void ordersHashMoveCapturesKillersThenHistory() {
+        Game game = PerftTest.parse("4k3/8/8/2q5/1P6/3N4/8/4K3 w - - 0 1");
+        int hashMove = move("e1", "f1", Moves.QUIET);
+        int capture = move("b4", "c5", Moves.CAPTURE);
+        int killer = move("d3", "f4", Moves.QUIET);
+        int historyMove = move("d3", "e5", Moves.QUIET);
+        int otherMove = move("e1", "d1", Moves.QUIET);
+
+        MoveOrderer orderer = new MoveOrderer(Search.MAX_PLY);
+        orderer.newSearch();
+        orderer.recordCutoff(true, historyMove, 5, 4, 0);
+        orderer.recordCutoff(true, killer, 2, 1, 1);
+
+        MoveList moves = new MoveList();
+        moves.add(otherMove);
+        moves.add(historyMove);
+        moves.add(killer);
+        moves.add(capture);
+        moves.add(hashMove);
+        int[] scores = new int[MoveList.CAPACITY];
+        orderer.scoreMoves(game, moves, scores, 2, hashMove);
+        assertTrue(scores[4] > scores[3]);
+        assertTrue(scores[3] > scores[2]);
+        assertTrue(scores[2] > scores[1]);
+        assertTrue(scores[1] > scores[0]);
+    }
+
+    @Test
+    void keepsTwoKillersPerPly() {
+        MoveOrderer orderer = new MoveOrderer(Search.MAX_PLY);
+        orderer.newSearch();
+        int first = move("g1", "f3", Moves.QUIET);
+        int second = move("b1", "c3", Moves.QUIET);
+        int third = move("e2", "e4", Moves.DOUBLE_PAWN_PUSH);
+        orderer.recordCutoff(true, first, 3, 2, 0);
+        orderer.recordCutoff(true, second, 3, 2, 0);
+        orderer.recordCutoff(true, second, 3, 2, 0);
+        assertArrayEquals(new int[]{second, first}, orderer.getKillers(3));
+        orderer.recordCutoff(true, third, 3, 2, 0);
+        assertArrayEquals(new int[]{third, second}, orderer.getKillers(3));
+        // Captures are ordered already, so they don't become killers.
+        orderer.recordCutoff(true, move("e4", "d5", Moves.CAPTURE), 3, 2, 0);
+        assertArrayEquals(new int[]{third, second}, orderer.getKillers(3));
+        assertArrayEquals(new int[]{Moves.NONE, Moves.NONE}, orderer.getKillers(4));
+
+        assertEquals(8, orderer.getHistoryScore(true, second));
+        assertEquals(0, orderer.getHistoryScore(false, second));
+        orderer.newSearch();
+        assertEquals(4, orderer.getHistoryScore(true, second));
+        assertArrayEquals(new int[]{Moves.NONE, Moves.NONE}, orderer.getKillers(3));
+    }
+
+    @Test
+    void searchReportsFirstMoveCutoffRate() {
+        Search search = new Search();
+        search.search(PerftTest.parse(PerftTest.KIWIPETE), 5, 60_000, Long.MAX_VALUE);
+        MoveOrderer orderer = search.getMoveOrderer();
+        assertTrue(orderer.getCutoffs() > 0);
+        assertTrue(orderer.getFirstMoveCutoffRate() > 0.8);
+    }
+}
@@ -0,0 +1,116 @@
+package games.chess.engine;
+
+import games.chess.model.Game;
+import games.chess.model.MoveGenerator;
+import games.chess.model.MoveList;
+import games.chess.model.Moves;
+import games.chess.model.Square;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MovePickerTest {
+
+    private static int move(String from, String to, int flags) {
+        return Moves.encode(Square.of(from).getIndex(), Square.of(to).getIndex(), flags);
+    }
+
+    @Test
+    void picksEveryLegalMoveOnce() {
+        for (String fen : new String[]{PerftTest.KIWIPETE, PerftTest.PROMOTIONS, PerftTest.ENDGAME}) {
+            Game game = PerftTest.parse(fen);
+            MoveList legalMoves = new MoveList();
+            game.getLegalMoves(legalMoves);
+            MoveOrderer orderer = new MoveOrderer(Search.MAX_PLY);
+            orderer.newSearch();
+            // A killer and a hash move, whichever the position allows.
+            orderer.recordCutoff(game.isWhiteToMove(), legalMoves.get(legalMoves.size() - 1), 0, 3, 0);
+            MovePicker picker = new MovePicker(orderer);
+            picker.reset(game, 0, legalMoves.get(0), false);
+
+            Set<Integer> picked = new HashSet<>();
+            for (int move = picker.next(); move != Moves.NONE; move = picker.next()) {
+                assertTrue(picked.add(move), "picked twice: " + Moves.toCoordinateName(move));
+                if (game.isLegal(move)) {
+                    assertTrue(legalMoves.contains(move));
+                }
+            }
+            for (int i = 0; i < legalMoves.size(); i++) {
+                assertTrue(picked.contains(legalMoves.get(i)));
+            }
+            assertEquals(MovePicker.DONE, picker.getStage());
+        }
+    }
+
+    @Test
+    void picksInStagesAndOnlyGeneratesWhatIsNeeded() {
+        Game game = PerftTest.parse("4k3/8/8/2q5/1P6/3N4/8/4K3 w - - 0 1");
+        int hashMove = move("e1", "f1", Moves.QUIET);
+        int killer = move("d3", "f4", Moves.QUIET);
+        MoveOrderer orderer = new MoveOrderer(Search.MAX_PLY);
+        orderer.newSearch();
+        orderer.recordCutoff(true, killer, 1, 2, 0);
+        MovePicker picker = new MovePicker(orderer);
+        picker.reset(game, 1, hashMove, false);
+
+        assertEquals(hashMove, picker.next());
+        // Nothing has been generated yet: a cutoff here would leave the other stages alone.
+        assertEquals(MovePicker.CAPTURES, picker.getStage());
+        assertEquals(move("b4", "c5", Moves.CAPTURE), picker.next());
+        assertEquals(move("d3", "c5", Moves.CAPTURE), picker.next());
+        assertEquals(killer, picker.next());
+        assertEquals(MovePicker.KILLERS, picker.getStage());
+        int quiets = 0;
+        for (int move = picker.next(); move != Moves.NONE; move = picker.next()) {
+            assertFalse(Moves.isCapture(move));
+            assertNotEquals(hashMove, move);
+            assertNotEquals(killer, move);
+            quiets++;
+        }
+        MoveList all = new MoveList();
+        MoveGenerator.generate(game, true, all);
+        assertEquals(all.size() - 4, quiets);
+    }
+
+    @Test
+    void skipsAHashMoveFromAnotherPosition() {
+        Game game = new Game();
+        MovePicker picker = new MovePicker(new MoveOrderer(Search.MAX_PLY));
+        picker.reset(game, 0, move("e4", "e5", Moves.QUIET), false);
+        int first = picker.next();
+        assertTrue(MoveGenerator.isPseudoLegal(game, first));
+        assertNotEquals(move("e4", "e5", Moves.QUIET), first);
+    }
+
+    @Test
+    void capturesOnlyStopsAfterTheCaptures() {
+        Game game = PerftTest.parse(PerftTest.KIWIPETE);
+        MoveList captures = new MoveList();
+        MoveGenerator.generateCaptures(game, true, captures);
+        MovePicker picker = new MovePicker(new MoveOrderer(Search.MAX_PLY));
+        picker.reset(game, 0, Moves.NONE, true);
+        int count = 0;
+        for (int move = picker.next(); move != Moves.NONE; move = picker.next()) {
+            assertTrue(captures.contains(move));
+            count++;
+        }
+        assertEquals(captures.size(), count);
+    }
+
+    @Test
+    void neverCastlesThroughCheck() {
+        // The black rook on f8 covers f1, so white can only castle queenside.
+        Game game = PerftTest.parse("4kr2/8/8/8/8/8/8/R3K2R w KQ - 0 1");
+        MovePicker picker = new MovePicker(new MoveOrderer(Search.MAX_PLY));
+        picker.reset(game, 0, move("e1", "g1", Moves.KING_CASTLE), false);
+        Set<Integer> picked = new HashSet<>();
+        for (int move = picker.next(); move != Moves.NONE; move = picker.next()) {
+            picked.add(move);
+        }
+        assertFalse(picked.contains(move("e1", "g1", Moves.KING_CASTLE)));
+        assertTrue(picked.contains(move("e1", "c1", Moves.QUEEN_CASTLE)));
+    }
+}
@@ -0,0 +1,130 @@
+package games.chess.engine;
+
+import games.chess.model.Game;
+import games.chess.model.MoveList;
+import games.chess.model.Moves;
+import games.chess.model.piece.Piece;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OpeningBookTest {
+
+    @TempDir
+    Path directory;
+
+    static int find(Game game, String coordinateName) {
+        MoveList moves = new MoveList();
+        game.getLegalMoves(moves);
+        for (int i = 0; i < moves.size(); i++) {
+            if (Moves.toCoordinateName(moves.get(i)).equals(coordinateName)) {
+                return moves.get(i);
+            }
+        }
+        throw new AssertionError("No legal move " + coordinateName);
+    }
+
+    @Test
+    void picksMovesByWeight() throws IOException {
+        Game game = new Game();
+        int e4 = find(game, "e2e4");
+        int d4 = find(game, "d2d4");
+        int a3 = find(game, "a2a3");
+        Path file = directory.resolve("book.bin");
+        OpeningBook.write(file, List.of(
+                new OpeningBook.Entry(game, e4, 3),
+                new OpeningBook.Entry(game, d4, 1),
+                new OpeningBook.Entry(game, a3, 0)));
+        OpeningBook book = new OpeningBook(file);
+        assertEquals(3, book.size());
+        int e4Count = 0;
+        Random random = new Random(1);
+        for (int i = 0; i < 1000; i++) {
+            int move = book.selectMove(game, random);
+            assertTrue(move == e4 || move == d4);
+            if (move == e4) {
+                e4Count++;
+            }
+        }
+        assertTrue(e4Count > 650 && e4Count < 850, "e4 picked " + e4Count + " times");
+    }
+
+    @Test
+    void findsEachPositionAmongMany() throws IOException {
+        // Random games give a book with many keys on both sides of zero.
+        List<OpeningBook.Entry> entries = new ArrayList<>();
+        List<Game> positions = new ArrayList<>();
+        List<Integer> bookMoves = new ArrayList<>();
+        Random random = new Random(7);
+        MoveList moves = new MoveList();
+        for (int line = 0; line < 50; line++) {
+            Game game = new Game();
+            for (int ply = 0; ply < 8; ply++) {
+                game.getLegalMoves(moves);
+                int move = moves.get(random.nextInt(moves.size()));
+                entries.add(new OpeningBook.Entry(game, move, 1));
+                positions.add(new Game(game));
+                bookMoves.add(move);
+                game.makeMove(move);
+            }
+        }
+        Path file = directory.resolve("book.bin");
+        OpeningBook.write(file, entries);
+        OpeningBook book = new OpeningBook(file);
+        int[] weights = new int[MoveList.CAPACITY];
+        for (int i = 0; i < positions.size(); i++) {
+            book.getMoves(positions.get(i), moves, weights);
+            assertTrue(moves.contains(bookMoves.get(i)));
+        }
+        assertEquals(Moves.NONE, book.selectMove(PerftTest.parse(PerftTest.KIWIPETE), random));
+    }
+
+    @Test
+    void encodesCastlingAsTheKingTakingTheRook() throws IOException {
+        Game game = PerftTest.parse(PerftTest.KIWIPETE);
+        int castle = find(game, "e1g1");
+        assertEquals((4 << 6) | 7, OpeningBook.toBookMove(castle));
+        assertEquals((4 << 6) | 0, OpeningBook.toBookMove(find(game, "e1c1")));
+        Path file = directory.resolve("book.bin");
+        OpeningBook.write(file, List.of(new OpeningBook.Entry(game, castle, 1)));
+        assertEquals(castle, new OpeningBook(file).selectMove(game, new Random()));
+    }
+
+    @Test
+    void encodesPromotions() {
+        Game game = PerftTest.parse("8/P6k/8/8/8/8/8/K7 w - - 0 1");
+        int toKnight = Moves.encodePromotion(48, 56, Piece.KNIGHT, false);
+        int toQueen = Moves.encodePromotion(48, 56, Piece.QUEEN, false);
+        assertEquals((1 << 12) | (48 << 6) | 56, OpeningBook.toBookMove(toKnight));
+        assertEquals((4 << 12) | (48 << 6) | 56, OpeningBook.toBookMove(toQueen));
+        assertEquals(toQueen, find(game, "a7a8q"));
+    }
+
+    @Test
+    void readsABookWrittenByOtherTools() throws IOException {
+        // One entry as any Polyglot tool would write it: the start position's published key,
+        // e2e4 and a weight of 1.
+        ByteBuffer entry = ByteBuffer.allocate(OpeningBook.BYTES_PER_ENTRY);
+        entry.putLong(0x463B96181691FC9CL).putShort((short) ((12 << 6) | 28)).putShort((short) 1).putInt(0);
+        Path file = directory.resolve("book.bin");
+        Files.write(file, entry.array());
+        Game game = new Game();
+        assertEquals(find(game, "e2e4"), new OpeningBook(file).selectMove(game, new Random()));
+    }
+
+    @Test
+    void rejectsAFileThatIsNotABook() throws IOException {
+        Path file = directory.resolve("book.bin");
+        Files.write(file, new byte[10]);
+        assertThrows(IOException.class, () -> new OpeningBook(file));
+    }
+}
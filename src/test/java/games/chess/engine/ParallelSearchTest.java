@@ -0,0 +1,63 @@
+package games.chess.engine;
+
+import games.chess.model.Game;
+import games.chess.model.MoveList;
+import games.chess.model.Moves;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParallelSearchTest {
+
+    @Test
+    void findsTheSameMateAsOneThread() {
+        Game game = PerftTest.parse(SearchTest.SCHOLARS_MATE);
+        ParallelSearch search = new ParallelSearch(4);
+        SearchResult result = search.search(game, 6, 10_000, Long.MAX_VALUE);
+        search.shutdown();
+        assertEquals("h5f7", Moves.toCoordinateName(result.getBestMove()));
+        assertEquals(1, result.getMateDistance());
+    }
+
+    @Test
+    void helpersAddNodesAndLeaveTheGameUnchanged() {
+        Game game = PerftTest.parse(PerftTest.KIWIPETE);
+        long key = game.getZobristKey();
+        ParallelSearch search = new ParallelSearch(3);
+        SearchResult result = search.search(game, 5, 60_000, Long.MAX_VALUE);
+        assertTrue(search.getNodes() > result.getNodes());
+        assertEquals(key, game.getZobristKey());
+        assertFalse(game.canUndoLastMove());
+
+        // The pool is reused for the next search.
+        result = search.search(game, 4, 60_000, Long.MAX_VALUE);
+        search.shutdown();
+        MoveList legalMoves = new MoveList();
+        game.getLegalMoves(legalMoves);
+        assertTrue(legalMoves.contains(result.getBestMove()));
+    }
+
+    @Test
+    void stopsHelpersAtTheDeadline() {
+        ParallelSearch search = new ParallelSearch(2);
+        long start = System.currentTimeMillis();
+        SearchResult result = search.search(new Game(), Search.MAX_PLY, 200, Long.MAX_VALUE);
+        search.shutdown();
+        assertTrue(System.currentTimeMillis() - start < 2000);
+        assertNotEquals(Moves.NONE, result.getBestMove());
+    }
+
+    @Test
+    void benchmarkReportsEachThreadCount() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ParallelSearch.benchmark(new Game(), 4, 3, new PrintStream(bytes));
+        String[] lines = bytes.toString().trim().split("\n");
+        assertEquals(3, lines.length);
+        assertTrue(lines[0].startsWith("threads 1 depth 4"));
+        assertTrue(lines[1].startsWith("threads 2 depth 4"));
+        assertTrue(lines[2].startsWith("threads 3 depth 4"));
+    }
+}
@@ -0,0 +1,35 @@
+package games.chess.engine;
+
+import games.chess.model.Game;
+import games.chess.model.Moves;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PawnHashTableTest {
+
+    @Test
+    void cachesScoresByPawnStructure() {
+        PawnHashTable table = new PawnHashTable(16);
+        Game game = PerftTest.parse(PerftTest.KIWIPETE);
+        int score = table.probe(game);
+        assertEquals(PawnStructure.evaluate(game), score);
+        assertEquals(1, table.getMisses());
+
+        // Moving a piece leaves the pawns, so the score comes from the table.
+        game.makeMove(Moves.encode(0, 1, Moves.QUIET));
+        assertEquals(score, table.probe(game));
+        assertEquals(1, table.getHits());
+        assertEquals(0.5, table.getHitRate());
+
+        table.resetStatistics();
+        assertEquals(0.0, table.getHitRate());
+    }
+
+    @Test
+    void searchesMostlyHitTheTable() {
+        Search search = new Search();
+        search.search(PerftTest.parse(PerftTest.KIWIPETE), 5, 60_000, Long.MAX_VALUE);
+        assertTrue(search.getPawnHashTable().getHitRate() > 0.9);
+    }
+}
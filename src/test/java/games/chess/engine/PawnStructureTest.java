@@ -0,0 +1,47 @@
+package games.chess.engine;
+
+import games.chess.model.Game;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PawnStructureTest {
+
+    @Test
+    void packedScoresKeepBothHalves() {
+        int score = PawnStructure.pack(-10, 25) + 3 * PawnStructure.pack(4, -30);
+        assertEquals(2, PawnStructure.getMiddlegame(score));
+        assertEquals(-65, PawnStructure.getEndgame(score));
+    }
+
+    @Test
+    void startPositionIsEven() {
+        assertEquals(0, PawnStructure.evaluate(new Game()));
+    }
+
+    @Test
+    void passedPawnsAreWorthMoreAsTheyAdvance() {
+        int onFifth = PawnStructure.evaluate(PerftTest.parse("4k3/8/8/4P3/8/8/8/4K3 w - - 0 1"));
+        int onSeventh = PawnStructure.evaluate(PerftTest.parse("4k3/4P3/8/8/8/8/8/4K3 w - - 0 1"));
+        // Black's pawn on a neighbouring file stops it from being passed.
+        int blocked = PawnStructure.evaluate(PerftTest.parse("4k3/3p4/8/4P3/8/8/8/4K3 w - - 0 1"));
+        assertTrue(PawnStructure.getEndgame(onSeventh) > PawnStructure.getEndgame(onFifth));
+        assertTrue(PawnStructure.getEndgame(onFifth) > 0);
+        assertTrue(PawnStructure.getEndgame(blocked) < PawnStructure.getEndgame(onFifth));
+    }
+
+    @Test
+    void penalisesDoubledIsolatedAndBackwardPawns() {
+        Game healthy = PerftTest.parse("4k3/pp6/8/8/8/8/PP6/4K3 w - - 0 1");
+        Game doubled = PerftTest.parse("4k3/pp6/8/8/8/1P6/1P6/4K3 w - - 0 1");
+        Game isolated = PerftTest.parse("4k3/pp6/8/8/8/8/P1P5/4K3 w - - 0 1");
+        assertEquals(0, PawnStructure.evaluate(healthy));
+        assertTrue(PawnStructure.evaluate(doubled) < 0);
+        assertTrue(PawnStructure.getEndgame(PawnStructure.evaluate(isolated)) < 0);
+
+        // d3 is backward: nothing can support it and c5 guards d4. e4 and b6 are passed.
+        Game backward = PerftTest.parse("4k3/8/1p6/2p5/4P3/3P4/8/4K3 w - - 0 1");
+        int expected = PawnStructure.pack(-8, -10) + PawnStructure.pack(15, 35) - PawnStructure.pack(10, 20);
+        assertEquals(expected, PawnStructure.evaluate(backward));
+    }
+}
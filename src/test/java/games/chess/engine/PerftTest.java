@@ -0,0 +1,77 @@
+package games.chess.engine;
+
+import games.chess.model.Game;
+import games.chess.model.Parser;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PerftTest {
+
+    // Well-known test positions with published perft counts.
+    static final String KIWIPETE = "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1";
+    static final String ENDGAME = "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1";
+    static final String PROMOTIONS = "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1";
+    static final String MIDGAME = "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8";
+
+    static Game parse(String fen) {
+        try {
+            return new Parser().parseFromFENString(fen);
+        } catch (Exception e) {
+            fail("Failed during test setup: cannot parse " + fen);
+            return new Game();
+        }
+    }
+
+    @Test
+    void startPositionCounts() {
+        Game game = new Game();
+        assertEquals(20, Perft.perft(game, 1));
+        assertEquals(400, Perft.perft(game, 2));
+        assertEquals(8902, Perft.perft(game, 3));
+    }
+
+    @Test
+    void kiwipeteCountsCoverCastlingAndEnPassant() {
+        Game game = parse(KIWIPETE);
+        assertEquals(48, Perft.perft(game, 1));
+        assertEquals(2039, Perft.perft(game, 2));
+    }
+
+    @Test
+    void endgameCounts() {
+        assertEquals(2812, Perft.perft(parse(ENDGAME), 3));
+    }
+
+    @Test
+    void promotionCounts() {
+        assertEquals(9467, Perft.perft(parse(PROMOTIONS), 3));
+        assertEquals(1486, Perft.perft(parse(MIDGAME), 2));
+    }
+
+    @Test
+    void perftLeavesGameUnchanged() {
+        Game game = parse(KIWIPETE);
+        long key = game.getZobristKey();
+        Perft.perft(game, 2);
+        assertEquals(key, game.getZobristKey());
+        assertEquals(key, game.computeZobristKey());
+        assertFalse(game.canUndoLastMove());
+    }
+
+    @Test
+    void parallelAndHashedModesAgree() {
+        Game game = parse(KIWIPETE);
+        assertEquals(97862, Perft.perftParallel(game, 3));
+        assertEquals(97862, new Perft(1).perftHashed(game, 3));
+    }
+
+    @Test
+    void divideSumsToPerft() {
+        Map<String, Long> divided = Perft.divide(parse(PROMOTIONS), 2);
+        assertEquals(6, divided.size());
+        assertEquals(264, divided.values().stream().mapToLong(Long::longValue).sum());
+    }
+}
@@ -0,0 +1,52 @@
+package games.chess.engine;
+
+import games.chess.model.Game;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PolyglotKeyTest {
+
+    // The keys published with the Polyglot book format, for positions along two lines.
+    static final String[] FENS = {
+            "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+            "rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1",
+            "rnbqkbnr/ppp1pppp/8/3p4/4P3/8/PPPP1PPP/RNBQKBNR w KQkq d6 0 2",
+            "rnbqkbnr/ppp1pppp/8/3pP3/8/8/PPPP1PPP/RNBQKBNR b KQkq - 0 2",
+            "rnbqkbnr/ppp1p1pp/8/3pPp2/8/8/PPPP1PPP/RNBQKBNR w KQkq f6 0 3",
+            "rnbqkbnr/ppp1p1pp/8/3pPp2/8/8/PPPPKPPP/RNBQ1BNR b kq - 0 3",
+            "rnbq1bnr/ppp1pkpp/8/3pPp2/8/8/PPPPKPPP/RNBQ1BNR w - - 0 4",
+            "rnbqkbnr/p1pppppp/8/8/PpP4P/8/1P1PPPP1/RNBQKBNR b KQkq c3 0 3",
+            "rnbqkbnr/p1pppppp/8/8/P6P/R1p5/1P1PPPP1/1NBQKBNR b Kkq - 0 4",
+    };
+    static final long[] KEYS = {
+            0x463B96181691FC9CL, 0x823C9B50FD114196L, 0x0756B94461C50FB0L,
+            0x662FAFB965DB29D4L, 0x22A48B5A8E47FF78L, 0x652A607CA3F242C1L,
+            0x00FDD303C946BDD9L, 0x3C8123EA7B067637L, 0x5C3F9B829B279560L,
+    };
+
+    @Test
+    void matchesThePublishedKeys() {
+        for (int i = 0; i < FENS.length; i++) {
+            assertEquals(KEYS[i], PolyglotKey.compute(PerftTest.parse(FENS[i])), FENS[i]);
+        }
+    }
+
+    @Test
+    void followsTheGameAsMovesAreMade() {
+        Game game = new Game();
+        assertEquals(0x463B96181691FC9CL, PolyglotKey.compute(game));
+        game.makeMove(OpeningBookTest.find(game, "e2e4"));
+        // No black pawn can take on e3, so the en-passant file doesn't count.
+        assertEquals(0x823C9B50FD114196L, PolyglotKey.compute(game));
+        game.undoLastMove();
+        assertEquals(0x463B96181691FC9CL, PolyglotKey.compute(game));
+    }
+
+    @Test
+    void has781Keys() {
+        assertEquals(781, PolyglotKey.RANDOM64.length);
+        assertEquals(0x9D39247E33776D41L, PolyglotKey.RANDOM64[0]);
+        assertEquals(0xF8D626AAAF278509L, PolyglotKey.RANDOM64[PolyglotKey.TURN_OFFSET]);
+    }
+}
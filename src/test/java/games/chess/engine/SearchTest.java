@@ -0,0 +1,163 @@
+package games.chess.engine;
+
+import games.chess.model.Game;
+import games.chess.model.Move;
+import games.chess.model.MoveList;
+import games.chess.model.Moves;
+import games.chess.model.Tablebase;
+import games.chess.model.TablebaseGenerator;
+import games.common.RegularMove;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SearchTest {
+
+    static final String SCHOLARS_MATE = "r1bqkbnr/pppp1ppp/2n5/4p2Q/2B1P3/8/PPPP1PPP/RNB1K1NR w KQkq - 2 4";
+    static final String BACK_RANK_MATE = "6k1/5ppp/8/8/8/8/5PPP/3R2K1 w - - 0 1";
+
+    @Test
+    void findsMateInOne() {
+        Game game = PerftTest.parse(SCHOLARS_MATE);
+        SearchResult result = new Search().search(game, 6, 10_000, Long.MAX_VALUE);
+        assertEquals("h5f7", Moves.toCoordinateName(result.getBestMove()));
+        assertEquals(1, result.getMateDistance());
+    }
+
+    @Test
+    void findsBackRankMate() {
+        Game game = PerftTest.parse(BACK_RANK_MATE);
+        SearchResult result = new Search().search(game, 6, 10_000, Long.MAX_VALUE);
+        assertEquals("d1d8", Moves.toCoordinateName(result.getBestMove()));
+        assertTrue(result.getScore() > Search.MATE - Search.MAX_PLY);
+    }
+
+    @Test
+    void winsAHangingQueen() {
+        Game game = PerftTest.parse("4k3/8/8/3q4/8/8/3R4/4K3 w - - 0 1");
+        SearchResult result = new Search().search(game, 4, 10_000, Long.MAX_VALUE);
+        assertEquals("d2d5", Moves.toCoordinateName(result.getBestMove()));
+    }
+
+    @Test
+    void reportsMateAgainstTheSideToMove() {
+        Game game = PerftTest.parse("7k/6Q1/6K1/8/8/8/8/8 b - - 0 1");
+        SearchResult result = new Search().search(game, 4, 10_000, Long.MAX_VALUE);
+        assertEquals(Moves.NONE, result.getBestMove());
+        assertEquals(-Search.MATE, result.getScore());
+    }
+
+    @Test
+    void leavesTheGameUnchanged() {
+        Game game = PerftTest.parse(PerftTest.KIWIPETE);
+        long key = game.getZobristKey();
+        new Search().search(game, 4, 10_000, Long.MAX_VALUE);
+        assertEquals(key, game.getZobristKey());
+        assertFalse(game.canUndoLastMove());
+    }
+
+    @Test
+    void stopsAtTheNodeLimit() {
+        Game game = PerftTest.parse(PerftTest.KIWIPETE);
+        Search search = new Search();
+        SearchResult result = search.search(game, Search.MAX_PLY, 60_000, 20_000);
+        assertTrue(search.getNodes() <= 20_000);
+        assertTrue(result.getDepth() >= 1);
+        MoveList legalMoves = new MoveList();
+        game.getLegalMoves(legalMoves);
+        assertTrue(legalMoves.contains(result.getBestMove()));
+    }
+
+    @Test
+    void stopsAtTheDeadline() {
+        Game game = new Game();
+        long start = System.currentTimeMillis();
+        SearchResult result = new Search().search(game, Search.MAX_PLY, 200, Long.MAX_VALUE);
+        assertTrue(System.currentTimeMillis() - start < 2000);
+        assertNotEquals(Moves.NONE, result.getBestMove());
+    }
+
+    @Test
+    void principalVariationStartsWithTheBestMove() {
+        Game game = new Game();
+        SearchResult result = new Search().search(game, 4, 10_000, Long.MAX_VALUE);
+        int[] line = result.getPrincipalVariation();
+        assertTrue(line.length > 0);
+        assertEquals(result.getBestMove(), line[0]);
+    }
+
+    @Test
+    void enginePlayerPicksALegalMove() {
+        Game game = PerftTest.parse(SCHOLARS_MATE);
+        RegularMove move = new EnginePlayer(1000).selectMove(game);
+        assertTrue(Arrays.asList(game.getLegalMoves()).contains((Move) move));
+        assertEquals("Qxf7", move.getCanonicalName());
+    }
+
+    @Test
+    void quiescenceSeesTheRecapture() {
+        // At depth 1 the queen could grab the pawn, but the capture search sees cxd5.
+        Game game = PerftTest.parse("4k3/8/2p5/3p4/8/8/3Q4/4K3 w - - 0 1");
+        SearchResult result = new Search().search(game, 1, 10_000, Long.MAX_VALUE);
+        assertNotEquals("d2d5", Moves.toCoordinateName(result.getBestMove()));
+        assertTrue(result.getScore() > 0);
+    }
+
+    @Test
+    void findsTheTacticsWithEachTechniqueDisabled() {
+        for (int disabled = 0; disabled < 4; disabled++) {
+            for (String fen : new String[]{SCHOLARS_MATE, BACK_RANK_MATE, "4k3/8/8/3q4/8/8/3R4/4K3 w - - 0 1"}) {
+                Search search = new Search();
+                search.setNullMovePruning(disabled != 0);
+                search.setLateMoveReductions(disabled != 1);
+                search.setFutilityPruning(disabled != 2);
+                search.setAspirationWindows(disabled != 3);
+                SearchResult result = search.search(PerftTest.parse(fen), 5, 10_000, Long.MAX_VALUE);
+                String expected = fen.equals(SCHOLARS_MATE) ? "h5f7" : fen.equals(BACK_RANK_MATE) ? "d1d8" : "d2d5";
+                assertEquals(expected, Moves.toCoordinateName(result.getBestMove()), fen);
+            }
+        }
+    }
+
+    @Test
+    void pruningSearchesFewerNodes() {
+        Search pruned = new Search();
+        pruned.search(PerftTest.parse(PerftTest.KIWIPETE), 6, 60_000, Long.MAX_VALUE);
+        Search full = new Search();
+        full.setNullMovePruning(false);
+        full.setLateMoveReductions(false);
+        full.setFutilityPruning(false);
+        full.search(PerftTest.parse(PerftTest.KIWIPETE), 6, 60_000, Long.MAX_VALUE);
+        assertTrue(pruned.getNodes() < full.getNodes());
+    }
+
+    @Test
+    void nullMoveIsNotTriedInZugzwang() {
+        // With only kings and pawns left, null moves are off and the passed pawn still shows.
+        Game game = PerftTest.parse("3k4/1K6/3P4/8/8/8/8/8 w - - 0 1");
+        SearchResult result = new Search().search(game, 10, 10_000, Long.MAX_VALUE);
+        assertTrue(result.getScore() > 0);
+    }
+
+    @Test
+    void takesExactScoresFromTheTablebase(@TempDir Path directory) throws IOException {
+        TablebaseGenerator.generateAll(directory, new PrintStream(OutputStream.nullOutputStream()));
+        Tablebase tablebase = new Tablebase(directory);
+        Game game = PerftTest.parse("8/8/8/4k3/8/8/8/R3K3 w - - 0 1");
+        int plies = Tablebase.getPliesToMate(tablebase.probe(game));
+        Search search = new Search();
+        search.setTablebase(tablebase);
+        SearchResult result = search.search(game, 2, 10_000, Long.MAX_VALUE);
+        assertEquals(Search.MATE - plies, result.getScore());
+        game.makeMove(result.getBestMove());
+        assertEquals(Tablebase.LOSS, Tablebase.getOutcome(tablebase.probe(game)));
+        assertEquals(plies - 1, Tablebase.getPliesToMate(tablebase.probe(game)));
+    }
+}
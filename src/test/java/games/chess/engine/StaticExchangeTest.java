@@ -0,0 +1,75 @@
+package games.chess.engine;
+
+import games.chess.model.Game;
+import games.chess.model.Move;
+import games.chess.model.Moves;
+import games.chess.model.Square;
+import games.chess.model.piece.Piece;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StaticExchangeTest {
+
+    final StaticExchange see = new StaticExchange();
+
+    private static int capture(String from, String to) {
+        return Moves.encode(Square.of(from).getIndex(), Square.of(to).getIndex(), Moves.CAPTURE);
+    }
+
+    @Test
+    void winsAnUndefendedPawn() {
+        Game game = PerftTest.parse("1k1r4/1pp4p/p7/4p3/8/P5P1/1PP4P/2K1R3 w - - 0 1");
+        assertEquals(100, see.evaluate(game, capture("e1", "e5")));
+        assertTrue(see.isAtLeast(game, capture("e1", "e5"), 0));
+    }
+
+    @Test
+    void followsXRaysThroughTheExchange() {
+        // Nxe5 Nxe5 Rxe5 Bxe5 leaves white a knight for a pawn down; the queens behind
+        // the rook and bishop don't change that.
+        Game game = PerftTest.parse("1k1r3q/1ppn3p/p4b2/4p3/8/P2N2P1/1PP1R1BP/2K1Q3 w - - 0 1");
+        assertEquals(-220, see.evaluate(game, capture("d3", "e5")));
+        assertFalse(see.isAtLeast(game, capture("d3", "e5"), 0));
+    }
+
+    @Test
+    void defendedPieceCostsTheAttacker() {
+        Game game = PerftTest.parse("4k3/8/2p5/3p4/8/8/3Q4/4K3 w - - 0 1");
+        assertEquals(100 - 900, see.evaluate(game, capture("d2", "d5")));
+    }
+
+    @Test
+    void kingCanOnlyTakeUndefendedPieces() {
+        Game defended = PerftTest.parse("4k3/8/8/8/8/2b5/3p4/4K3 w - - 0 1");
+        assertTrue(see.evaluate(defended, capture("e1", "d2")) < 0);
+        Game undefended = PerftTest.parse("4k3/8/8/8/8/8/3p4/4K3 w - - 0 1");
+        assertEquals(100, see.evaluate(undefended, capture("e1", "d2")));
+    }
+
+    @Test
+    void valuesEnPassantAndPromotions() {
+        Game enPassant = PerftTest.parse("4k3/8/8/3pP3/8/8/8/4K3 w - d6 0 1");
+        int move = Moves.encode(Square.of("e5").getIndex(), Square.of("d6").getIndex(), Moves.EN_PASSANT);
+        assertEquals(100, see.evaluate(enPassant, move));
+
+        Game promotion = PerftTest.parse("1r2k3/P7/8/8/8/8/8/4K3 w - - 0 1");
+        int promote = Moves.encodePromotion(Square.of("a7").getIndex(), Square.of("b8").getIndex(), Piece.QUEEN, true);
+        assertEquals(500 + 900 - 100, see.evaluate(promotion, promote));
+    }
+
+    @Test
+    void acceptsMoveObjects() {
+        Game game = PerftTest.parse("4k3/8/2p5/3p4/8/8/3Q4/4K3 w - - 0 1");
+        Move capture = new Move(game.getPieceAt("d2"), "d5", game.getPieceAt("d5"));
+        assertEquals(-800, see.evaluate(game, capture));
+    }
+
+    @Test
+    void valuesPiecesAsTheEvaluatorDoes() {
+        for (int type = Piece.PAWN; type < Piece.KING; type++) {
+            assertEquals(Evaluator.PIECE_VALUES[type], StaticExchange.getValue(type));
+        }
+        assertTrue(StaticExchange.getValue(Piece.KING) > 16 * Evaluator.PIECE_VALUES[Piece.QUEEN]);
+    }
+}
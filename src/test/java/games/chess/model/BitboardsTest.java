@@ -0,0 +1,92 @@
+package games.chess.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BitboardsTest {
+
+    private static long bits(String... squareNames) {
+        long result = 0L;
+        for (String name : squareNames) {
+            result |= 1L << new Square(name).getIndex();
+        }
+        return result;
+    }
+
+    @Test
+    void indexMatchesSquare() {
+        assertEquals(0, new Square("a1").getIndex());
+        assertEquals(7, new Square("h1").getIndex());
+        assertEquals(8, new Square("a2").getIndex());
+        assertEquals(63, new Square("h8").getIndex());
+        assertEquals(4, Bitboards.fileOf(new Square("e6").getIndex()));
+        assertEquals(5, Bitboards.rankOf(new Square("e6").getIndex()));
+    }
+
+    @Test
+    void betweenAndLineFollowAlignedSquares() {
+        int a1 = new Square("a1").getIndex();
+        int d4 = new Square("d4").getIndex();
+        int h1 = new Square("h1").getIndex();
+        int b3 = new Square("b3").getIndex();
+        assertEquals(bits("b2", "c3"), Bitboards.between(a1, d4));
+        assertEquals(bits("b2", "c3"), Bitboards.between(d4, a1));
+        assertEquals(bits("b1", "c1", "d1", "e1", "f1", "g1"), Bitboards.between(a1, h1));
+        assertEquals(0L, Bitboards.between(a1, b3));
+        assertEquals(0L, Bitboards.between(a1, new Square("b2").getIndex()));
+        assertEquals(bits("a1", "b2", "c3", "d4", "e5", "f6", "g7", "h8"), Bitboards.line(new Square("b2").getIndex(), d4));
+        assertEquals(0L, Bitboards.line(a1, b3));
+    }
+
+    @Test
+    void knightAttacksInCorner() {
+        assertEquals(bits("b3", "c2"), Bitboards.knightAttacks(new Square("a1").getIndex()));
+    }
+
+    @Test
+    void kingAttacksOnEdge() {
+        long expected = bits("g1", "g2", "h2");
+        assertEquals(expected, Bitboards.kingAttacks(new Square("h1").getIndex()));
+    }
+
+    @Test
+    void pawnAttacksDependOnColour() {
+        int e4 = new Square("e4").getIndex();
+        assertEquals(bits("d5", "f5"), Bitboards.pawnAttacks(true, e4));
+        assertEquals(bits("d3", "f3"), Bitboards.pawnAttacks(false, e4));
+        assertEquals(bits("b3"), Bitboards.pawnAttacks(true, new Square("a2").getIndex()));
+    }
+
+    @Test
+    void rookAttacksStopAtFirstBlocker() {
+        long occupied = bits("d6", "b4", "d2");
+        long expected = bits("d5", "d6", "c4", "b4", "e4", "f4", "g4", "h4", "d3", "d2");
+        assertEquals(expected, Bitboards.rookAttacks(new Square("d4").getIndex(), occupied));
+    }
+
+    @Test
+    void bishopAttacksStopAtFirstBlocker() {
+        long occupied = bits("f6", "b2");
+        long expected = bits("e5", "f6", "c5", "b6", "a7", "c3", "b2", "e3", "f2", "g1");
+        assertEquals(expected, Bitboards.bishopAttacks(new Square("d4").getIndex(), occupied));
+    }
+
+    @Test
+    void queenAttacksOnEmptyBoard() {
+        assertEquals(27, Bitboards.count(Bitboards.queenAttacks(new Square("d4").getIndex(), 0L)));
+    }
+
+    @Test
+    void magicLookupsMatchRayWalking() {
+        Random random = new Random(42);
+        for (int i = 0; i < 20000; i++) {
+            int square = random.nextInt(64);
+            long occupied = random.nextLong() & random.nextLong();
+            assertEquals(Bitboards.slowRookAttacks(square, occupied), Bitboards.rookAttacks(square, occupied));
+            assertEquals(Bitboards.slowBishopAttacks(square, occupied), Bitboards.bishopAttacks(square, occupied));
+        }
+    }
+}
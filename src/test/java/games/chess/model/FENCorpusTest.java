@@ -0,0 +1,170 @@
+package games.chess.model;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FENCorpusTest {
+
+    @TempDir
+    Path directory;
+
+    static final String[] FENS = new String[]{
+            "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+            "rnbqkbnr/ppp1pppp/8/3p4/4P3/8/PPPP1PPP/RNBQKBNR w KQkq d6 0 2",
+            "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+    };
+
+    /**
+     * Writes `count` lines cycling through FENS, some as EPD or with \r\n or blank lines.
+     * @return The Zobrist keys of the positions in order.
+     */
+    List<Long> writeCorpus(Path file, int count) throws IOException, InvalidFENFileException {
+        StringBuilder text = new StringBuilder();
+        List<Long> keys = new ArrayList<>();
+        Parser parser = new Parser();
+        for (int i = 0; i < count; i++) {
+            String fen = FENS[i % FENS.length];
+            keys.add(parser.parseFromFENString(fen).getZobristKey());
+            String epd = fen.substring(0, fen.lastIndexOf(' ', fen.lastIndexOf(' ') - 1));
+            switch (i % 5) {
+                case 1:
+                    text.append(epd).append(" bm Nf3; id \"test ").append(i).append("\";\n");
+                    break;
+                case 2:
+                    text.append(fen).append("\r\n");
+                    break;
+                case 3:
+                    text.append(epd).append("\n\n");
+                    break;
+                default:
+                    text.append(fen).append('\n');
+            }
+        }
+        Files.writeString(file, text);
+        return keys;
+    }
+
+    @Test
+    void streamsEveryPositionInOrder() throws Exception {
+        Path file = directory.resolve("corpus.epd");
+        List<Long> keys = writeCorpus(file, 1000);
+        FENCorpus corpus = new FENCorpus(file, 500);
+        assertTrue(corpus.getChunkCount() > 50);
+        assertEquals(keys, corpus.stream().map(Game::getZobristKey).collect(Collectors.toList()));
+        assertEquals(keys, corpus.stream().parallel().map(Game::getZobristKey).collect(Collectors.toList()));
+        // A single chunk gives the same.
+        assertEquals(keys, new FENCorpus(file).stream().map(Game::getZobristKey).collect(Collectors.toList()));
+    }
+
+    @Test
+    void forEachDeliversEveryPosition() throws Exception {
+        Path file = directory.resolve("corpus.fen");
+        List<Long> keys = writeCorpus(file, 2000);
+        FENCorpus corpus = new FENCorpus(file, 300);
+        List<Long> seen = new ArrayList<>();
+        ForkJoinPool pool = new ForkJoinPool(4);
+        long count = corpus.forEach(game -> seen.add(game.getZobristKey()), 16, pool);
+        pool.shutdown();
+        assertEquals(2000, count);
+        assertEquals(keys.stream().sorted().collect(Collectors.toList()),
+                seen.stream().sorted().collect(Collectors.toList()));
+    }
+
+    @Test
+    void parsedGamesArePlayable() throws Exception {
+        Path file = directory.resolve("corpus.fen");
+        writeCorpus(file, 20);
+        List<Game> games = new FENCorpus(file, 100).stream().collect(Collectors.toList());
+        Random random = new Random(3);
+        for (Game game : games) {
+            MoveList moves = new MoveList();
+            game.getLegalMoves(moves);
+            game.makeMove(moves.get(random.nextInt(moves.size())));
+            assertEquals(game.computeZobristKey(), game.getZobristKey());
+        }
+    }
+
+    @Test
+    void reportsTheByteOffsetOfABadLine() throws Exception {
+        Path file = directory.resolve("corpus.fen");
+        String good = FENS[0] + "\n";
+        Files.writeString(file, good + good + "not a fen\n" + good);
+        FENCorpus corpus = new FENCorpus(file, 64);
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> corpus.stream().count());
+        assertTrue(e.getMessage().contains("byte " + 2 * good.length()), e.getMessage());
+        assertThrows(IllegalArgumentException.class, () -> corpus.forEach(game -> {}, 1));
+    }
+
+    @Test
+    void stopsParsingWhenTheConsumerFails() throws Exception {
+        Path file = directory.resolve("corpus.fen");
+        writeCorpus(file, 500);
+        FENCorpus corpus = new FENCorpus(file, 200);
+        assertThrows(IllegalStateException.class, () -> corpus.forEach(game -> {
+            throw new IllegalStateException();
+        }, 2));
+        // An Error lets go of the parsing tasks too.
+        ForkJoinPool pool = new ForkJoinPool(8);
+        assertThrows(AssertionError.class, () -> corpus.forEach(game -> {
+            throw new AssertionError();
+        }, 1, pool));
+        assertTrue(pool.awaitQuiescence(10, TimeUnit.SECONDS));
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void stopsParsingWhenALineFails() throws Exception {
+        Path file = directory.resolve("corpus.fen");
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            text.append(i == 1000 ? "not a fen" : FENS[i % FENS.length]).append('\n');
+        }
+        Files.writeString(file, text);
+        FENCorpus corpus = new FENCorpus(file, 700);
+        assertTrue(corpus.getChunkCount() > 150);
+        // With room for one position, most tasks are waiting to queue one when the line fails.
+        ForkJoinPool pool = new ForkJoinPool(8);
+        assertThrows(IllegalArgumentException.class, () -> corpus.forEach(game -> {}, 1, pool));
+        assertTrue(pool.awaitQuiescence(10, TimeUnit.SECONDS));
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void aSlowConsumerDoesNotGrowThePool() throws Exception {
+        Path file = directory.resolve("corpus.fen");
+        writeCorpus(file, 2000);
+        FENCorpus corpus = new FENCorpus(file, 300);
+        assertTrue(corpus.getChunkCount() > 100);
+        ForkJoinPool pool = new ForkJoinPool(8);
+        int[] largestPool = new int[1];
+        long count = corpus.forEach(game -> largestPool[0] = Math.max(largestPool[0], pool.getPoolSize()), 1, pool);
+        pool.shutdown();
+        assertEquals(2000, count);
+        assertTrue(largestPool[0] <= 8, largestPool[0] + " threads");
+    }
+
+    @Test
+    void anEmptyFileHasNoPositions() throws Exception {
+        Path file = directory.resolve("empty.fen");
+        Files.writeString(file, "");
+        FENCorpus corpus = new FENCorpus(file);
+        assertEquals(0, corpus.getChunkCount());
+        assertEquals(0, corpus.stream().count());
+        assertEquals(0, corpus.forEach(game -> {}, 4));
+    }
+}
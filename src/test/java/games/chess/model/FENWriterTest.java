@@ -0,0 +1,118 @@
+package games.chess.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FENWriterTest {
+
+    static final String[] FENS = new String[]{
+            "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+            "rnbqkbnr/ppp1pppp/8/3p4/4P3/8/PPPP1PPP/RNBQKBNR w KQkq d6 0 2",
+            "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 17 53",
+            "r3k2r/8/8/8/8/8/8/4K3 b kq - 99 1234",
+            "7k/8/6K1/8/8/8/8/1Q6 b - - 0 120",
+    };
+
+    final FENWriter writer = new FENWriter();
+
+    @Test
+    void writesWhatWasParsed() {
+        for (String fen : FENS) {
+            Game game = TestUtils.parseGameFromFENOrFail(fen);
+            assertEquals(fen, writer.toFEN(game));
+            assertEquals(fen.substring(0, fen.lastIndexOf(' ', fen.lastIndexOf(' ') - 1)), writer.toEPD(game));
+        }
+    }
+
+    @Test
+    void writesTheStartingPosition() {
+        assertEquals(FENS[0], writer.toFEN(new Game()));
+    }
+
+    @Test
+    void countsMovesAndUndoesThem() {
+        Game game = new Game();
+        game.makeMove(Moves.encode(12, 28, Moves.DOUBLE_PAWN_PUSH)); // e4
+        assertEquals("rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1", writer.toFEN(game));
+        game.makeMove(Moves.encode(62, 45, Moves.QUIET)); // Nf6
+        assertEquals("rnbqkb1r/pppppppp/5n2/8/4P3/8/PPPP1PPP/RNBQKBNR w KQkq - 1 2", writer.toFEN(game));
+        game.makeMove(Moves.encode(6, 21, Moves.QUIET)); // Nf3
+        assertEquals("rnbqkb1r/pppppppp/5n2/8/4P3/5N2/PPPP1PPP/RNBQKB1R b KQkq - 2 2", writer.toFEN(game));
+        game.makeMove(Moves.encode(45, 28, Moves.CAPTURE)); // Nxe4
+        assertEquals("rnbqkb1r/pppppppp/8/8/4n3/5N2/PPPP1PPP/RNBQKB1R w KQkq - 0 3", writer.toFEN(game));
+        game.makeNullMove();
+        assertEquals("rnbqkb1r/pppppppp/8/8/4n3/5N2/PPPP1PPP/RNBQKB1R b KQkq - 1 3", writer.toFEN(game));
+        for (int i = 0; i < 5; i++) {
+            game.undoLastMove();
+        }
+        assertEquals(FENS[0], writer.toFEN(game));
+    }
+
+    @Test
+    void countersMatchAfterMoveObjectsAndEncodedMoves() {
+        Random random = new Random(7);
+        for (String fen : FENS) {
+            Game encoded = TestUtils.parseGameFromFENOrFail(fen);
+            Game objects = TestUtils.parseGameFromFENOrFail(fen);
+            MoveList moves = new MoveList();
+            int plies = 0;
+            for (; plies < 40; plies++) {
+                encoded.getLegalMoves(moves);
+                if (moves.isEmpty()) {
+                    break;
+                }
+                int move = moves.get(random.nextInt(moves.size()));
+                objects.makeMove(Moves.toMove(move, objects));
+                encoded.makeMove(move);
+                assertEquals(writer.toFEN(encoded), writer.toFEN(objects));
+                // Writing the position must agree with parsing it back.
+                Game parsed = TestUtils.parseGameFromFENOrFail(writer.toFEN(encoded));
+                assertEquals(encoded.getZobristKey(), parsed.getZobristKey());
+                assertEquals(encoded.getHalfmoveClock(), parsed.getHalfmoveClock());
+                assertEquals(encoded.getFullmoveNumber(), parsed.getFullmoveNumber());
+            }
+            for (; plies > 0; plies--) {
+                encoded.undoLastMove();
+                objects.undoLastMove();
+            }
+            assertEquals(fen, writer.toFEN(encoded));
+            assertEquals(fen, writer.toFEN(objects));
+        }
+    }
+
+    @Test
+    void appendsToBuffers() {
+        StringBuilder text = new StringBuilder("fen: ");
+        ByteBuffer bytes = ByteBuffer.allocate(FENS.length * FENWriter.MAX_LENGTH);
+        for (String fen : FENS) {
+            Game game = TestUtils.parseGameFromFENOrFail(fen);
+            writer.appendFEN(game, text);
+            text.append('\n');
+            writer.writeEPD(game, bytes);
+            bytes.put((byte) '\n');
+        }
+        StringBuilder expectedEPD = new StringBuilder();
+        for (String fen : FENS) {
+            expectedEPD.append(fen, 0, fen.lastIndexOf(' ', fen.lastIndexOf(' ') - 1)).append('\n');
+        }
+        assertEquals("fen: " + String.join("\n", FENS) + "\n", text.toString());
+        assertEquals(expectedEPD.toString(), new String(bytes.array(), 0, bytes.position(), StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    void writesIntoAnArrayAtAnOffset() {
+        Game game = TestUtils.parseGameFromFENOrFail(FENS[3]);
+        game.setMoveCounters(Integer.MAX_VALUE, Integer.MAX_VALUE);
+        byte[] out = new byte[3 + FENWriter.MAX_LENGTH];
+        int end = FENWriter.write(game, out, 3, true);
+        String expected = "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 2147483647 2147483647";
+        assertEquals(expected, new String(out, 3, end - 3, StandardCharsets.US_ASCII));
+        assertTrue(end <= out.length);
+    }
+}
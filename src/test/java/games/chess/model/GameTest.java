@@ -3,6 +3,8 @@ package games.chess.model;
 import games.chess.model.piece.Piece;
 import org.junit.jupiter.api.Test;
 
+import java.util.Arrays;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class GameTest {
@@ -95,4 +97,433 @@ class GameTest {
         assertEquals(d7Pawn, game.getEnPassantCapturablePiece());
     }
     
-}
\ No newline at end of file
+    @Test
+    void bitboardsMatchStartingPosition() {
+        Game game = new Game();
+        assertEquals(Bitboards.RANK_1 | Bitboards.RANK_2, game.getOccupancy(true));
+        assertEquals(Bitboards.RANK_7 | Bitboards.RANK_8, game.getOccupancy(false));
+        assertEquals(Bitboards.RANK_2, game.getPieceBoard(true, Piece.PAWN));
+        assertEquals(1L << new Square("e8").getIndex(), game.getPieceBoard(false, Piece.KING));
+    }
+
+    @Test
+    void bitboardsFollowMakeAndUndo() {
+        Game scandinavian = TestUtils.parseGameFromFileOrFail("scandinavian.fen");
+        long whiteBefore = scandinavian.getOccupancy(true);
+        long blackBefore = scandinavian.getOccupancy(false);
+        Move exd5 = new Move(scandinavian.getPieceAt("e4"), "d5", scandinavian.getPieceAt("d5"));
+        scandinavian.makeMove(exd5);
+        long d5 = 1L << new Square("d5").getIndex();
+        assertEquals(d5, scandinavian.getPieceBoard(true, Piece.PAWN) & d5);
+        assertEquals(0L, scandinavian.getOccupancy(false) & d5);
+        assertEquals(0L, scandinavian.getOccupancy(true) & (1L << new Square("e4").getIndex()));
+        
+        scandinavian.undoLastMove();
+        assertEquals(whiteBefore, scandinavian.getOccupancy(true));
+        assertEquals(blackBefore, scandinavian.getOccupancy(false));
+    }
+
+    @Test
+    void undoingKingMoveRestoresCastlingRights() {
+        Game scandinavian = TestUtils.parseGameFromFileOrFail("scandinavian.fen");
+        Player white = scandinavian.getWhitePlayer();
+        scandinavian.makeMove(new Move(white.getKing(), "e2"));
+        assertFalse(white.canCastleKingside);
+        assertFalse(white.canCastleQueenside);
+        scandinavian.undoLastMove();
+        assertTrue(white.canCastleKingside);
+        assertTrue(white.canCastleQueenside);
+        assertEquals(new Square("e1"), white.getKing().getSquare());
+    }
+
+    @Test
+    void undoingRookMoveOnlyRestoresRevokedRight() {
+        Game flankAttack = TestUtils.parseGameFromFileOrFail("flank_attack_advanced.fen");
+        Player white = flankAttack.getWhitePlayer();
+        flankAttack.makeMove(new Move(flankAttack.getPieceAt("a1"), "a3"));
+        assertFalse(white.canCastleQueenside);
+        flankAttack.undoLastMove();
+        assertTrue(white.canCastleQueenside);
+        assertFalse(white.canCastleKingside);
+    }
+
+    @Test
+    void getLegalMovesIsEmptyWhenCheckmated() {
+        Game scholarsMate = TestUtils.parseGameFromFileOrFail("scholars_mate.fen");
+        assertEquals(0, scholarsMate.getLegalMoves().length);
+    }
+
+    @Test
+    void getLegalMovesExcludesMovesIntoCheck() {
+        Game game = new Game();
+        game.makeMove(new Move(game.getPieceAt("e2"), "e4"));
+        game.makeMove(new Move(game.getPieceAt("f7"), "f5"));
+        game.makeMove(new Move(game.getPieceAt("d1"), "h5"));
+        // Black is in check from the queen on h5. Kf7 is still on the queen's diagonal,
+        // so g6 is the only way out.
+        Move[] legalMoves = game.getLegalMoves();
+        assertEquals(1, legalMoves.length);
+        assertEquals("g6", legalMoves[0].getCanonicalName());
+    }
+
+    @Test
+    void getLegalMovesLeavesGameUnchanged() {
+        Game scandinavian = TestUtils.parseGameFromFileOrFail("scandinavian.fen");
+        long white = scandinavian.getOccupancy(true);
+        long black = scandinavian.getOccupancy(false);
+        scandinavian.getLegalMoves();
+        assertEquals(white, scandinavian.getOccupancy(true));
+        assertEquals(black, scandinavian.getOccupancy(false));
+        assertFalse(scandinavian.canUndoLastMove());
+        assertEquals(new Square("d6"), scandinavian.getEnPassantSquare());
+        assertEquals(new Square("e4"), scandinavian.getPieceAt("e4").getSquare());
+    }
+
+    @Test
+    void isSquareAttackedInStartPosition() {
+        Game game = new Game();
+        assertTrue(game.isSquareAttacked(Square.of("e3"), true));
+        assertTrue(game.isSquareAttacked(Square.of("f3"), true));
+        assertTrue(game.isSquareAttacked(Square.of("d1"), true)); // Defended by the king.
+        assertFalse(game.isSquareAttacked(Square.of("e4"), true));
+        assertFalse(game.isSquareAttacked(Square.of("e3"), false));
+        assertTrue(game.isSquareAttacked(Square.of("c6"), false));
+    }
+
+    @Test
+    void isSquareAttackedBySlidersStopsAtBlockers() {
+        Game scandinavian = TestUtils.parseGameFromFileOrFail("scandinavian.fen");
+        assertTrue(scandinavian.isSquareAttacked(Square.of("d5"), true)); // exd5
+        assertTrue(scandinavian.isSquareAttacked(Square.of("d5"), false)); // Queen on d8.
+        assertFalse(scandinavian.isSquareAttacked(Square.of("d4"), false)); // Blocked by d5.
+        assertTrue(scandinavian.isSquareAttacked(Square.of("a6"), true)); // Bishop on f1.
+    }
+
+    @Test
+    void checkDetectionUsesAttacks() {
+        Game scholarsMate = TestUtils.parseGameFromFileOrFail("scholars_mate.fen");
+        assertTrue(scholarsMate.isActivePlayerInCheck());
+        assertFalse(scholarsMate.isInactivePlayerInCheck());
+        assertFalse(new Game().isActivePlayerInCheck());
+    }
+
+    @Test
+    void zobristKeyIsUpdatedIncrementally() {
+        Game scandinavian = TestUtils.parseGameFromFileOrFail("scandinavian.fen");
+        long initialKey = scandinavian.getZobristKey();
+        assertEquals(scandinavian.computeZobristKey(), initialKey);
+        
+        Move exd5 = new Move(scandinavian.getPieceAt("e4"), "d5", scandinavian.getPieceAt("d5"));
+        scandinavian.makeMove(exd5);
+        assertEquals(scandinavian.computeZobristKey(), scandinavian.getZobristKey());
+        Move Kd7 = new Move(scandinavian.getBlackPlayer().getKing(), "d7");
+        scandinavian.makeMove(Kd7);
+        assertEquals(scandinavian.computeZobristKey(), scandinavian.getZobristKey());
+        
+        scandinavian.undoLastMove();
+        scandinavian.undoLastMove();
+        assertEquals(initialKey, scandinavian.getZobristKey());
+    }
+
+    @Test
+    void zobristKeyMatchesForTranspositions() {
+        Game first = new Game();
+        first.makeMove(new Move(first.getPieceAt("g1"), "f3"));
+        first.makeMove(new Move(first.getPieceAt("g8"), "f6"));
+        first.makeMove(new Move(first.getPieceAt("b1"), "c3"));
+        
+        Game second = new Game();
+        second.makeMove(new Move(second.getPieceAt("b1"), "c3"));
+        second.makeMove(new Move(second.getPieceAt("g8"), "f6"));
+        second.makeMove(new Move(second.getPieceAt("g1"), "f3"));
+        
+        assertEquals(first.getZobristKey(), second.getZobristKey());
+        assertNotEquals(new Game().getZobristKey(), first.getZobristKey());
+    }
+
+    @Test
+    void zobristKeyCoversEnPassantAndCastling() {
+        Game start = TestUtils.parseGameFromFileOrFail("start_position.fen");
+        assertEquals(new Game().getZobristKey(), start.getZobristKey());
+        
+        Game scandinavian = TestUtils.parseGameFromFileOrFail("scandinavian.fen");
+        Game noWhiteKingside = TestUtils.parseGameFromFileOrFail("scandinavian.fen");
+        noWhiteKingside.getWhitePlayer().canCastleKingside = false;
+        assertNotEquals(scandinavian.computeZobristKey(), noWhiteKingside.computeZobristKey());
+        assertNull(start.getEnPassantSquare());
+    }
+
+    @Test
+    void castlingMovesTheRookAndUndoRestoresIt() {
+        Game game = TestUtils.parseGameFromFileOrFail("flank_attack_advanced.fen");
+        game.makeMove(new Move(game.getPieceAt("b1"), "c3"));
+        game.makeMove(new Move(game.getPieceAt("b8"), "c6"));
+        game.makeMove(new Move(game.getPieceAt("d2"), "d3"));
+        game.makeMove(new Move(game.getPieceAt("d7"), "d6"));
+        game.makeMove(new Move(game.getPieceAt("c1"), "e3"));
+        game.makeMove(new Move(game.getPieceAt("c8"), "e6"));
+        game.makeMove(new Move(game.getPieceAt("d1"), "d2"));
+        game.makeMove(new Move(game.getPieceAt("d8"), "d7"));
+        
+        Move castle = null;
+        for (Move move : game.getLegalMoves()) {
+            if (move.isCastle()) {
+                castle = move;
+            }
+        }
+        assertNotNull(castle);
+        assertEquals("O-O-O", castle.getCanonicalName());
+        long keyBefore = game.getZobristKey();
+        Piece rook = game.getPieceAt("a1");
+        
+        game.makeMove(castle);
+        assertEquals(rook, game.getPieceAt("d1"));
+        assertEquals(new Square("d1"), rook.getSquare());
+        assertEquals(game.computeZobristKey(), game.getZobristKey());
+        
+        game.undoLastMove();
+        assertEquals(rook, game.getPieceAt("a1"));
+        assertEquals(new Square("a1"), rook.getSquare());
+        assertTrue(game.getWhitePlayer().canCastleQueenside);
+        assertEquals(keyBefore, game.getZobristKey());
+    }
+
+    @Test
+    void promotionReplacesPawnAndUndoRestoresIt() {
+        Game game = TestUtils.parseGameFromFENOrFail("4k3/1P6/8/8/8/8/8/4K3 w - - 0 1");
+        Piece pawn = game.getPieceAt("b7");
+        Move promotion = null;
+        for (Move move : game.getLegalMoves()) {
+            if (move.isPromotion() && move.getPromotionTypeIndex() == Piece.QUEEN) {
+                promotion = move;
+            }
+        }
+        assertNotNull(promotion);
+        assertEquals("b8=Q", promotion.getCanonicalName());
+        assertEquals("b8=Q+", promotion.getCanonicalName(game));
+        
+        game.makeMove(promotion);
+        Piece queen = game.getPieceAt("b8");
+        assertEquals(Piece.QUEEN, queen.getTypeIndex());
+        assertTrue(queen.isWhite());
+        assertTrue(Arrays.asList(game.getWhitePlayer().getPieces()).contains(queen));
+        assertEquals(game.computeZobristKey(), game.getZobristKey());
+        
+        game.undoLastMove();
+        assertEquals(pawn, game.getPieceAt("b7"));
+        assertNull(game.getPieceAt("b8"));
+        assertFalse(Arrays.asList(game.getWhitePlayer().getPieces()).contains(queen));
+        assertEquals(0L, game.getPieceBoard(true, Piece.QUEEN));
+    }
+
+    @Test
+    void capturingARookRevokesCastling() {
+        Game game = TestUtils.parseGameFromFileOrFail("flank_attack_advanced.fen");
+        // The white rook on h3 can't reach h8, so play the capture directly.
+        Move Rxh5 = new Move(game.getPieceAt("h3"), "h5", game.getPieceAt("h5"));
+        game.makeMove(Rxh5);
+        game.makeMove(new Move(game.getPieceAt("a6"), "b6"));
+        Move Rxh8 = new Move(game.getPieceAt("h5"), "h8", game.getPieceAt("h8"));
+        game.makeMove(Rxh8);
+        assertFalse(game.getBlackPlayer().canCastleKingside);
+        assertEquals(game.computeZobristKey(), game.getZobristKey());
+        game.undoLastMove();
+        assertTrue(game.getBlackPlayer().canCastleKingside);
+    }
+
+    @Test
+    void encodedMovesMatchMoveObjects() {
+        Game game = TestUtils.parseGameFromFENOrFail(
+                "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1");
+        MoveList encodedMoves = new MoveList();
+        game.getLegalMoves(encodedMoves);
+        Move[] moves = game.getLegalMoves();
+        assertEquals(moves.length, encodedMoves.size());
+        for (int i = 0; i < moves.length; i++) {
+            int encoded = encodedMoves.get(i);
+            assertEquals(Moves.encode(moves[i]), encoded);
+
+            game.makeMove(moves[i]);
+            long keyAfterMove = game.getZobristKey();
+            String boardAfterMove = describeBoard(game);
+            game.undoLastMove();
+
+            game.makeMove(encoded);
+            assertEquals(keyAfterMove, game.getZobristKey());
+            assertEquals(game.computeZobristKey(), game.getZobristKey());
+            assertEquals(boardAfterMove, describeBoard(game));
+            game.undoLastMove();
+        }
+    }
+
+    @Test
+    void undoEncodedMovesRestoresEverything() {
+        Game game = TestUtils.parseGameFromFENOrFail(
+                "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1");
+        long keyBefore = game.getZobristKey();
+        String boardBefore = describeBoard(game);
+        MoveList moves = new MoveList();
+        game.getLegalMoves(moves);
+        MoveList replies = new MoveList();
+        for (int i = 0; i < moves.size(); i++) {
+            game.makeMove(moves.get(i));
+            game.getLegalMoves(replies);
+            for (int j = 0; j < replies.size(); j++) {
+                game.makeMove(replies.get(j));
+                game.undoLastMove();
+            }
+            game.undoLastMove();
+        }
+        assertFalse(game.canUndoLastMove());
+        assertEquals(keyBefore, game.getZobristKey());
+        assertEquals(boardBefore, describeBoard(game));
+        assertTrue(game.getWhitePlayer().canCastleKingside);
+        assertTrue(game.getBlackPlayer().canCastleQueenside);
+    }
+
+    @Test
+    void pieceSquareScoresAreUpdatedIncrementally() {
+        Game start = new Game();
+        assertEquals(0, start.getMiddlegameScore());
+        assertEquals(0, start.getEndgameScore());
+        assertEquals(PieceSquareTables.MAX_PHASE, start.getPhase());
+
+        // Kiwipete has castling, en passant and promotions two plies in.
+        Game game = TestUtils.parseGameFromFENOrFail(
+                "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1");
+        int middlegameBefore = game.getMiddlegameScore();
+        int endgameBefore = game.getEndgameScore();
+        MoveList moves = new MoveList();
+        game.getLegalMoves(moves);
+        MoveList replies = new MoveList();
+        for (int i = 0; i < moves.size(); i++) {
+            game.makeMove(moves.get(i));
+            game.getLegalMoves(replies);
+            for (int j = 0; j < replies.size(); j++) {
+                game.makeMove(replies.get(j));
+                // A copy adds up the scores of its pieces from scratch.
+                Game copy = new Game(game);
+                assertEquals(copy.getMiddlegameScore(), game.getMiddlegameScore());
+                assertEquals(copy.getEndgameScore(), game.getEndgameScore());
+                assertEquals(copy.getPhase(), game.getPhase());
+                assertEquals(copy.getPawnKey(), game.getPawnKey());
+                game.undoLastMove();
+            }
+            game.undoLastMove();
+        }
+        assertEquals(middlegameBefore, game.getMiddlegameScore());
+        assertEquals(endgameBefore, game.getEndgameScore());
+    }
+
+    @Test
+    void pawnKeyOnlyChangesWithThePawns() {
+        Game game = new Game();
+        long startPawns = game.getPawnKey();
+        game.makeMove(Moves.encode(Square.of("g1").getIndex(), Square.of("f3").getIndex(), Moves.QUIET));
+        assertEquals(startPawns, game.getPawnKey());
+        game.makeMove(Moves.encode(Square.of("e7").getIndex(), Square.of("e5").getIndex(), Moves.DOUBLE_PAWN_PUSH));
+        assertNotEquals(startPawns, game.getPawnKey());
+        long afterPush = game.getPawnKey();
+        // Capturing a pawn with a piece changes it as well.
+        game.makeMove(Moves.encode(Square.of("f3").getIndex(), Square.of("e5").getIndex(), Moves.CAPTURE));
+        assertNotEquals(afterPush, game.getPawnKey());
+        game.undoLastMove();
+        assertEquals(afterPush, game.getPawnKey());
+        game.undoLastMove();
+        game.undoLastMove();
+        assertEquals(startPawns, game.getPawnKey());
+    }
+
+    // Lists every piece in play with its square, as the board array, the pieces and the bitboards see it.
+    private static String describeBoard(Game game) {
+        StringBuilder result = new StringBuilder();
+        for (int square = 0; square < 64; square++) {
+            Piece piece = game.getPieceAt(square);
+            if (piece != null) {
+                assertEquals(Square.of(square), piece.getSquare());
+                assertTrue((game.getPieceBoard(piece.isWhite(), piece.getTypeIndex()) & (1L << square)) != 0);
+                result.append(piece.getFENAbbrevName()).append(square).append(' ');
+            }
+        }
+        assertEquals(Long.bitCount(game.getOccupancy()), result.toString().split(" ").length);
+        return result.toString();
+    }
+
+    @Test
+    void playsAsARegularGame() {
+        Game game = new Game();
+        assertEquals("White", game.getCurrentPlayer());
+        assertFalse(game.isFinished());
+        // Fool's mate.
+        for (String name : new String[]{"f3", "e5", "g4", "Qh4"}) {
+            Game next = null;
+            for (Move move : game.getLegalMoves()) {
+                if (move.getCanonicalName().equals(name)) {
+                    next = game.cloneWithUpdate(move);
+                }
+            }
+            assertNotNull(next, name);
+            game = next;
+        }
+        assertTrue(game.isFinished());
+        assertEquals("Black", game.getWinner());
+        assertEquals("Black", game.getLastPlayer());
+    }
+
+    @Test
+    void legalMovesAreNamedForThePosition() {
+        Game game = TestUtils.parseGameFromFENOrFail("4k3/8/8/8/8/8/8/R4RK1 w - - 0 1");
+        Move rookMove = null;
+        for (Move move : game.getLegalMoves()) {
+            if (move.getOriginSquare().getName().equals("a1") && move.getDestSquare().getName().equals("d1")) {
+                rookMove = move;
+            }
+        }
+        assertNotNull(rookMove);
+        assertEquals("Rd1", rookMove.getCanonicalName());
+        assertEquals("Rad1", rookMove.getCanonicalName(game));
+        // Once told it is ambiguous, the name is of the move, not of where the rook is now.
+        rookMove.setIsAmbiguous(true, false);
+        game.makeMove(rookMove);
+        assertEquals("Rad1", rookMove.getCanonicalName());
+    }
+
+    @Test
+    void stalemateIsFinishedWithoutAWinner() {
+        Game game = TestUtils.parseGameFromFENOrFail("7k/5Q2/6K1/8/8/8/8/8 b - - 0 1");
+        assertTrue(game.isFinished());
+        assertNull(game.getWinner());
+    }
+
+    @Test
+    void cloneWithUpdateLeavesTheOriginal() {
+        Game game = new Game();
+        long key = game.getZobristKey();
+        Move e4 = new Move(game.getPieceAt("e2"), "e4");
+        Game clone = game.cloneWithUpdate(e4);
+        assertEquals(key, game.getZobristKey());
+        assertNotNull(game.getPieceAt("e2"));
+        assertNotNull(clone.getPieceAt("e4"));
+        assertEquals("Black", clone.getCurrentPlayer());
+        // Moves from the clone equal the matching moves from the original.
+        Move e5 = new Move(clone.getPieceAt("e7"), "e5");
+        assertTrue(Arrays.asList(clone.getLegalMoves()).contains(e5));
+        assertEquals(Arrays.asList(game.getLegalMoves()), Arrays.asList(new Game(game).getLegalMoves()));
+    }
+
+    @Test
+    void nullMovePassesTheTurnAndUndoes() {
+        Game game = new Game();
+        game.makeMove(new Move(game.getPieceAt("e2"), "e4"));
+        long key = game.getZobristKey();
+        assertNotNull(game.getEnPassantSquare());
+        game.makeNullMove();
+        assertEquals("White", game.getCurrentPlayer());
+        assertNull(game.getEnPassantSquare());
+        assertNotEquals(key, game.getZobristKey());
+        game.undoLastMove();
+        assertEquals("Black", game.getCurrentPlayer());
+        assertNotNull(game.getEnPassantSquare());
+        assertEquals(key, game.getZobristKey());
+    }
+}
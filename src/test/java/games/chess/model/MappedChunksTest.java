@@ -0,0 +1,53 @@
+package games.chess.model;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedChunksTest {
+
+    @TempDir
+    Path directory;
+
+    static String read(ByteBuffer chunk) {
+        byte[] bytes = new byte[chunk.limit()];
+        chunk.get(0, bytes);
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+
+    @Test
+    void cutsOnlyAtBoundariesAndCoversTheFile() throws Exception {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            text.append("record ").append(i).append(i % 7 == 0 ? "; with a longer tail\n" : "\n");
+        }
+        Path file = directory.resolve("records.txt");
+        Files.writeString(file, text);
+        MappedChunks chunks = new MappedChunks(file, 100, (buffer, index) -> buffer.get(index - 1) == '\n', "line");
+        assertTrue(chunks.size() > 20);
+        StringBuilder joined = new StringBuilder();
+        for (int i = 0; i < chunks.size(); i++) {
+            String chunk = read(chunks.get(i));
+            assertEquals(joined.length(), chunks.getOffset(i));
+            assertTrue(chunk.length() >= 100 || i == chunks.size() - 1, chunk);
+            assertTrue(chunk.endsWith("\n"), chunk);
+            joined.append(chunk);
+        }
+        assertEquals(text.toString(), joined.toString());
+    }
+
+    @Test
+    void aFileWithoutBoundariesIsOneChunk() throws Exception {
+        Path file = directory.resolve("one.txt");
+        Files.writeString(file, "x".repeat(1000));
+        MappedChunks chunks = new MappedChunks(file, 10, (buffer, index) -> false, "line");
+        assertEquals(1, chunks.size());
+        assertEquals(1000, chunks.get(0).limit());
+    }
+}
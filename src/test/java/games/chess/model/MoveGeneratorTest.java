@@ -0,0 +1,147 @@
+package games.chess.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MoveGeneratorTest {
+
+    // Positions with castling, en passant, promotions and checks.
+    private static final String[] POSITIONS = new String[]{
+            "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+            "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+            "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+            "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+    };
+
+    private static int[] sorted(MoveList moves) {
+        int[] result = new int[moves.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = moves.get(i);
+        }
+        Arrays.sort(result);
+        return result;
+    }
+
+    @Test
+    void capturesAndQuietsMakeUpAllMoves() {
+        MoveList all = new MoveList();
+        MoveList split = new MoveList();
+        MoveList replies = new MoveList();
+        for (String fen : POSITIONS) {
+            Game game = TestUtils.parseGameFromFENOrFail(fen);
+            game.getLegalMoves(replies);
+            for (int i = -1; i < replies.size(); i++) {
+                // The position itself, then the position after each legal move.
+                if (i >= 0) {
+                    game.makeMove(replies.get(i));
+                }
+                all.clear();
+                MoveGenerator.generate(game, game.isWhiteToMove(), all);
+                split.clear();
+                MoveGenerator.generateCaptures(game, game.isWhiteToMove(), split);
+                for (int j = 0; j < split.size(); j++) {
+                    assertTrue(Moves.isCapture(split.get(j)) || Moves.isPromotion(split.get(j)));
+                }
+                MoveGenerator.generateQuiets(game, game.isWhiteToMove(), split);
+                assertArrayEquals(sorted(all), sorted(split), fen);
+                if (i >= 0) {
+                    game.undoLastMove();
+                }
+            }
+        }
+    }
+
+    @Test
+    void legalMovesAreThePseudoLegalMovesThatPassIsLegal() {
+        String[] positions = Arrays.copyOf(POSITIONS, POSITIONS.length + 4);
+        // En passant that uncovers the king along the rank, or resolves a pawn check.
+        positions[POSITIONS.length] = "8/8/8/KPp4r/8/8/8/4k3 w - c6 0 1";
+        positions[POSITIONS.length + 1] = "8/8/8/2k5/3Pp3/8/8/4K3 b - d3 0 1";
+        // Double check, and a pinned piece that can capture its pinner.
+        positions[POSITIONS.length + 2] = "4k3/4r3/8/8/1b6/8/8/R3K2R w KQ - 0 1";
+        positions[POSITIONS.length + 3] = "4k3/4r3/8/8/8/8/4R3/4K3 w - - 0 1";
+        MoveList legal = new MoveList();
+        MoveList pseudoLegal = new MoveList();
+        MoveList filtered = new MoveList();
+        MoveList replies = new MoveList();
+        for (String fen : positions) {
+            Game game = TestUtils.parseGameFromFENOrFail(fen);
+            game.getLegalMoves(replies);
+            for (int i = -1; i < replies.size(); i++) {
+                if (i >= 0) {
+                    game.makeMove(replies.get(i));
+                }
+                legal.clear();
+                MoveGenerator.generateLegal(game, legal);
+                pseudoLegal.clear();
+                MoveGenerator.generate(game, game.isWhiteToMove(), pseudoLegal);
+                filtered.clear();
+                for (int j = 0; j < pseudoLegal.size(); j++) {
+                    if (game.isLegal(pseudoLegal.get(j))) {
+                        filtered.add(pseudoLegal.get(j));
+                    }
+                }
+                assertArrayEquals(sorted(filtered), sorted(legal), fen);
+                if (i >= 0) {
+                    game.undoLastMove();
+                }
+            }
+        }
+    }
+
+    @Test
+    void enPassantCantUncoverTheKing() {
+        Game game = TestUtils.parseGameFromFENOrFail("8/8/8/KPp4r/8/8/8/4k3 w - c6 0 1");
+        MoveList moves = new MoveList();
+        game.getLegalMoves(moves);
+        assertFalse(moves.contains(Moves.encode(Square.of("b5").getIndex(), Square.of("c6").getIndex(),
+                Moves.EN_PASSANT)));
+        assertTrue(moves.contains(Moves.encode(Square.of("b5").getIndex(), Square.of("b6").getIndex(),
+                Moves.QUIET)));
+    }
+
+    @Test
+    void isPseudoLegalAgreesWithGenerate() {
+        // Every move from any of the positions is tried in every other one.
+        MoveList candidates = new MoveList();
+        MoveList generated = new MoveList();
+        for (String fen : POSITIONS) {
+            Game game = TestUtils.parseGameFromFENOrFail(fen);
+            generated.clear();
+            MoveGenerator.generate(game, game.isWhiteToMove(), generated);
+            for (String other : POSITIONS) {
+                Game otherGame = TestUtils.parseGameFromFENOrFail(other);
+                candidates.clear();
+                MoveGenerator.generate(otherGame, true, candidates);
+                MoveGenerator.generate(otherGame, false, candidates);
+                for (int i = 0; i < candidates.size(); i++) {
+                    int move = candidates.get(i);
+                    assertEquals(generated.contains(move), MoveGenerator.isPseudoLegal(game, move),
+                            Moves.toCoordinateName(move) + " flags " + Moves.getFlags(move) + " in " + fen);
+                }
+            }
+        }
+    }
+
+    @Test
+    void isPseudoLegalRejectsWrongFlags() {
+        Game game = new Game();
+        int e2 = Square.of("e2").getIndex();
+        int e4 = Square.of("e4").getIndex();
+        int g1 = Square.of("g1").getIndex();
+        int f3 = Square.of("f3").getIndex();
+        assertTrue(MoveGenerator.isPseudoLegal(game, Moves.encode(e2, e4, Moves.DOUBLE_PAWN_PUSH)));
+        assertFalse(MoveGenerator.isPseudoLegal(game, Moves.encode(e2, e4, Moves.QUIET)));
+        assertTrue(MoveGenerator.isPseudoLegal(game, Moves.encode(g1, f3, Moves.QUIET)));
+        assertFalse(MoveGenerator.isPseudoLegal(game, Moves.encode(g1, f3, Moves.CAPTURE)));
+        assertFalse(MoveGenerator.isPseudoLegal(game, Moves.encode(g1, f3, Moves.EN_PASSANT)));
+        assertFalse(MoveGenerator.isPseudoLegal(game, Moves.NONE));
+        // Black's moves aren't pseudo-legal when it is white's turn.
+        assertFalse(MoveGenerator.isPseudoLegal(game, Moves.encode(Square.of("g8").getIndex(),
+                Square.of("f6").getIndex(), Moves.QUIET)));
+    }
+}
@@ -152,5 +152,24 @@ class MoveTest {
     
     @Test
     void canParse() {
+        for (String name : new String[]{"e4", "exd5", "Nbd7", "R1e2", "Qa3b4", "O-O", "O-O-O", "0-0",
+                "e8=Q", "exd8N", "bxa1=Q+", "Qxf7#", "Bb5+", "Nf3!?"}) {
+            assertTrue(Move.canParse(name), name);
+        }
+        for (String name : new String[]{"", "e9", "Ke", "i4", "Pe4", "O-O-O-O", "e8=K", "Qxf7##", "e4=Q", "d5Q", "exd6=N"}) {
+            assertFalse(Move.canParse(name), name);
+        }
+    }
+
+    @Test
+    void getCanonicalNameInTheGame() {
+        Game game = TestUtils.parseGameFromFENOrFail("4k3/8/8/8/8/8/8/R3K2R w KQ - 0 1");
+        Move check = new Move(game.getPieceAt("a1"), new Square("a8"));
+        assertEquals("Ra8", check.getCanonicalName());
+        assertEquals("Ra8+", check.getCanonicalName(game));
+        Move castle = Move.castleKingside((King) game.getPieceAt("e1"));
+        assertEquals("O-O", castle.getCanonicalName(game));
+        // Naming doesn't change the game.
+        assertEquals(TestUtils.parseGameFromFENOrFail("4k3/8/8/8/8/8/8/R3K2R w KQ - 0 1").getZobristKey(), game.getZobristKey());
     }
 }
\ No newline at end of file
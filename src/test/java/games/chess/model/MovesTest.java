@@ -0,0 +1,67 @@
+package games.chess.model;
+
+import games.chess.model.piece.Piece;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MovesTest {
+
+    @Test
+    void encodeAndDecodeFields() {
+        int move = Moves.encode(Square.of("e2").getIndex(), Square.of("e4").getIndex(), Moves.DOUBLE_PAWN_PUSH);
+        assertEquals(Square.of("e2").getIndex(), Moves.getFrom(move));
+        assertEquals(Square.of("e4").getIndex(), Moves.getTo(move));
+        assertEquals(Moves.DOUBLE_PAWN_PUSH, Moves.getFlags(move));
+        assertFalse(Moves.isCapture(move));
+        assertFalse(Moves.isPromotion(move));
+        assertEquals("e2e4", Moves.toCoordinateName(move));
+        assertTrue(move < (1 << 16));
+    }
+
+    @Test
+    void encodePromotions() {
+        int from = Square.of("b7").getIndex();
+        int to = Square.of("a8").getIndex();
+        for (int type = Piece.KNIGHT; type <= Piece.QUEEN; type++) {
+            int move = Moves.encodePromotion(from, to, type, true);
+            assertTrue(Moves.isPromotion(move));
+            assertTrue(Moves.isCapture(move));
+            assertFalse(Moves.isEnPassant(move));
+            assertEquals(type, Moves.getPromotionTypeIndex(move));
+        }
+        assertEquals("b7a8q", Moves.toCoordinateName(Moves.encodePromotion(from, to, Piece.QUEEN, true)));
+        assertEquals(Move.NO_PROMOTION, Moves.getPromotionTypeIndex(Moves.encode(from, to, Moves.CAPTURE)));
+    }
+
+    @Test
+    void convertsToAndFromMoveObjects() {
+        Game game = TestUtils.parseGameFromFENOrFail(
+                "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1");
+        for (Move move : game.getLegalMoves()) {
+            int encoded = Moves.encode(move);
+            Move decoded = Moves.toMove(encoded, game);
+            assertEquals(move.getMover(), decoded.getMover());
+            assertEquals(move.getDestSquare(), decoded.getDestSquare());
+            assertEquals(move.getCapturedPiece(), decoded.getCapturedPiece());
+            assertEquals(move.isCastle(), decoded.isCastle());
+            assertEquals(move.isCastle(), Moves.isCastle(encoded));
+            assertEquals(move.isCapture(), Moves.isCapture(encoded));
+        }
+    }
+
+    @Test
+    void moveListIsReused() {
+        Game game = new Game();
+        MoveList moves = new MoveList();
+        game.getLegalMoves(moves);
+        assertEquals(20, moves.size());
+        int e4 = Moves.encode(Square.of("e2").getIndex(), Square.of("e4").getIndex(), Moves.DOUBLE_PAWN_PUSH);
+        assertTrue(moves.contains(e4));
+
+        game.makeMove(e4);
+        game.getLegalMoves(moves);
+        assertEquals(20, moves.size());
+        assertFalse(moves.contains(e4));
+    }
+}
@@ -0,0 +1,67 @@
+package games.chess.model;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PGNArchiveTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void streamsEveryGameInOrder() throws Exception {
+        List<PGNGame> games = PGNReaderTest.randomGames(300, 11);
+        Path file = directory.resolve("games.pgn");
+        Files.writeString(file, PGNReaderTest.writeAll(games));
+        PGNArchive archive = new PGNArchive(file, 2000);
+        assertTrue(archive.getChunkCount() > 20);
+        for (List<PGNGame> read : List.of(
+                archive.stream().collect(Collectors.toList()),
+                archive.stream().parallel().collect(Collectors.toList()),
+                new PGNArchive(file).stream().collect(Collectors.toList()))) {
+            assertEquals(games.size(), read.size());
+            for (int i = 0; i < games.size(); i++) {
+                PGNReaderTest.assertSameGame(games.get(i), read.get(i));
+            }
+        }
+    }
+
+    @Test
+    void splitsOnlyBetweenGames() throws Exception {
+        // Windows line breaks, and a blank line inside a game's movetext.
+        String game = PGNReaderTest.OPERA_GAME.replace("\n", "\r\n").replace("4. dxe5\r\n", "4. dxe5\r\n\r\n");
+        Path file = directory.resolve("games.pgn");
+        Files.writeString(file, (game + "\r\n").repeat(20));
+        List<PGNGame> read = new PGNArchive(file, 100).stream().parallel().collect(Collectors.toList());
+        assertEquals(20, read.size());
+        for (PGNGame pgn : read) {
+            assertEquals(33, pgn.getMoveCount());
+        }
+    }
+
+    @Test
+    void reportsTheByteOffsetOfABadGame() throws Exception {
+        String good = "[Event \"A\"]\n\n1. e4 e5 1-0\n\n";
+        Path file = directory.resolve("games.pgn");
+        Files.writeString(file, good + good + "[Event \"B\"]\n\n1. e5 *\n\n" + good);
+        PGNArchive archive = new PGNArchive(file, 10);
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> archive.stream().count());
+        assertTrue(e.getMessage().contains("byte " + 2 * good.length()), e.getMessage());
+    }
+
+    @Test
+    void anEmptyFileHasNoGames() throws Exception {
+        Path file = directory.resolve("empty.pgn");
+        Files.writeString(file, "");
+        PGNArchive archive = new PGNArchive(file);
+        assertEquals(0, archive.getChunkCount());
+        assertEquals(0, archive.stream().count());
+    }
+}
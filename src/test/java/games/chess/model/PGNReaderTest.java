@@ -0,0 +1,189 @@
+package games.chess.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PGNReaderTest {
+
+    // Morphy against the Duke of Brunswick and Count Isouard, Paris 1858, with the sorts of
+    // comments, variations and annotations found in real files.
+    static final String OPERA_GAME = "[Event \"Paris\"]\n"
+            + "[Site \"Paris FRA\"]\n"
+            + "[Date \"1858.??.??\"]\n"
+            + "[White \"Morphy, Paul\"]\n"
+            + "[Black \"Duke Karl / Count Isouard\"]\n"
+            + "[Result \"1-0\"]\n"
+            + "\n"
+            + "1. e4 e5 2. Nf3 d6 {Philidor's Defence} 3. d4 Bg4?! (3... exd4 4. Nxd4 $1) 4. dxe5\n"
+            + "Bxf3 5. Qxf3 dxe5 6. Bc4 Nf6 7. Qb3 Qe7 8. Nc3 c6 9. Bg5 b5 ; the best try\n"
+            + "10. Nxb5! cxb5 11. Bxb5+ Nbd7 12. O-O-O Rd8 13. Rxd7 Rxd7 (13... Qxd7 {is no better (see\n"
+            + "below)} 14. Bxf6) 14. Rd1 Qe6 15.Bxd7+ Nxd7 16.Qb8+!! Nxb8 17.Rd8# 1-0\n";
+
+    static final String OPERA_MOVETEXT =
+            "1. e4 e5 2. Nf3 d6 3. d4 Bg4 4. dxe5 Bxf3 5. Qxf3 dxe5 6. Bc4 Nf6 7. Qb3 Qe7\n"
+            + "8. Nc3 c6 9. Bg5 b5 10. Nxb5 cxb5 11. Bxb5+ Nbd7 12. O-O-O Rd8 13. Rxd7 Rxd7\n"
+            + "14. Rd1 Qe6 15. Bxd7+ Nxd7 16. Qb8+ Nxb8 17. Rd8# 1-0\n";
+
+    static List<PGNGame> readAll(String text) throws IOException, InvalidPGNException {
+        PGNReader reader = new PGNReader(new StringReader(text));
+        List<PGNGame> games = new ArrayList<>();
+        for (PGNGame game = reader.next(); game != null; game = reader.next()) {
+            games.add(game);
+        }
+        return games;
+    }
+
+    static String writeAll(List<PGNGame> games) throws IOException, InvalidPGNException {
+        StringBuilder text = new StringBuilder();
+        PGNWriter writer = new PGNWriter(text);
+        for (PGNGame game : games) {
+            writer.write(game);
+        }
+        return text.toString();
+    }
+
+    /**
+     * @return Games of random legal moves, some from a FEN with black to move, with tags and results.
+     */
+    static List<PGNGame> randomGames(int count, long seed) {
+        Random random = new Random(seed);
+        String[] results = {PGNGame.WHITE_WINS, PGNGame.BLACK_WINS, PGNGame.DRAWN, PGNGame.UNKNOWN_RESULT};
+        List<PGNGame> games = new ArrayList<>();
+        MoveList moves = new MoveList();
+        for (int i = 0; i < count; i++) {
+            PGNGame pgn = new PGNGame();
+            pgn.setTag("Event", "Random \"game\" " + i);
+            pgn.setTag("Round", String.valueOf(i));
+            if (i % 3 == 1) {
+                pgn.setTag("SetUp", "1");
+                pgn.setTag("FEN", "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R b KQkq - 3 12");
+            }
+            Game game = TestUtils.parseGameFromFENOrFail(pgn.getStartingFEN());
+            int plies = random.nextInt(150);
+            for (int ply = 0; ply < plies; ply++) {
+                game.getLegalMoves(moves);
+                if (moves.isEmpty()) {
+                    break;
+                }
+                int move = moves.get(random.nextInt(moves.size()));
+                game.makeMove(move);
+                pgn.addMove(move);
+            }
+            pgn.setResult(results[random.nextInt(results.length)]);
+            pgn.setTag("Result", pgn.getResult());
+            games.add(pgn);
+        }
+        return games;
+    }
+
+    static void assertSameGame(PGNGame expected, PGNGame actual) {
+        assertEquals(expected.getTags(), actual.getTags());
+        assertEquals(expected.getResult(), actual.getResult());
+        assertEquals(expected.getMoveCount(), actual.getMoveCount());
+        for (int i = 0; i < expected.getMoveCount(); i++) {
+            assertEquals(expected.getMove(i), actual.getMove(i));
+        }
+    }
+
+    @Test
+    void readsAGameWithCommentsAndVariations() throws Exception {
+        PGNReader reader = new PGNReader(new StringReader(OPERA_GAME));
+        PGNGame game = reader.next();
+        assertEquals(33, game.getMoveCount());
+        assertEquals(PGNGame.WHITE_WINS, game.getResult());
+        assertEquals("Morphy, Paul", game.getTag("White"));
+        assertEquals("Duke Karl / Count Isouard", game.getTag("Black"));
+        assertEquals(6, game.getTags().size());
+        // The live game ends in the final position: checkmate.
+        assertEquals("White", reader.getGame().getWinner());
+        assertEquals(reader.getGame().getZobristKey(), game.replay().getZobristKey());
+        assertNull(reader.next());
+    }
+
+    @Test
+    void writesTheExportFormat() throws Exception {
+        List<PGNGame> games = readAll(OPERA_GAME);
+        String text = writeAll(games);
+        assertEquals(OPERA_GAME.substring(0, OPERA_GAME.indexOf("\n\n") + 2) + OPERA_MOVETEXT + "\n", text);
+        assertSameGame(games.get(0), readAll(text).get(0));
+    }
+
+    @Test
+    void readsBackWhatItWrites() throws Exception {
+        List<PGNGame> games = randomGames(60, 5);
+        String text = writeAll(games);
+        List<PGNGame> read = readAll(text);
+        assertEquals(games.size(), read.size());
+        for (int i = 0; i < games.size(); i++) {
+            assertSameGame(games.get(i), read.get(i));
+        }
+        for (String line : text.split("\n")) {
+            assertTrue(line.length() < PGNWriter.LINE_LENGTH, line);
+        }
+    }
+
+    @Test
+    void startsFromTheFENTag() throws Exception {
+        String text = "[FEN \"7k/8/6K1/8/8/8/8/1Q6 w - - 0 40\"]\n\n40. Qb8# 1-0\n\n"
+                + "[FEN \"7k/8/6K1/8/8/8/8/1Q6 b - - 0 40\"]\n\n40... Kg8 41. Qb8# *\n";
+        List<PGNGame> games = readAll(text);
+        assertEquals(2, games.size());
+        assertEquals(1, games.get(0).getMoveCount());
+        assertEquals(2, games.get(1).getMoveCount());
+        assertEquals(PGNGame.UNKNOWN_RESULT, games.get(1).getResult());
+        assertTrue(writeAll(games).contains("\n\n40... Kg8 41. Qb8# *\n"));
+    }
+
+    @Test
+    void endsAGameWithoutAResultAtTheNextTags() throws Exception {
+        String text = "% written by hand\n[Event \"A\"]\n\n1. e4 e5\n\n[Event \"B\"]\n\n1. d4 1/2-1/2\n"
+                + "[Event \"C\"]\n1. c4";
+        List<PGNGame> games = readAll(text);
+        assertEquals(3, games.size());
+        assertEquals(2, games.get(0).getMoveCount());
+        assertEquals(PGNGame.UNKNOWN_RESULT, games.get(0).getResult());
+        assertEquals(PGNGame.DRAWN, games.get(1).getResult());
+        assertEquals("C", games.get(2).getTag("Event"));
+        assertEquals(1, games.get(2).getMoveCount());
+    }
+
+    @Test
+    void aGameOfOnlyTagsIsNotMergedIntoTheNext() throws Exception {
+        String text = "[Event \"A\"]\n[Site \"X\"]\n\n[Event \"B\"]\n\n1. e4 e5 1-0\n\n"
+                + "[Event \"C\"]\r\n\r\n[Event \"D\"]\n";
+        List<PGNGame> games = readAll(text);
+        assertEquals(4, games.size());
+        assertEquals("A", games.get(0).getTag("Event"));
+        assertEquals("X", games.get(0).getTag("Site"));
+        assertEquals(0, games.get(0).getMoveCount());
+        assertEquals(PGNGame.UNKNOWN_RESULT, games.get(0).getResult());
+        assertEquals("B", games.get(1).getTag("Event"));
+        assertNull(games.get(1).getTag("Site"));
+        assertEquals(2, games.get(1).getMoveCount());
+        assertEquals("C", games.get(2).getTag("Event"));
+        assertEquals("D", games.get(3).getTag("Event"));
+        // Without a blank line between them the tags can't be told apart, which is an error.
+        InvalidPGNException e = assertThrows(InvalidPGNException.class,
+                () -> readAll("[Event \"A\"]\n[Event \"B\"]\n\n1. e4 *\n"));
+        assertTrue(e.getMessage().contains("Event"), e.getMessage());
+    }
+
+    @Test
+    void reportsIllegalMovesWithTheirLine() {
+        InvalidPGNException e = assertThrows(InvalidPGNException.class,
+                () -> readAll("[Event \"A\"]\n\n1. e4 e5 2. Nf3 Nc6\n3. Ke3 Nf6 *\n"));
+        assertTrue(e.getMessage().contains("\"Ke3\""), e.getMessage());
+        assertTrue(e.getMessage().startsWith("Line 4 (game at line 1)"), e.getMessage());
+        assertThrows(InvalidPGNException.class, () -> readAll("1. e4 {never closed\n"));
+        assertThrows(InvalidPGNException.class, () -> readAll("1. e4 (1. d4\n"));
+        assertThrows(InvalidPGNException.class, () -> readAll("[Event \"A]\n"));
+        assertThrows(InvalidPGNException.class, () -> readAll("[FEN \"not a fen\"]\n\n1. e4 *\n"));
+    }
+}
@@ -2,10 +2,14 @@ package games.chess.model;
 
 import games.chess.model.piece.Pawn;
 import games.chess.model.piece.Piece;
+import games.chess.model.piece.PieceComparator;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
 import java.util.regex.Matcher;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -145,4 +149,122 @@ class ParserTest {
         assertFalse(game.getBlackPlayer().canCastleQueenside);
         assertTrue(game.getBlackPlayer().canCastleKingside);
     }
-}
\ No newline at end of file
+
+    @Test
+    void canParseFENString() {
+        Game game = null;
+        try {
+            game = parser.parseFromFENString("rnbqkbnr/ppp1pppp/8/3p4/4P3/8/PPPP1PPP/RNBQKBNR w KQkq d6 0 2");
+        } catch (InvalidFENFileException e) {
+            fail("Failed to parse FEN string");
+        }
+        assertEquals(new Square("d6"), game.getEnPassantSquare());
+        assertTrue(game.getPieceAt("d5") instanceof Pawn);
+        assertThrows(InvalidFENFileException.class, () -> parser.parseFromFENString("not a fen"));
+    }
+
+    static final String[] FENS = new String[]{
+            "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+            "rnbqkbnr/ppp1pppp/8/3p4/4P3/8/PPPP1PPP/RNBQKBNR w KQkq d6 0 2",
+            "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+            "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+            "  7k/5Q2/6K1/8/8/8/8/8 b Qk - 12 130\n",
+    };
+
+    static void assertSamePosition(Game expected, Game actual) {
+        assertEquals(expected.getZobristKey(), actual.getZobristKey());
+        assertEquals(expected.isWhiteToMove(), actual.isWhiteToMove());
+        assertEquals(expected.getEnPassantSquare(), actual.getEnPassantSquare());
+        for (boolean isWhite : new boolean[]{true, false}) {
+            Player expectedPlayer = isWhite ? expected.getWhitePlayer() : expected.getBlackPlayer();
+            Player actualPlayer = isWhite ? actual.getWhitePlayer() : actual.getBlackPlayer();
+            assertEquals(expectedPlayer.canCastleKingside, actualPlayer.canCastleKingside);
+            assertEquals(expectedPlayer.canCastleQueenside, actualPlayer.canCastleQueenside);
+            Piece[] expectedPieces = expectedPlayer.getPieces();
+            Piece[] actualPieces = actualPlayer.getPieces();
+            assertEquals(expectedPieces.length, actualPieces.length);
+            for (int i = 0; i < expectedPieces.length; i++) {
+                assertEquals(expectedPieces[i].getClass(), actualPieces[i].getClass());
+                assertEquals(expectedPieces[i].getSquare(), actualPieces[i].getSquare());
+            }
+        }
+    }
+
+    // The regex path that parseFromFENString used before parsing in one pass.
+    Game parseWithRegex(String fen) {
+        Matcher matcher = parser.matchFENString(fen.trim());
+        assertTrue(matcher.matches(), fen);
+        TreeSet<Piece> white = new TreeSet<>(new PieceComparator());
+        TreeSet<Piece> black = new TreeSet<>(new PieceComparator());
+        String[] rows = matcher.group("board").split("/");
+        for (int i = 0; i < rows.length; i++) {
+            int fileIndex = 0;
+            for (char c : rows[i].toCharArray()) {
+                if (Character.isDigit(c)) {
+                    fileIndex += c - '0';
+                    continue;
+                }
+                boolean isWhite = Character.isUpperCase(c);
+                int type = "pnbrqk".indexOf(Character.toLowerCase(c));
+                (isWhite ? white : black).add(Piece.create(type, isWhite, Square.of(fileIndex++, 7 - i)));
+            }
+        }
+        Player whitePlayer = new Player(true, white);
+        whitePlayer.canCastleKingside = matcher.group("castling").contains("K");
+        whitePlayer.canCastleQueenside = matcher.group("castling").contains("Q");
+        Player blackPlayer = new Player(false, black);
+        blackPlayer.canCastleKingside = matcher.group("castling").contains("k");
+        blackPlayer.canCastleQueenside = matcher.group("castling").contains("q");
+        return new Game(matcher.group("playerToMove").equals("w"), whitePlayer, blackPlayer,
+                Square.of(matcher.group("enPassant")));
+    }
+
+    @Test
+    void parsesAsTheRegexDid() throws InvalidFENFileException {
+        for (String fen : FENS) {
+            assertSamePosition(parseWithRegex(fen), parser.parseFromFEN(fen));
+            assertSamePosition(parseWithRegex(fen), parser.parseFromFEN(new StringBuilder(fen)));
+        }
+    }
+
+    @Test
+    void rejectsWhatTheRegexRejects() throws FileNotFoundException {
+        String[] badFiles = new String[] {
+                "bad_first_mover.fen", "too_few_rows.fen", "too_long_rows.fen", "too_many_rows.fen",
+                "too_many_pawns.fen", "too_few_squares_in_row.fen", "too_many_squares_in_row.fen",
+        };
+        List<String> bad = new ArrayList<>(List.of(
+                "", "not a fen",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1 extra",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w  KQkq - 0 1",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQxq - 0 1",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w - e4 0 1",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w - - 1000 1",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNX w KQkq - 0 1",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR/ w KQkq - 0 1"));
+        for (String badFile : badFiles) {
+            bad.add(parser.loadFENFile(resourcesDir + "invalid_fen/" + badFile));
+        }
+        for (String fen : bad) {
+            assertThrows(InvalidFENFileException.class, () -> parser.parseFromFEN(fen), fen);
+        }
+    }
+
+    @Test
+    void parseIntoResetsAGameInPlace() throws InvalidFENFileException {
+        Game game = new Game();
+        game.makeMove(new Move(game.getPieceAt("e2"), "e4"));
+        for (String fen : FENS) {
+            parser.parseInto(fen, game);
+            assertSamePosition(parseWithRegex(fen), game);
+            assertFalse(game.canUndoLastMove());
+            assertEquals(game.computeZobristKey(), game.getZobristKey());
+            assertEquals(new Game(game).getLegalMoves().length, game.getLegalMoves().length);
+        }
+        long key = game.getZobristKey();
+        assertThrows(InvalidFENFileException.class, () -> parser.parseInto("8/8/8 w - - 0 1", game));
+        assertEquals(key, game.getZobristKey());
+    }
+}
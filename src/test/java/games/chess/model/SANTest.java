@@ -0,0 +1,108 @@
+package games.chess.model;
+
+import games.chess.model.piece.Piece;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SANTest {
+
+    static final String KIWIPETE = "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1";
+    // White queens on a1, c1 and a3 can all go to b2.
+    static final String THREE_QUEENS = "4k3/8/8/8/8/Q7/8/Q1Q1K3 w - - 0 1";
+
+    final SAN san = new SAN();
+
+    int parse(String fen, String text) {
+        return san.parse(TestUtils.parseGameFromFENOrFail(fen), text);
+    }
+
+    @Test
+    void parsesPieceAndPawnMoves() {
+        Game game = new Game();
+        assertEquals(Moves.encode(12, 28, Moves.DOUBLE_PAWN_PUSH), san.parse(game, "e4"));
+        assertEquals(Moves.encode(6, 21, Moves.QUIET), san.parse(game, "Nf3"));
+        assertEquals(Moves.encode(6, 21, Moves.QUIET), san.parse(game, "Nf3!?"));
+        assertEquals(Moves.NONE, san.parse(game, "Nf4"));
+        assertEquals(Moves.NONE, san.parse(game, "e5"));
+        assertEquals(Moves.NONE, san.parse(game, "Ke2"));
+        assertEquals(Moves.NONE, san.parse(game, "xyz"));
+        assertEquals(Moves.NONE, san.parse(game, ""));
+    }
+
+    @Test
+    void parsesCastlesEitherWay() {
+        int kingside = Moves.encode(4, 6, Moves.KING_CASTLE);
+        int queenside = Moves.encode(4, 2, Moves.QUEEN_CASTLE);
+        assertEquals(kingside, parse(KIWIPETE, "O-O"));
+        assertEquals(kingside, parse(KIWIPETE, "0-0+"));
+        assertEquals(queenside, parse(KIWIPETE, "O-O-O"));
+        assertEquals(queenside, parse(KIWIPETE, "0-0-0"));
+        assertEquals(Moves.NONE, parse(FENWriterTest.FENS[0], "O-O"));
+    }
+
+    @Test
+    void parsesPromotionsAndEnPassant() {
+        String fen = "1n2k3/P7/8/3pP3/8/8/8/4K3 w - d6 0 2";
+        assertEquals(Moves.encodePromotion(48, 56, Piece.QUEEN, false), parse(fen, "a8=Q"));
+        assertEquals(Moves.encodePromotion(48, 56, Piece.KNIGHT, false), parse(fen, "a8N"));
+        assertEquals(Moves.encodePromotion(48, 57, Piece.ROOK, true), parse(fen, "axb8=R+"));
+        assertEquals(Moves.NONE, parse(fen, "a8"));
+        assertEquals(Moves.encode(36, 43, Moves.EN_PASSANT), parse(fen, "exd6"));
+    }
+
+    @Test
+    void needsDisambiguationWhenMovesShareASquare() {
+        assertEquals(Moves.NONE, parse(THREE_QUEENS, "Qb2"));
+        assertEquals(Moves.NONE, parse(THREE_QUEENS, "Qab2"));
+        assertEquals(Moves.encode(2, 9, Moves.QUIET), parse(THREE_QUEENS, "Qcb2"));
+        assertEquals(Moves.encode(16, 9, Moves.QUIET), parse(THREE_QUEENS, "Q3b2"));
+        assertEquals(Moves.encode(0, 9, Moves.QUIET), parse(THREE_QUEENS, "Qa1b2"));
+        // Over-specified moves are still read.
+        assertEquals(Moves.encode(2, 9, Moves.QUIET), parse(THREE_QUEENS, "Qc1b2"));
+    }
+
+    @Test
+    void writesDisambiguationOnlyWhenNeeded() {
+        Game game = TestUtils.parseGameFromFENOrFail(THREE_QUEENS);
+        assertEquals("Qa1b2", san.toSAN(game, Moves.encode(0, 9, Moves.QUIET)));
+        assertEquals("Qcb2", san.toSAN(game, Moves.encode(2, 9, Moves.QUIET)));
+        assertEquals("Q3b2", san.toSAN(game, Moves.encode(16, 9, Moves.QUIET)));
+        assertEquals("Qd3", san.toSAN(game, Moves.encode(16, 19, Moves.QUIET)));
+        assertEquals("Qxe7+", san.toSAN(TestUtils.parseGameFromFENOrFail("4k3/4r3/8/8/8/8/8/4QK2 w - - 0 1"),
+                Moves.encode(4, 52, Moves.CAPTURE)));
+    }
+
+    @Test
+    void writesChecksAndMates() {
+        Game game = TestUtils.parseGameFromFENOrFail("7k/8/6K1/8/8/8/8/1Q6 w - - 0 1");
+        assertEquals("Qb8#", san.toSAN(game, Moves.encode(1, 57, Moves.QUIET)));
+        assertEquals("Qh1+", san.toSAN(game, Moves.encode(1, 7, Moves.QUIET)));
+        assertEquals("Qb3", san.toSAN(game, Moves.encode(1, 17, Moves.QUIET)));
+        assertEquals("O-O-O", san.toSAN(TestUtils.parseGameFromFENOrFail(KIWIPETE), Moves.encode(4, 2, Moves.QUEEN_CASTLE)));
+        assertEquals("exd6", san.toSAN(TestUtils.parseGameFromFENOrFail("1n2k3/P7/8/3pP3/8/8/8/4K3 w - d6 0 2"),
+                Moves.encode(36, 43, Moves.EN_PASSANT)));
+    }
+
+    @Test
+    void everyLegalMoveReadsBackFromItsName() {
+        String[] fens = new String[]{
+                KIWIPETE, THREE_QUEENS, FENWriterTest.FENS[0], FENWriterTest.FENS[3],
+                "1n2k3/P7/8/3pP3/8/8/8/4K3 w - d6 0 2",
+                "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+        };
+        MoveList moves = new MoveList();
+        for (String fen : fens) {
+            Game game = TestUtils.parseGameFromFENOrFail(fen);
+            game.getLegalMoves(moves);
+            Move[] named = game.getLegalMoves();
+            for (int i = 0; i < moves.size(); i++) {
+                String name = san.toSAN(game, moves.get(i));
+                assertTrue(SAN.isValidSyntax(name), name);
+                assertEquals(moves.get(i), san.parse(game, name), fen + " " + name);
+                // Game's Moves are named the same.
+                assertEquals(name, named[i].getCanonicalName(game));
+            }
+        }
+    }
+}
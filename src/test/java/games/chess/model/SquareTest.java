@@ -65,4 +65,26 @@ class SquareTest {
         assertFalse(new Square(-1, 4).isOnBoard());
     }
 
-}
\ No newline at end of file
+    @Test
+    void ofReturnsSharedInstances() {
+        assertSame(Square.of(4, 3), Square.of("e4"));
+        assertSame(Square.of("e4"), Square.of(new Square("e4").getIndex()));
+        assertEquals(new Square("e4"), Square.of("e4"));
+    }
+
+    @Test
+    void ofReturnsSentinelOffTheBoard() {
+        assertSame(Square.OFF_BOARD, Square.of(8, 0));
+        assertSame(Square.OFF_BOARD, Square.of(-1));
+        assertSame(Square.OFF_BOARD, Square.of(64));
+        assertSame(Square.OFF_BOARD, Square.of("i9"));
+        assertSame(Square.OFF_BOARD, Square.of("-"));
+        assertFalse(Square.OFF_BOARD.isOnBoard());
+    }
+
+    @Test
+    void hashCodeIsConsistentWithEquals() {
+        assertEquals(new Square("c6").hashCode(), Square.of("c6").hashCode());
+        assertNotEquals(Square.of("c6").hashCode(), Square.of("f3").hashCode());
+    }
+}
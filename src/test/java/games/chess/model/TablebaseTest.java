@@ -0,0 +1,104 @@
+package games.chess.model;
+
+import games.chess.model.piece.Piece;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TablebaseTest {
+
+    @TempDir
+    static Path directory;
+    static Tablebase tablebase;
+
+    @BeforeAll
+    static void generate() throws IOException {
+        TablebaseGenerator.generateAll(directory, new PrintStream(OutputStream.nullOutputStream()));
+        tablebase = new Tablebase(directory);
+    }
+
+    static int probe(String fen) {
+        return tablebase.probe(TestUtils.parseGameFromFENOrFail(fen));
+    }
+
+    static int longestMate(int type) throws IOException {
+        int longest = 0;
+        for (byte value : Files.readAllBytes(directory.resolve(Tablebase.getFileName(type)))) {
+            if (value > 0) {
+                longest = Math.max(longest, Tablebase.getPliesToMate(value));
+            }
+        }
+        return longest;
+    }
+
+    @Test
+    void longestMatesAreTheKnownOnes() throws IOException {
+        assertEquals(19, longestMate(Piece.QUEEN)); // Mate in 10.
+        assertEquals(31, longestMate(Piece.ROOK)); // Mate in 16.
+        assertEquals(55, longestMate(Piece.PAWN)); // Mate in 28, through a promotion.
+    }
+
+    @Test
+    void findsMateInOne() {
+        int value = probe("7k/8/6K1/8/8/8/8/1Q6 w - - 0 1");
+        assertEquals(Tablebase.WIN, Tablebase.getOutcome(value));
+        assertEquals(1, Tablebase.getPliesToMate(value));
+    }
+
+    @Test
+    void findsCheckmateAndStalemate() {
+        int mated = probe("7k/6Q1/6K1/8/8/8/8/8 b - - 0 1");
+        assertEquals(Tablebase.LOSS, Tablebase.getOutcome(mated));
+        assertEquals(0, Tablebase.getPliesToMate(mated));
+        assertEquals(Tablebase.DRAW, Tablebase.getOutcome(probe("7k/5Q2/6K1/8/8/8/8/8 b - - 0 1")));
+    }
+
+    @Test
+    void probesWithColoursSwapped() {
+        assertEquals(probe("7k/8/6K1/8/8/8/8/1Q6 w - - 0 1"), probe("1q6/8/8/8/8/6k1/8/7K b - - 0 1"));
+        assertEquals(probe("8/3KP3/8/8/8/8/8/7k w - - 0 1"), probe("7K/8/8/8/8/8/3kp3/8 b - - 0 1"));
+    }
+
+    @Test
+    void knowsPawnEndings() {
+        assertEquals(Tablebase.WIN, Tablebase.getOutcome(probe("8/3KP3/8/8/8/8/8/7k w - - 0 1")));
+        // The defending king in the corner holds a rook pawn.
+        assertEquals(Tablebase.DRAW, Tablebase.getOutcome(probe("k7/8/P7/8/8/8/8/K7 b - - 0 1")));
+        // The rook can be taken at once.
+        assertEquals(Tablebase.DRAW, Tablebase.getOutcome(probe("8/8/8/8/8/8/1r6/K6k w - - 0 1")));
+    }
+
+    @Test
+    void winsStayWinsAfterTheBestMove() {
+        Game game = TestUtils.parseGameFromFENOrFail("8/8/8/4k3/8/8/8/R3K3 w - - 0 1");
+        int value = tablebase.probe(game);
+        assertEquals(Tablebase.WIN, Tablebase.getOutcome(value));
+        MoveList moves = new MoveList();
+        game.getLegalMoves(moves);
+        int bestReply = Integer.MAX_VALUE;
+        for (int i = 0; i < moves.size(); i++) {
+            game.makeMove(moves.get(i));
+            int reply = tablebase.probe(game);
+            if (Tablebase.getOutcome(reply) == Tablebase.LOSS) {
+                bestReply = Math.min(bestReply, Tablebase.getPliesToMate(reply));
+            }
+            game.undoLastMove();
+        }
+        assertEquals(Tablebase.getPliesToMate(value) - 1, bestReply);
+    }
+
+    @Test
+    void doesNotFindOtherEndings() {
+        assertEquals(Tablebase.NOT_FOUND, probe("8/8/8/4k3/8/8/8/B3K3 w - - 0 1"));
+        assertEquals(Tablebase.NOT_FOUND, probe("8/8/8/4k3/8/8/8/RR2K3 w - - 0 1"));
+        assertEquals(Tablebase.NOT_FOUND, tablebase.probe(new Game()));
+    }
+}
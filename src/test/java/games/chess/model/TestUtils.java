@@ -13,5 +13,14 @@ class TestUtils {
             fail("Failed during test setup: cannot parse file " + fileName);
             return new Game();
         }
-    } 
+    }
+
+    protected static Game parseGameFromFENOrFail(String fenString) {
+        try {
+            return new Parser().parseFromFENString(fenString);
+        } catch (Exception e) {
+            fail("Failed during test setup: cannot parse FEN " + fenString);
+            return new Game();
+        }
+    }
 }
\ No newline at end of file